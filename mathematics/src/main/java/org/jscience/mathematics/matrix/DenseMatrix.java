@@ -10,6 +10,8 @@ package org.jscience.mathematics.matrix;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import javolution.lang.Constant;
 import javolution.lang.MathLib;
 import javolution.text.Cursor;
@@ -23,6 +25,9 @@ import javolution.xml.XMLFormat;
 import javolution.xml.stream.XMLStreamException;
 import org.jscience.mathematics.internal.matrix.DenseMatrixImpl;
 import org.jscience.mathematics.matrix.decomposition.LowerUpper;
+import org.jscience.mathematics.number.BinaryFormat;
+import org.jscience.mathematics.number.MultiModular;
+import org.jscience.mathematics.number.Rational;
 import org.jscience.mathematics.structure.Field;
 
 /**
@@ -109,6 +114,49 @@ public abstract class DenseMatrix<F extends Field<F>> implements Matrix<F>,
         }
     }
 
+    /**
+     * Defines a compact binary representation for dense matrices: the
+     * number of rows and columns followed by the elements (row by row).
+     */
+    public static class Binary<F extends Field<F>> extends
+            BinaryFormat<DenseMatrix<F>> {
+
+        private final BinaryFormat<F> elementFormat;
+
+        /**
+         * Creates a binary format for dense matrices whose elements have the
+         * specified format.
+         */
+        public Binary(BinaryFormat<F> elementFormat) {
+            this.elementFormat = elementFormat;
+        }
+
+        @Override
+        public void write(DenseMatrix<F> that, ByteBuffer buffer) {
+            int m = that.numberOfRows();
+            int n = that.numberOfColumns();
+            writeUnsigned(m, buffer);
+            writeUnsigned(n, buffer);
+            for (int i = 0; i < m; i++)
+                for (int j = 0; j < n; j++)
+                    elementFormat.write(that.get(i, j), buffer);
+        }
+
+        @Override
+        public DenseMatrix<F> read(ByteBuffer buffer) {
+            int m = readCount(buffer);
+            int n = readCount(buffer);
+            if ((long) m * n > buffer.remaining())
+                throw new BufferUnderflowException();
+            @SuppressWarnings("unchecked")
+            F[] elements = (F[]) new Field[m * n];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = elementFormat.read(buffer);
+            }
+            return DenseMatrix.of(m, n, elements);
+        }
+    }
+
     /** Vector view over the matrix columns. */
     private class Column extends DenseVector<F> {
         private static final long serialVersionUID = 0x500L; // Version.
@@ -302,6 +350,47 @@ public abstract class DenseMatrix<F extends Field<F>> implements Matrix<F>,
         return new DenseMatrixImpl<F>(m, n, elements);
     }
 
+    /**
+     * Returns the exact determinant of the specified rational matrix 
+     * calculated using multi-modular arithmetic (no intermediate
+     * expression swell).
+     * 
+     * @param that the square rational matrix.
+     * @return the matrix determinant.
+     * @throws DimensionException if the matrix is not square.
+     * @see MultiModular#determinant(Rational[][])
+     */
+    public static Rational exactDeterminant(Matrix<Rational> that) {
+        if (!that.isSquare())
+            throw new DimensionException("Square matrix required");
+        return MultiModular.determinant(rationals(that));
+    }
+
+    /**
+     * Returns the exact solution <code>x</code> of the rational linear
+     * system <code>a·x = y</code> calculated using multi-modular
+     * arithmetic (no intermediate expression swell).
+     * 
+     * @param a the square rational matrix.
+     * @param y the right hand side.
+     * @return the solution vector.
+     * @throws DimensionException if the matrix is not square or if its
+     *         number of rows differs from the vector dimension.
+     * @throws ArithmeticException if the matrix is singular.
+     * @see MultiModular#solve(Rational[][], Rational[])
+     */
+    public static DenseVector<Rational> exactSolve(Matrix<Rational> a,
+            Vector<Rational> y) {
+        if (!a.isSquare())
+            throw new DimensionException("Square matrix required");
+        if (y.dimension() != a.numberOfRows())
+            throw new DimensionException();
+        final Rational[] b = new Rational[y.dimension()];
+        for (int i = 0; i < b.length; i++)
+            b[i] = y.get(i);
+        return DenseVector.of(MultiModular.solve(rationals(a), b));
+    }
+
     @Override
     public DenseMatrix<F> adjoint() {
         final int m = this.numberOfRows();
@@ -580,4 +669,14 @@ public abstract class DenseMatrix<F extends Field<F>> implements Matrix<F>,
         return new Transpose();
     }
 
+    // Returns the rows of the specified rational matrix.
+    private static Rational[][] rationals(Matrix<Rational> that) {
+        final Rational[][] rows = new Rational[that.numberOfRows()][that
+                .numberOfColumns()];
+        for (int i = 0; i < rows.length; i++)
+            for (int j = 0; j < rows[i].length; j++)
+                rows[i][j] = that.get(i, j);
+        return rows;
+    }
+
 }
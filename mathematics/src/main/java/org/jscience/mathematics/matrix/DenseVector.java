@@ -10,6 +10,7 @@ package org.jscience.mathematics.matrix;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import javolution.lang.Constant;
 import javolution.text.Cursor;
 import javolution.text.DefaultTextFormat;
@@ -21,6 +22,7 @@ import javolution.xml.DefaultXMLFormat;
 import javolution.xml.XMLFormat;
 import javolution.xml.stream.XMLStreamException;
 import org.jscience.mathematics.internal.matrix.DenseVectorImpl;
+import org.jscience.mathematics.number.BinaryFormat;
 import org.jscience.mathematics.structure.Field;
 
 /**
@@ -104,6 +106,48 @@ public abstract class DenseVector<F extends Field<F>> implements Vector<F>,
         }
     }
 
+    /**
+     * Defines a compact binary representation for dense vectors: the
+     * dimension followed by the elements.
+     * [code]
+     * BinaryFormat<DenseVector<Rational>> format
+     *     = new DenseVector.Binary<Rational>(BinaryFormat.RATIONAL);
+     * [/code]
+     */
+    public static class Binary<F extends Field<F>> extends
+            BinaryFormat<DenseVector<F>> {
+
+        private final BinaryFormat<F> elementFormat;
+
+        /**
+         * Creates a binary format for dense vectors whose elements have the
+         * specified format.
+         */
+        public Binary(BinaryFormat<F> elementFormat) {
+            this.elementFormat = elementFormat;
+        }
+
+        @Override
+        public void write(DenseVector<F> that, ByteBuffer buffer) {
+            int n = that.dimension();
+            writeUnsigned(n, buffer);
+            for (int i = 0; i < n; i++) {
+                elementFormat.write(that.get(i), buffer);
+            }
+        }
+
+        @Override
+        public DenseVector<F> read(ByteBuffer buffer) {
+            int n = readCount(buffer);
+            @SuppressWarnings("unchecked")
+            F[] elements = (F[]) new Field[n];
+            for (int i = 0; i < n; i++) {
+                elements[i] = elementFormat.read(buffer);
+            }
+            return DenseVector.of(elements);
+        }
+    }
+
     /** Column Matrix View. */
     private class Column extends DenseMatrix<F> {
         private static final long serialVersionUID = 0x500L; // Version.
@@ -10,6 +10,7 @@ package org.jscience.mathematics.matrix;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 
@@ -34,6 +35,7 @@ import org.jscience.mathematics.internal.matrix.DenseMatrixImpl;
 import org.jscience.mathematics.internal.matrix.SparseMatrixImpl;
 import org.jscience.mathematics.internal.matrix.SparseVectorImpl;
 import org.jscience.mathematics.matrix.decomposition.LowerUpper;
+import org.jscience.mathematics.number.BinaryFormat;
 import org.jscience.mathematics.structure.Field;
 
 /**
@@ -114,6 +116,44 @@ public abstract class SparseMatrix<F extends Field<F>> implements Matrix<F>,
 		}
 	}
 
+	/**
+	 * Defines a compact binary representation for sparse matrices: the
+	 * number of rows followed by the rows (sparse vectors).
+	 */
+	public static class Binary<F extends Field<F>> extends
+			BinaryFormat<SparseMatrix<F>> {
+
+		private final SparseVector.Binary<F> rowFormat;
+
+		/**
+		 * Creates a binary format for sparse matrices whose elements have the
+		 * specified format.
+		 */
+		public Binary(BinaryFormat<F> elementFormat) {
+			this.rowFormat = new SparseVector.Binary<F>(elementFormat);
+		}
+
+		@Override
+		public void write(SparseMatrix<F> that, ByteBuffer buffer) {
+			int m = that.numberOfRows();
+			writeUnsigned(m, buffer);
+			for (int i = 0; i < m; i++) {
+				rowFormat.write(that.row(i), buffer);
+			}
+		}
+
+		@Override
+		public SparseMatrix<F> read(ByteBuffer buffer) {
+			int m = readCount(buffer);
+			@SuppressWarnings("unchecked")
+			SparseVector<F>[] rows = (SparseVector<F>[]) new SparseVector[m];
+			for (int i = 0; i < m; i++) {
+				rows[i] = rowFormat.read(buffer);
+			}
+			return SparseMatrix.of(rows);
+		}
+	}
+
 	/** Vector view over the matrix columns. */
 	private class Column extends SparseVector<F> {
 		private static final long serialVersionUID = 0x500L; // Version.
@@ -12,6 +12,7 @@ import static javolution.lang.Realtime.Limit.LINEAR;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +39,7 @@ import javolution.xml.XMLFormat;
 import javolution.xml.stream.XMLStreamException;
 import org.jscience.mathematics.internal.matrix.SparseVectorImpl;
 import org.jscience.mathematics.matrix.Vector.Consumer;
+import org.jscience.mathematics.number.BinaryFormat;
 import org.jscience.mathematics.structure.Field;
 
 /**
@@ -259,6 +261,65 @@ public abstract class SparseVector<F extends Field<F>> implements Vector<F>,
         }
     }
 
+    /**
+     * Defines a compact binary representation for sparse vectors: the
+     * dimension, the zero element and the number of non-zero elements
+     * followed by the non-zero elements, each one preceded by its index
+     * (difference with the previous index).
+     */
+    public static class Binary<F extends Field<F>> extends
+            BinaryFormat<SparseVector<F>> {
+
+        private final BinaryFormat<F> elementFormat;
+
+        /**
+         * Creates a binary format for sparse vectors whose elements have the
+         * specified format.
+         */
+        public Binary(BinaryFormat<F> elementFormat) {
+            this.elementFormat = elementFormat;
+        }
+
+        @Override
+        public void write(SparseVector<F> that, final ByteBuffer buffer) {
+            writeUnsigned(that.dimension(), buffer);
+            elementFormat.write(that.getZero(), buffer);
+            final AtomicInteger count = new AtomicInteger();
+            that.forEachNonZero(new Consumer<F>() {
+                @Override
+                public void accept(int index, F element) {
+                    count.incrementAndGet();
+                }
+            });
+            writeUnsigned(count.get(), buffer);
+            final AtomicInteger previous = new AtomicInteger();
+            that.forEachNonZero(new Consumer<F>() {
+                @Override
+                public void accept(int index, F element) {
+                    writeSigned(index - previous.getAndSet(index), buffer);
+                    elementFormat.write(element, buffer);
+                }
+            });
+        }
+
+        @Override
+        public SparseVector<F> read(ByteBuffer buffer) {
+            int n = readCount(buffer);
+            F zero = elementFormat.read(buffer);
+            SparseVectorImpl<F> vector = new SparseVectorImpl<F>(n, zero);
+            long index = 0;
+            for (int i = readCount(buffer); i > 0; i--) {
+                long delta = readSigned(buffer);
+                if ((delta < -index) || (delta >= n - index)) // No overflow.
+                    throw new IllegalArgumentException("Invalid index delta: "
+                            + delta + " from " + index);
+                index += delta;
+                vector.setIfAbsent((int) index, elementFormat.read(buffer));
+            }
+            return vector;
+        }
+    }
+
     private static final long serialVersionUID = 0x500L; // Version.
 
     /**
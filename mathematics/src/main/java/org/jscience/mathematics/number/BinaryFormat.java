@@ -0,0 +1,487 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+
+/**
+ * <p> This class represents a compact binary format for numbers, an
+ *     alternative to the text and XML formats when persisting or exchanging
+ *     large amount of numbers (e.g. checkpoints of intermediate results).</p>
+ *
+ * <p> Numbers are written directly to (and read from)
+ *     <code>java.nio.ByteBuffer</code>, no intermediate string or array
+ *     being created. Headers (sizes, signs, exponents) are written as
+ *     variable-length integers (7 bits per byte, least significant group
+ *     first) and {@link LargeInteger} payloads as their raw 63 bits words
+ *     in the buffer byte order (big-endian by default); single word values
+ *     are written as variable-length integers.
+ *     [code]
+ *     ByteBuffer buffer = ByteBuffer.allocate(1024);
+ *     BinaryFormat.RATIONAL.write(Rational.valueOf(1, 3), buffer);
+ *     buffer.flip();
+ *     Rational oneThird = BinaryFormat.RATIONAL.read(buffer);
+ *     [/code]</p>
+ *
+ * <p> Sequences of numbers are written to (or read from) channels through
+ *     {@link Writer} (or {@link Reader}) instances; the buffers are
+ *     transparently flushed, refilled and enlarged if necessary.
+ *     [code]
+ *     FileChannel channel = new FileOutputStream("checkpoint.bin").getChannel();
+ *     BinaryFormat.Writer<LargeInteger> writer = new BinaryFormat.Writer<LargeInteger>(
+ *         BinaryFormat.LARGE_INTEGER, channel);
+ *     writer.writeAll(results);
+ *     writer.flush();
+ *     channel.close();
+ *     [/code]</p>
+ *
+ * <p> Formats for vectors and matrices are provided by the
+ *     <code>Binary</code> classes of the {@link org.jscience.mathematics.matrix}
+ *     package (e.g. <code>DenseVector.Binary</code>).</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ */
+public abstract class BinaryFormat<T> {
+
+    /**
+     * Holds the binary format for large integers: header
+     * <code>(size &lt;&lt; 1) | sign</code> followed by the words.
+     */
+    public static final BinaryFormat<LargeInteger> LARGE_INTEGER = new BinaryFormat<LargeInteger>() {
+
+        @Override
+        public void write(LargeInteger value, ByteBuffer buffer) {
+            value.write(buffer);
+        }
+
+        @Override
+        public LargeInteger read(ByteBuffer buffer) {
+            return LargeInteger.read(buffer);
+        }
+    };
+
+    /**
+     * Holds the binary format for rational numbers: dividend followed by
+     * the divisor (large integers).
+     */
+    public static final BinaryFormat<Rational> RATIONAL = new BinaryFormat<Rational>() {
+
+        @Override
+        public void write(Rational value, ByteBuffer buffer) {
+            value.getDividend().write(buffer);
+            value.getDivisor().write(buffer);
+        }
+
+        @Override
+        public Rational read(ByteBuffer buffer) {
+            final LargeInteger dividend = LargeInteger.read(buffer);
+            final LargeInteger divisor = LargeInteger.read(buffer);
+            if (!divisor.isPositive())
+                throw new IllegalArgumentException("Invalid divisor: " + divisor);
+            return Rational.valueOfNoNormalization(dividend, divisor);
+        }
+    };
+
+    /**
+     * Holds the binary format for decimal numbers: exponent (signed)
+     * followed by the significand (large integer).
+     */
+    public static final BinaryFormat<Decimal> DECIMAL = new BinaryFormat<Decimal>() {
+
+        @Override
+        public void write(Decimal value, ByteBuffer buffer) {
+            writeSigned(value.getExponent(), buffer);
+            value.getSignificand().write(buffer);
+        }
+
+        @Override
+        public Decimal read(ByteBuffer buffer) {
+            final long exponent = readSigned(buffer);
+            if ((exponent < Integer.MIN_VALUE) || (exponent > Integer.MAX_VALUE))
+                throw new IllegalArgumentException("Invalid exponent: " + exponent);
+            final LargeInteger significand = LargeInteger.read(buffer);
+            return (exponent == Integer.MAX_VALUE) ? Decimal.NaN : Decimal
+                    .valueOf(significand, (int) exponent);
+        }
+    };
+
+    /**
+     * Holds the binary format for modulo integers: the
+     * {@link ModuloInteger#moduloValue modulo value} (large integer);
+     * the modulus itself is not written.
+     */
+    public static final BinaryFormat<ModuloInteger> MODULO_INTEGER = new BinaryFormat<ModuloInteger>() {
+
+        @Override
+        public void write(ModuloInteger value, ByteBuffer buffer) {
+            value.moduloValue().write(buffer);
+        }
+
+        @Override
+        public ModuloInteger read(ByteBuffer buffer) {
+            return ModuloInteger.valueOf(LargeInteger.read(buffer));
+        }
+    };
+
+    /**
+     * Holds the binary format for real numbers: the
+     * {@link Real#doubleValue double value} (8 bytes).
+     */
+    public static final BinaryFormat<Real> REAL = new BinaryFormat<Real>() {
+
+        @Override
+        public void write(Real value, ByteBuffer buffer) {
+            buffer.putDouble(value.doubleValue());
+        }
+
+        @Override
+        public Real read(ByteBuffer buffer) {
+            return Real.of(buffer.getDouble());
+        }
+    };
+
+    /**
+     * Holds the binary format for complex numbers: the real part followed
+     * by the imaginary part (8 bytes each).
+     */
+    public static final BinaryFormat<Complex> COMPLEX = new BinaryFormat<Complex>() {
+
+        @Override
+        public void write(Complex value, ByteBuffer buffer) {
+            if (buffer.remaining() < 16)
+                throw new BufferOverflowException();
+            buffer.putDouble(value.realValue());
+            buffer.putDouble(value.imaginaryValue());
+        }
+
+        @Override
+        public Complex read(ByteBuffer buffer) {
+            if (buffer.remaining() < 16)
+                throw new BufferUnderflowException();
+            final double real = buffer.getDouble();
+            return Complex.of(real, buffer.getDouble());
+        }
+    };
+
+    /**
+     * Default constructor.
+     */
+    protected BinaryFormat() {
+    }
+
+    /**
+     * Writes the binary representation of the specified value at the
+     * current position of the specified buffer.
+     *
+     * @param  value the value to write.
+     * @param  buffer the destination buffer.
+     * @throws BufferOverflowException if the buffer does not have enough
+     *         remaining space (the buffer position is then unspecified).
+     */
+    public abstract void write(T value, ByteBuffer buffer);
+
+    /**
+     * Reads the value whose binary representation starts at the current
+     * position of the specified buffer.
+     *
+     * @param  buffer the source buffer.
+     * @return the value read.
+     * @throws BufferUnderflowException if the buffer does not hold the
+     *         complete representation (the buffer position is then
+     *         unspecified).
+     * @throws IllegalArgumentException if the representation is invalid.
+     */
+    public abstract T read(ByteBuffer buffer);
+
+    /**
+     * Writes the specified unsigned value as a variable-length integer
+     * (from 1 to 10 bytes).
+     *
+     * @param value the value to write (considered unsigned).
+     * @param buffer the destination buffer.
+     */
+    protected static void writeUnsigned(long value, ByteBuffer buffer) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     *
+     * @param  buffer the source buffer.
+     * @return the value read (considered unsigned).
+     * @throws IllegalArgumentException if the integer has more than 64 bits.
+     */
+    protected static long readUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7FL) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Variable-length integer too long");
+    }
+
+    /**
+     * Writes the specified signed value as a variable-length integer
+     * (zig-zag encoding, small absolute values have short representations).
+     *
+     * @param value the value to write.
+     * @param buffer the destination buffer.
+     */
+    protected static void writeSigned(long value, ByteBuffer buffer) {
+        writeUnsigned((value << 1) ^ (value >> 63), buffer);
+    }
+
+    /**
+     * Reads a signed variable-length integer (zig-zag encoding).
+     *
+     * @param  buffer the source buffer.
+     * @return the value read.
+     */
+    protected static long readSigned(ByteBuffer buffer) {
+        final long value = readUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a number of elements, each element using at least one byte.
+     *
+     * @param  buffer the source buffer.
+     * @return the number of elements read.
+     * @throws BufferUnderflowException if the buffer does not have as many
+     *         remaining bytes as elements.
+     * @throws IllegalArgumentException if the number is not a positive
+     *         <code>int</code>.
+     */
+    protected static int readCount(ByteBuffer buffer) {
+        final long count = readUnsigned(buffer);
+        if ((count < 0) || (count > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("Invalid count: " + count);
+        if (count > buffer.remaining())
+            throw new BufferUnderflowException();
+        return (int) count;
+    }
+
+    /**
+     * <p> This class represents a writer of values to a channel through a
+     *     buffer (flushed when full, enlarged when a single value does not
+     *     fit).</p>
+     *
+     * <p> Instances of this class are not thread-safe.</p>
+     */
+    public static final class Writer<T> {
+
+        private final BinaryFormat<T> _format;
+
+        private final WritableByteChannel _channel;
+
+        private ByteBuffer _buffer;
+
+        /**
+         * Creates a writer using a 64 KB buffer.
+         *
+         * @param format the format of the values written.
+         * @param channel the destination channel.
+         */
+        public Writer(BinaryFormat<T> format, WritableByteChannel channel) {
+            this(format, channel, ByteBuffer.allocate(1 << 16));
+        }
+
+        /**
+         * Creates a writer using the specified buffer (e.g. a direct buffer
+         * or a buffer having a different byte order).
+         *
+         * @param format the format of the values written.
+         * @param channel the destination channel.
+         * @param buffer the initial buffer.
+         */
+        public Writer(BinaryFormat<T> format, WritableByteChannel channel,
+                ByteBuffer buffer) {
+            _format = format;
+            _channel = channel;
+            _buffer = buffer;
+            _buffer.clear();
+        }
+
+        /**
+         * Writes the specified value.
+         *
+         * @param  value the value to write.
+         * @throws IOException if an I/O error occurs.
+         */
+        public void write(T value) throws IOException {
+            for (;;) {
+                final int position = _buffer.position();
+                try {
+                    _format.write(value, _buffer);
+                    return;
+                } catch (BufferOverflowException e) {
+                    _buffer.position(position);
+                    if (position == 0) { // Value larger than the buffer.
+                        _buffer = allocate(_buffer, _buffer.capacity() << 1);
+                    } else {
+                        flush();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes all the specified values.
+         *
+         * @param  values the values to write.
+         * @throws IOException if an I/O error occurs.
+         */
+        public void writeAll(Iterable<? extends T> values) throws IOException {
+            for (T value : values) {
+                write(value);
+            }
+        }
+
+        /**
+         * Writes the buffered values to the channel.
+         *
+         * @throws IOException if an I/O error occurs.
+         */
+        public void flush() throws IOException {
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+            _buffer.clear();
+        }
+    }
+
+    /**
+     * <p> This class represents a reader of values from a (blocking) channel
+     *     through a buffer (refilled when a value is incomplete, enlarged
+     *     when a single value does not fit).</p>
+     *
+     * <p> Instances of this class are not thread-safe.</p>
+     */
+    public static final class Reader<T> {
+
+        private final BinaryFormat<T> _format;
+
+        private final ReadableByteChannel _channel;
+
+        private ByteBuffer _buffer;
+
+        private boolean _isEndOfStream;
+
+        /**
+         * Creates a reader using a 64 KB buffer.
+         *
+         * @param format the format of the values read.
+         * @param channel the source channel.
+         */
+        public Reader(BinaryFormat<T> format, ReadableByteChannel channel) {
+            this(format, channel, ByteBuffer.allocate(1 << 16));
+        }
+
+        /**
+         * Creates a reader using the specified buffer (e.g. a direct buffer
+         * or a buffer having a different byte order).
+         *
+         * @param format the format of the values read.
+         * @param channel the source channel.
+         * @param buffer the initial buffer.
+         */
+        public Reader(BinaryFormat<T> format, ReadableByteChannel channel,
+                ByteBuffer buffer) {
+            _format = format;
+            _channel = channel;
+            _buffer = buffer;
+            _buffer.clear().flip(); // Empty.
+        }
+
+        /**
+         * Reads the next value.
+         *
+         * @return the value read or <code>null</code> if the end of stream
+         *         has been reached.
+         * @throws EOFException if the stream ends in the middle of a value.
+         * @throws IOException if an I/O error occurs.
+         * @throws IllegalArgumentException if the representation is invalid.
+         */
+        public T read() throws IOException {
+            if (!_buffer.hasRemaining() && !fill())
+                return null;
+            for (;;) {
+                final int position = _buffer.position();
+                try {
+                    return _format.read(_buffer);
+                } catch (BufferUnderflowException e) {
+                    _buffer.position(position);
+                    if (!fill())
+                        throw new EOFException("Incomplete value at end of stream");
+                }
+            }
+        }
+
+        /**
+         * Reads all the remaining values.
+         *
+         * @param  values the collection the values read are added to.
+         * @return the number of values read.
+         * @throws IOException if an I/O error occurs.
+         */
+        public int readAll(Collection<? super T> values) throws IOException {
+            int count = 0;
+            for (T value = read(); value != null; value = read()) {
+                values.add(value);
+                count++;
+            }
+            return count;
+        }
+
+        // Reads more bytes, returns false if the end of stream is reached.
+        private boolean fill() throws IOException {
+            if (_isEndOfStream)
+                return false;
+            _buffer.compact();
+            if (!_buffer.hasRemaining()) { // Value larger than the buffer.
+                _buffer.flip();
+                final ByteBuffer larger = allocate(_buffer, _buffer.capacity() << 1);
+                larger.put(_buffer);
+                _buffer = larger;
+            }
+            int n;
+            do {
+                n = _channel.read(_buffer);
+            } while (n == 0);
+            _buffer.flip();
+            if (n < 0) {
+                _isEndOfStream = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // Returns a new buffer of the same kind and byte order as the one specified.
+    private static ByteBuffer allocate(ByteBuffer buffer, int capacity) {
+        final ByteBuffer larger = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity)
+                : ByteBuffer.allocate(capacity);
+        return larger.order(buffer.order());
+    }
+}
@@ -68,8 +68,8 @@ final class Calculus {
         }
         while (true) {
             if (sum == 0) {
-                while (i < xSize) {
-                    z[i] = x[i++];
+                if (z != x) { // Nothing to copy if in place.
+                    System.arraycopy(x, i, z, i, xSize - i);
                 }
                 return xSize;
             }
@@ -83,6 +83,25 @@ final class Calculus {
         }
     }
 
+    /**
+     * x[offset, ...] += y
+     * Preconditions: x has room for the carry
+     */
+    static void add(long[] x, int offset, long[] y, int ySize) {
+        long sum = 0;
+        int i = offset;
+        for (int j = 0; j < ySize; j++) {
+            sum += x[i] + y[j];
+            x[i++] = sum & MASK_63;
+            sum >>>= 63;
+        }
+        while (sum != 0) {
+            sum += x[i];
+            x[i++] = sum & MASK_63;
+            sum >>>= 63;
+        }
+    }
+
     /**
      * z = x - y
      * Preconditions: x >= y
@@ -101,9 +120,9 @@ final class Calculus {
             z[i++] = diff & MASK_63;
             diff >>= 63; // Equals to -1 if borrow.
         }
-        // Copies rest of x to z.
-        while (i < xSize) {
-            z[i] = x[i++];
+        // Copies rest of x to z (nothing to copy if in place).
+        if ((z != x) && (i < xSize)) {
+            System.arraycopy(x, i, z, i, xSize - i);
         }
         // Calculates size.
         for (int j = xSize; j > 0;) {
@@ -136,19 +155,16 @@ final class Calculus {
     static int shiftLeft(int wordShift, int bitShift, long[] x, int xSize,
             long[] z) {
         final int shiftRight = 63 - bitShift;
-        int i = xSize;
-        int j = xSize + wordShift;
-        long tmp = x[--i];
-        long high = tmp >>> shiftRight;
+        final long high = x[xSize - 1] >>> shiftRight;
         if (high != 0) {
-            z[j] = high;
+            z[xSize + wordShift] = high;
         }
-        while (i > 0) {
-            z[--j] = ((tmp << bitShift) & MASK_63)
-                    | ((tmp = x[--i]) >>> shiftRight);
+        // Independent loads (no value carried between iterations).
+        for (int i = xSize - 1, j = xSize + wordShift - 1; i > 0; i--, j--) {
+            z[j] = ((x[i] << bitShift) & MASK_63) | (x[i - 1] >>> shiftRight);
         }
-        z[--j] = (tmp << bitShift) & MASK_63;
-        while (j > 0) {
+        z[wordShift] = (x[0] << bitShift) & MASK_63;
+        for (int j = wordShift; j > 0;) {
             z[--j] = 0;
         }
         return (high != 0) ? xSize + wordShift + 1 : xSize + wordShift;
@@ -180,7 +196,7 @@ final class Calculus {
      * @return z size 
      */
     static int multiply(long[] x, int xSize, long y, long[] z) {
-        return multiply(x, xSize, y, z, 0);
+        return multiply(x, 0, xSize, y, z, 0);
     }
 
     /**
@@ -191,19 +207,68 @@ final class Calculus {
     static int multiply(long[] x, int xSize, long[] y, int ySize, long[] z) {
         int zSize = 0;
         for (int i = 0; i < ySize;) {
-            zSize = multiply(x, xSize, y[i], z, i++);
+            zSize = multiply(x, 0, xSize, y[i], z, i++);
         }
         return zSize;
     }
 
-    // Multiplies by k, add to z if shift != 0
-    private static int multiply(long[] x, int xSize, long k, long[] z, int shift) {
+    /**
+     * z = x * x
+     * Preconditions: xSize != 0, z.length >= 2 * xSize, z != x
+     * @return z size 
+     */
+    static int square(long[] x, int xSize, long[] z) {
+        final int zSize = xSize << 1;
+        for (int i = 0; i < zSize;) {
+            z[i++] = 0;
+        }
+        // Cross products (each computed once): sum x[i] * x[j] (i < j)
+        for (int i = 0; i < xSize - 1; i++) {
+            if (x[i] != 0) {
+                multiply(x, i + 1, xSize, x[i], z, (i << 1) + 1);
+            }
+        }
+        // Doubles cross products and adds the diagonal squares.
+        long shiftCarry = 0; // Bit shifted out by the doubling.
+        long carry = 0;
+        for (int i = 0; i < xSize; i++) {
+            final long w = x[i];
+            final long wl = w & MASK_32; // 32 bits
+            final long wh = w >>> 32; // 31 bits
+            // w * w = low + high * 2^63
+            long tmp = wl * wl; // 64 bits
+            long low = tmp & MASK_63;
+            long high = tmp >>> 63;
+            tmp = wl * wh; // 63 bits, 2 * tmp * 2^32
+            low += (tmp << 33) & MASK_63;
+            high += (low >>> 63) + (tmp >>> 30) + ((wh * wh) << 1);
+            low &= MASK_63;
+
+            final int j = i << 1;
+            long zz = z[j];
+            long sum = (((zz << 1) & MASK_63) | shiftCarry) + low + carry;
+            shiftCarry = zz >>> 62;
+            z[j] = sum & MASK_63;
+            carry = sum >>> 63;
+
+            zz = z[j + 1];
+            sum = (((zz << 1) & MASK_63) | shiftCarry) + high + carry;
+            shiftCarry = zz >>> 62;
+            z[j + 1] = sum & MASK_63;
+            carry = sum >>> 63;
+        }
+        return (z[zSize - 1] == 0) ? zSize - 1 : zSize;
+    }
+
+    // Multiplies x[from, xSize[ by k, add to z if shift != 0
+    private static int multiply(long[] x, int from, int xSize, long k, long[] z, int shift) {
 
         final long kl = k & MASK_32; // 32 bits.
         final long kh = k >> 32; // 31 bits
+        final long ks = kl + kh; // 33 bits
 
         long carry = 0; // 63 bits
-        for (int i = 0, j = shift; i < xSize;) {
+        for (int i = from, j = shift; i < xSize;) {
 
             // Adds carry.
             long zz = (shift == 0) ? carry : z[j] + carry; // 63 bits.
@@ -214,32 +279,178 @@ final class Calculus {
             final long w = x[i++];
             final long wl = w & MASK_32; // 32 bits
             final long wh = w >> 32; // 31 bits
+            final long low = wl * kl; // 64 bits
+            final long high = wh * kh; // 62 bits
 
             // Adds low.
-            long tmp = wl * kl; // 64 bits
-            carry += tmp >>> 63;
-            zz += tmp & MASK_63; // 64 bits.
+            carry += low >>> 63;
+            zz += low & MASK_63; // 64 bits.
             carry += zz >>> 63;
             zz &= MASK_63;
 
-            // Adds middle.
-            tmp = wl * kh + wh * kl; // 64 bits.
+            // Adds middle (wl * kh + wh * kl, exact modulo 2^64).
+            long tmp = (wl + wh) * ks - low - high; // 64 bits.
             carry += tmp >>> 31;
             zz += (tmp << 32) & MASK_63; // 64 bits.
             carry += zz >>> 63;
             z[j++] = zz & MASK_63;
 
             // Adds high to carry.
-            carry += (wh * kh) << 1;
+            carry += high << 1;
 
         }
-        int size = shift + xSize;
+        int size = shift + xSize - from;
         z[size] = carry;
         if (carry == 0)
             return size;
         return ++size;
     }
 
+    /**
+     * z = x / 2^(63 * mSize) mod m (Montgomery reduction)
+     * Preconditions: m odd, x < m * 2^(63 * mSize), x.length > 2 * mSize
+     *                (words above x size being zero), 
+     *                inverse = -1/m mod 2^63, x is overwritten
+     * @return z size (z < m)
+     */
+    static int montgomeryReduce(long[] x, long[] m, int mSize, long inverse, 
+            long[] z) {
+        long high = 0; // Carry out of x[2 * mSize - 1]
+        for (int i = 0; i < mSize; i++) {
+            final long u = (x[i] * inverse) & MASK_63; // x[i] + u * m[0] = 0
+            final long sum = x[i + mSize] + multiplyAdd(m, mSize, u, x, i) + high;
+            x[i + mSize] = sum & MASK_63;
+            high = sum >>> 63;
+        }
+        boolean subtract = high != 0;
+        if (!subtract) {
+            int i = mSize;
+            while ((--i >= 0) && (x[i + mSize] == m[i])) {
+            }
+            subtract = (i < 0) || (x[i + mSize] > m[i]);
+        }
+        if (subtract) { // Result in [m, 2m[
+            long diff = 0;
+            for (int i = 0; i < mSize; i++) {
+                diff += x[i + mSize] - m[i];
+                z[i] = diff & MASK_63;
+                diff >>= 63; // Equals to -1 if borrow.
+            }
+        } else {
+            System.arraycopy(x, mSize, z, 0, mSize);
+        }
+        for (int i = mSize; i > 0;) {
+            if (z[--i] != 0)
+                return i + 1;
+        }
+        return 0;
+    }
+
+    // z[offset, offset + xSize[ += x * k, returns the carry (63 bits).
+    private static long multiplyAdd(long[] x, int xSize, long k, long[] z,
+            int offset) {
+        final long kl = k & MASK_32; // 32 bits.
+        final long kh = k >>> 32; // 31 bits
+        final long ks = kl + kh; // 33 bits
+
+        long carry = 0; // 63 bits
+        for (int i = 0, j = offset; i < xSize;) {
+            long zz = z[j] + carry; // 64 bits.
+            carry = zz >>> 63;
+            zz &= MASK_63;
+
+            final long w = x[i++];
+            final long wl = w & MASK_32; // 32 bits
+            final long wh = w >>> 32; // 31 bits
+            final long low = wl * kl; // 64 bits
+            final long high = wh * kh; // 62 bits
+
+            // Adds low.
+            carry += low >>> 63;
+            zz += low & MASK_63; // 64 bits.
+            carry += zz >>> 63;
+            zz &= MASK_63;
+
+            // Adds middle (wl * kh + wh * kl, exact modulo 2^64).
+            long tmp = (wl + wh) * ks - low - high; // 64 bits.
+            carry += tmp >>> 31;
+            zz += (tmp << 32) & MASK_63; // 64 bits.
+            carry += zz >>> 63;
+            z[j++] = zz & MASK_63;
+
+            // Adds high to carry.
+            carry += high << 1;
+        }
+        return carry;
+    }
+
+    /**
+     * z = a * x - b * y
+     * Preconditions: a, b positive (63 bits), a * x >= b * y,
+     *                z.length > max(xSize, ySize)
+     * @return z size
+     */
+    static int combine(long a, long[] x, int xSize, long b, long[] y,
+            int ySize, long[] z) {
+        final int size = (xSize > ySize) ? xSize : ySize;
+        long carryX = 0; // 63 bits
+        long carryY = 0; // 63 bits
+        long borrow = 0; // 0 or -1
+        for (int i = 0; i < size; i++) {
+            final long xi = (i < xSize) ? x[i] : 0;
+            long lowX = ((a * xi) & MASK_63) + carryX; // 64 bits
+            carryX = multiplyHigh(a, xi) + (lowX >>> 63);
+
+            final long yi = (i < ySize) ? y[i] : 0;
+            long lowY = ((b * yi) & MASK_63) + carryY; // 64 bits
+            carryY = multiplyHigh(b, yi) + (lowY >>> 63);
+
+            final long diff = (lowX & MASK_63) - (lowY & MASK_63) + borrow;
+            z[i] = diff & MASK_63;
+            borrow = diff >> 63; // Equals to -1 if borrow.
+        }
+        final long high = carryX - carryY + borrow;
+        if (high != 0) {
+            z[size] = high;
+            return size + 1;
+        }
+        for (int i = size; i > 0;) {
+            if (z[--i] != 0)
+                return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * z = a * x + b * y
+     * Preconditions: a, b positive (less than 2^62), 
+     *                z.length > max(xSize, ySize)
+     * @return z size
+     */
+    static int addProducts(long a, long[] x, int xSize, long b, long[] y,
+            int ySize, long[] z) {
+        final int size = (xSize > ySize) ? xSize : ySize;
+        long carry = 0; // 63 bits
+        for (int i = 0; i < size; i++) {
+            final long xi = (i < xSize) ? x[i] : 0;
+            final long yi = (i < ySize) ? y[i] : 0;
+            long sum = ((a * xi) & MASK_63) + carry; // 64 bits
+            carry = multiplyHigh(a, xi) + multiplyHigh(b, yi) + (sum >>> 63);
+            sum = (sum & MASK_63) + ((b * yi) & MASK_63); // 64 bits
+            carry += sum >>> 63;
+            z[i] = sum & MASK_63;
+        }
+        if (carry != 0) {
+            z[size] = carry;
+            return size + 1;
+        }
+        for (int i = size; i > 0;) {
+            if (z[--i] != 0)
+                return i + 1;
+        }
+        return 0;
+    }
+
     /**
      * z = x / y
      * Preconditions: y is positive (31 bits).
@@ -263,6 +474,270 @@ final class Calculus {
         return r;
     }
 
+    /**
+     * x % y
+     * Preconditions: y is positive (31 bits).
+     * @return remainder
+     */
+    static long remainder(long[] x, int xSize, int y) {
+        long r = 0;
+        for (int i = xSize; i > 0;) {
+            long w = x[--i];
+            r = ((r << 31) | (w >>> 32)) % y;
+            r = ((r << 32) | (w & MASK_32)) % y;
+        }
+        return r;
+    }
+
+    /**
+     * (x * y) % m
+     * Preconditions: x < m, y < m, m is positive (63 bits).
+     * @return the modular product
+     */
+    static long multiplyMod(long x, long y, long m) {
+        if ((m >>> 31) == 0) // x * y < 2^62
+            return x * y % m;
+        final int shift = Long.numberOfLeadingZeros(m) - 1; // Normalizes.
+        final long high = multiplyHigh(x, y);
+        final long low = (x * y) & MASK_63;
+        final long q = divide((high << shift) | (low >>> (63 - shift)),
+                (low << shift) & MASK_63, m << shift);
+        return (low - q * m) & MASK_63; // Exact (less than m).
+    }
+
+    /**
+     * (x * y) % m (Barrett reduction)
+     * Preconditions: x < m, y < m, m < 2^62 is k bits long and
+     *                mu = (2^(2k) - 1) / m
+     * @return the modular product
+     */
+    static long multiplyMod(long x, long y, long m, long mu, int k) {
+        final long t = x * y; // Low 64 bits.
+        final long a = (multiplyHigh(x, y) << (64 - k))
+                | ((t & MASK_63) >>> (k - 1)); // t >> (k - 1)
+        final long q = (multiplyHigh(a, mu) << (62 - k))
+                | (((a * mu) & MASK_63) >>> (k + 1)); // (a * mu) >> (k + 1)
+        long r = t - q * m; // Exact (less than 4 * m, unsigned).
+        while (!isGreater(m, r)) {
+            r -= m;
+        }
+        return r;
+    }
+
+    /**
+     * Holds the value returned by the exact operations on overflow
+     * (never the value of a single word large integer).
+     */
+    static final long OVERFLOW = Long.MIN_VALUE;
+
+    /**
+     * x + y
+     * Preconditions: |x|, |y| < 2^63
+     * @return the sum or OVERFLOW if |x + y| >= 2^63
+     */
+    static long addExact(long x, long y) {
+        final long sum = x + y;
+        return (((x ^ sum) & (y ^ sum)) < 0) ? OVERFLOW : sum;
+    }
+
+    /**
+     * x * y
+     * Preconditions: |x|, |y| < 2^63
+     * @return the product or OVERFLOW if |x * y| >= 2^63
+     */
+    static long multiplyExact(long x, long y) {
+        final long ax = (x < 0) ? -x : x;
+        final long ay = (y < 0) ? -y : y;
+        if ((((ax | ay) >>> 31) != 0) && (multiplyHigh(ax, ay) != 0))
+            return OVERFLOW; // More than 63 bits.
+        return x * y;
+    }
+
+    /**
+     * Greatest common divisor (binary GCD)
+     * Preconditions: x, y positive or zero
+     * @return gcd(x, y)
+     */
+    static long gcd(long x, long y) {
+        if (x == 0)
+            return y;
+        if (y == 0)
+            return x;
+        final int shift = Long.numberOfTrailingZeros(x | y);
+        x >>>= Long.numberOfTrailingZeros(x);
+        while (y != 0) {
+            y >>>= Long.numberOfTrailingZeros(y);
+            if (x > y) {
+                final long tmp = x;
+                x = y;
+                y = tmp; // Swaps.
+            }
+            y -= x;
+        }
+        return x << shift;
+    }
+
+    /**
+     * q = x / y, x = x % y (Knuth, Algorithm D)
+     * Preconditions: y normalized (y[ySize - 1] >= 2^62), xSize >= ySize,
+     *                x.length > xSize, q.length > xSize - ySize
+     * @return q size (the remainder size is at most ySize)
+     */
+    static int divide(long[] x, int xSize, long[] y, int ySize, long[] q) {
+        x[xSize] = 0;
+        final int qSize = xSize - ySize + 1;
+        final long yTop = y[ySize - 1];
+        if (ySize == 1) {
+            long r = 0;
+            for (int i = xSize; --i >= 0;) {
+                final long w = x[i];
+                final long qi = divide(r, w, yTop);
+                r = (w - qi * yTop) & MASK_63;
+                q[i] = qi;
+                x[i] = 0;
+            }
+            x[0] = r;
+        } else {
+            final long yNext = y[ySize - 2];
+            for (int j = qSize; --j >= 0;) {
+                final long uTop = x[j + ySize];
+                final long uNext = x[j + ySize - 1];
+                long qHat;
+                long rHat; // Unsigned.
+                if (uTop >= yTop) { // uTop == yTop
+                    qHat = MASK_63;
+                    rHat = uNext + yTop;
+                } else {
+                    qHat = divide(uTop, uNext, yTop);
+                    rHat = (uNext - qHat * yTop) & MASK_63;
+                }
+                // Refines the estimate (at most two corrections).
+                while ((rHat >>> 63) == 0) {
+                    final long high = multiplyHigh(qHat, yNext);
+                    if ((high < rHat) || ((high == rHat)
+                            && (((qHat * yNext) & MASK_63) <= x[j + ySize - 2])))
+                        break;
+                    qHat--;
+                    rHat += yTop;
+                }
+                if (multiplySubtract(x, j, y, ySize, qHat) != 0) { // Adds back.
+                    qHat--;
+                    long sum = 0;
+                    for (int i = 0; i <= ySize; i++) {
+                        sum += x[i + j] + ((i < ySize) ? y[i] : 0);
+                        x[i + j] = sum & MASK_63;
+                        sum >>>= 63;
+                    }
+                }
+                q[j] = qHat;
+            }
+        }
+        return (q[qSize - 1] == 0) ? qSize - 1 : qSize;
+    }
+
+    // x[offset, offset + ySize] -= y * k
+    // Returns 0 or -1 (borrow, the result is then x + 2^(63*(ySize+1)))
+    private static long multiplySubtract(long[] x, int offset, long[] y, int ySize, long k) {
+        final long kl = k & MASK_32; // 32 bits.
+        final long kh = k >>> 32; // 31 bits
+
+        long carry = 0; // 63 bits
+        long borrow = 0; // 0 or -1
+        for (int i = 0; i < ySize; i++) {
+            final long w = y[i];
+            final long wl = w & MASK_32; // 32 bits
+            final long wh = w >>> 32; // 31 bits
+
+            long zz = carry; // 63 bits
+            carry = 0;
+
+            // Adds low.
+            long tmp = wl * kl; // 64 bits
+            carry += tmp >>> 63;
+            zz += tmp & MASK_63; // 64 bits.
+            carry += zz >>> 63;
+            zz &= MASK_63;
+
+            // Adds middle.
+            tmp = wl * kh + wh * kl; // 64 bits.
+            carry += tmp >>> 31;
+            zz += (tmp << 32) & MASK_63; // 64 bits.
+            carry += zz >>> 63;
+            zz &= MASK_63;
+
+            // Adds high to carry.
+            carry += (wh * kh) << 1;
+
+            final long diff = x[offset + i] - zz + borrow;
+            x[offset + i] = diff & MASK_63;
+            borrow = diff >> 63; // Equals to -1 if borrow.
+        }
+        final long diff = x[offset + ySize] - carry + borrow;
+        x[offset + ySize] = diff & MASK_63;
+        return diff >> 63;
+    }
+
+    // Returns (high * 2^63 + low) / d
+    // Preconditions: high < d, d >= 2^62 (normalized)
+    private static long divide(long high, long low, long d) {
+        // Works with 64 bits normalized values: (2 * n) / (2 * d)
+        final long v = d << 1; // Unsigned.
+        final long vh = v >>> 32;
+        final long vl = v & MASK_32;
+        final long u = low << 1; // Unsigned.
+        final long uh = u >>> 32;
+        final long ul = u & MASK_32;
+
+        // First 32 bits quotient digit (high < 2^63 hence signed division).
+        long qh = high / vh;
+        long r = high - qh * vh;
+        while ((qh > MASK_32) || isGreater(qh * vl, (r << 32) | uh)) {
+            qh--;
+            r += vh;
+            if (r > MASK_32)
+                break;
+        }
+        final long rem = (high << 32) + uh - qh * v; // Unsigned, less than v.
+
+        // Second 32 bits quotient digit.
+        long ql = divideUnsigned(rem, vh);
+        r = rem - ql * vh;
+        while ((ql > MASK_32) || isGreater(ql * vl, (r << 32) | ul)) {
+            ql--;
+            r += vh;
+            if (r > MASK_32)
+                break;
+        }
+        return (qh << 32) + ql;
+    }
+
+    // Unsigned division by a positive divisor.
+    private static long divideUnsigned(long x, long y) {
+        if (x >= 0)
+            return x / y;
+        long q = ((x >>> 1) / y) << 1;
+        return isGreater(y, x - q * y) ? q : q + 1;
+    }
+
+    // Unsigned comparison.
+    private static boolean isGreater(long x, long y) {
+        return (x + Long.MIN_VALUE) > (y + Long.MIN_VALUE);
+    }
+
+    // Returns (x * y) >> 63 (x, y positive 63 bits)
+    private static long multiplyHigh(long x, long y) {
+        final long xl = x & MASK_32; // 32 bits
+        final long xh = x >>> 32; // 31 bits
+        final long yl = y & MASK_32;
+        final long yh = y >>> 32;
+        final long low = xl * yl; // 64 bits
+        final long high = xh * yh; // 62 bits
+        final long middle = (xl + xh) * (yl + yh) - low - high; // 64 bits
+        final long sum = (low >>> 32) + (middle & MASK_32); // 33 bits
+        return (high << 1) + (((middle >>> 32) + (sum >>> 32)) << 1)
+                + ((sum >>> 31) & 1);
+    }
+
     /**
      * Multiplication logic (for concurrent context)
      */
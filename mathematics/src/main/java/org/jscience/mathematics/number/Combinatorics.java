@@ -0,0 +1,277 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.context.ConcurrentContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class holds the product trees of {@link LargeInteger}
+ *     (factorial, binomial coefficients, primorial and products of many
+ *     factors).</p>
+ *
+ * <p> Small factors are first packed into 62 bits words, the words are then
+ *     multiplied by pairs in a balanced binary tree; most of the work is
+ *     done by the last multiplications between operands of similar size
+ *     (Karatsuba, Toom-Cook or FFT multiplications) instead of the
+ *     <code>O(n<sup>2</sup>)</code> of a sequential product. Large
+ *     sub-trees are evaluated concurrently (see
+ *     {@link LargeInteger#CONCURRENCY_THRESHOLD}).</p>
+ *
+ * <p> The factorial is calculated using Luschny's prime swing:
+ *     <code>n! = (n/2)!<sup>2</sup>·swing(n)</code>, the prime factorization
+ *     of <code>swing(n)</code> being known.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://www.luschny.de/math/factorial/FastFactorialFunctions.htm">
+ *      Luschny: Fast Factorial Functions</a>
+ */
+final class Combinatorics {
+
+    /**
+     * Default constructor (private for utilities).
+     */
+    private Combinatorics() {
+    }
+
+    /**
+     * Holds the factorials fitting in a <code>long</code>.
+     */
+    private static final long[] FACTORIALS = factorials(21);
+
+    /**
+     * Holds the maximum <code>n</code> for which binomial coefficients are
+     * calculated from their prime factorization (primes sieved up
+     * to <code>n</code>).
+     */
+    private static final int FACTORIZATION_LIMIT = 1 << 24;
+
+    /**
+     * Returns the factorial of the specified integer.
+     *
+     * @param n the positive integer or zero.
+     * @return <code>n!</code>
+     */
+    static LargeInteger factorial(int n) {
+        if (n < FACTORIALS.length)
+            return LargeInteger.valueOf(FACTORIALS[n]);
+        final int[] primes = Primes.primes(n);
+        return oddFactorial(n, primes).shiftLeft(n - Integer.bitCount(n));
+    }
+
+    /**
+     * Returns the binomial coefficient <code>n</code> choose <code>k</code>.
+     *
+     * @param n the positive integer or zero.
+     * @param k the number of elements chosen.
+     * @return <code>n! / (k!·(n-k)!)</code> or <code>0</code> if
+     *         <code>k &lt; 0</code> or <code>k &gt; n</code>.
+     */
+    static LargeInteger binomial(int n, int k) {
+        if ((k < 0) || (k > n))
+            return LargeInteger.ZERO;
+        k = MathLib.min(k, n - k);
+        if (k == 0)
+            return LargeInteger.ONE;
+        if ((n > FACTORIZATION_LIMIT) || (k < 16)) { // (n-k+1)···n / k!
+            final long[] factors = new long[k];
+            for (int i = 0; i < k; i++) {
+                factors[i] = n - i;
+            }
+            return productOf(factors, k).divide(factorial(k));
+        }
+        // Kummer: the exponent of p is the number of carries when adding
+        // k and n-k in base p.
+        final int[] primes = Primes.primes(n);
+        final long[] factors = new long[primes.length + 1];
+        int count = 0;
+        final int twos = Integer.bitCount(k) + Integer.bitCount(n - k)
+                - Integer.bitCount(n); // Carries of k + (n-k) in base 2.
+        for (int i = 0; i < primes.length; i++) {
+            final int p = primes[i];
+            if (p > n - k) { // Exponent one.
+                factors[count++] = p;
+                continue;
+            }
+            if (p > n / 2)
+                continue; // Exponent zero (p <= n-k, k < p).
+            long f = 1;
+            for (long q = p; q <= n; q *= p) {
+                if ((n / q) - (k / q) - ((n - k) / q) != 0) {
+                    f *= p;
+                }
+            }
+            if (f != 1) {
+                factors[count++] = f;
+            }
+        }
+        return productOf(factors, count).shiftLeft(twos);
+    }
+
+    /**
+     * Returns the product of the primes less than or equal to the specified
+     * integer.
+     *
+     * @param n the integer.
+     * @return <code>n#</code>
+     */
+    static LargeInteger primorial(int n) {
+        if (n < 2)
+            return LargeInteger.ONE;
+        final int[] primes = Primes.primes(n);
+        final long[] factors = new long[primes.length];
+        for (int i = 0; i < primes.length; i++) {
+            factors[i] = primes[i];
+        }
+        return productOf(factors, factors.length).shiftLeft(1);
+    }
+
+    /**
+     * Returns the product of the specified <code>long</code> values.
+     *
+     * @param values the factors.
+     * @param length the number of factors.
+     * @return <code>values[0]·values[1]···values[length-1]</code>
+     */
+    static LargeInteger productOf(long[] values, int length) {
+        // Packs the factors into 62 bits words.
+        final LargeInteger[] words = new LargeInteger[length + 1];
+        int count = 0;
+        boolean isNegative = false;
+        long word = 1;
+        for (int i = 0; i < length; i++) {
+            long v = values[i];
+            if (v == 0)
+                return LargeInteger.ZERO;
+            if (v < 0) {
+                isNegative = !isNegative;
+                if (v == Long.MIN_VALUE) {
+                    words[count++] = LargeInteger.valueOf(v).opposite();
+                    continue;
+                }
+                v = -v;
+            }
+            if ((128 - Long.numberOfLeadingZeros(word)
+                    - Long.numberOfLeadingZeros(v)) > 62) {
+                words[count++] = LargeInteger.valueOf(word);
+                word = v;
+            } else {
+                word *= v;
+            }
+        }
+        words[count++] = LargeInteger.valueOf(word);
+        final LargeInteger product = productOf(words, count);
+        return isNegative ? product.opposite() : product;
+    }
+
+    /**
+     * Returns the product of the specified large integers.
+     *
+     * @param values the factors.
+     * @param length the number of factors.
+     * @return <code>values[0]·values[1]···values[length-1]</code>
+     */
+    static LargeInteger productOf(LargeInteger[] values, int length) {
+        if (length == 0)
+            return LargeInteger.ONE;
+        final int[] sizes = new int[length + 1]; // Cumulated sizes.
+        for (int i = 0; i < length; i++) {
+            sizes[i + 1] = sizes[i] + values[i].size();
+        }
+        return product(values, 0, length, sizes);
+    }
+
+    // Returns the product of values[from..to), the two halves being
+    // evaluated concurrently if both are large enough.
+    private static LargeInteger product(LargeInteger[] values, int from,
+            int to, int[] sizes) {
+        final int n = to - from;
+        if (n == 1)
+            return values[from];
+        if (n == 2)
+            return values[from].times(values[from + 1]);
+        final int mid = (from + to) >>> 1;
+        final int size = MathLib.min(sizes[mid] - sizes[from], sizes[to]
+                - sizes[mid]);
+        if ((size < LargeInteger.threshold(LargeInteger.CONCURRENCY_THRESHOLD))
+                || (ConcurrentContext.getConcurrency() == 0))
+            return product(values, from, mid, sizes).times(
+                    product(values, mid, to, sizes));
+        final Subtree low = new Subtree(values, from, mid, sizes);
+        final Subtree high = new Subtree(values, mid, to, sizes);
+        ConcurrentContext.enter();
+        try {
+            ConcurrentContext.execute(low);
+            ConcurrentContext.execute(high);
+        } finally {
+            ConcurrentContext.exit();
+        }
+        return low._value.times(high._value);
+    }
+
+    // Returns the odd part of n!, oddFactorial(n/2)^2 · oddSwing(n).
+    private static LargeInteger oddFactorial(int n, int[] primes) {
+        if (n < FACTORIALS.length)
+            return LargeInteger.valueOf(FACTORIALS[n]
+                    >> Long.numberOfTrailingZeros(FACTORIALS[n]));
+        return oddFactorial(n >> 1, primes).square().times(oddSwing(n, primes));
+    }
+
+    // Returns the odd part of n! / ((n/2)!)^2, the exponent of p being the
+    // number of odd quotients n / p^i, i > 0.
+    private static LargeInteger oddSwing(int n, int[] primes) {
+        final long[] factors = new long[primes.length];
+        int count = 0;
+        for (int i = 0; (i < primes.length) && (primes[i] <= n); i++) {
+            final int p = primes[i];
+            long f = 1;
+            for (int q = n / p; q != 0; q /= p) {
+                if ((q & 1) != 0) {
+                    f *= p;
+                }
+            }
+            if (f != 1) {
+                factors[count++] = f;
+            }
+        }
+        return productOf(factors, count);
+    }
+
+    // Returns the factorials 0! to (n-1)!.
+    private static long[] factorials(int n) {
+        final long[] factorials = new long[n];
+        factorials[0] = 1;
+        for (int i = 1; i < n; i++) {
+            factorials[i] = factorials[i - 1] * i;
+        }
+        return factorials;
+    }
+
+    /**
+     * Product of a sub-tree (for concurrent context).
+     */
+    private static final class Subtree implements Runnable {
+        private final LargeInteger[] _values;
+        private final int _from, _to;
+        private final int[] _sizes;
+        private LargeInteger _value;
+
+        Subtree(LargeInteger[] values, int from, int to, int[] sizes) {
+            _values = values;
+            _from = from;
+            _to = to;
+            _sizes = sizes;
+        }
+
+        public void run() {
+            _value = product(_values, _from, _to, _sizes);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import javolution.context.LocalContext;
 import javolution.context.ObjectFactory;
+import javolution.lang.MathLib;
 import javolution.text.CharSet;
 import javolution.text.Cursor;
 import javolution.text.TextBuilder;
@@ -47,6 +48,17 @@ import javolution.text.TypeFormat;
  *     high-precision decimal is often required, the primitive type
  *     <code>double</code> being not accurate enough to resolve equations
  *     when the matrix's size exceeds 100x100.</p>
+ *
+ * <p> Significands of up to 18 digits are held in a primitive
+ *     <code>long</code> (compact form); arithmetic on compact decimals
+ *     detects overflows exactly and switches to {@link LargeInteger}
+ *     significands only when the result does not fit.</p>
+ *
+ * <p> Sums of products and sums of many decimals should use the fused
+ *     operations {@link #multiplyAdd multiplyAdd}, {@link #dot dot} and
+ *     {@link #sum sum}; the terms are accumulated exactly at a common
+ *     exponent and the result is normalized (rounded to the current
+ *     number of {@link #getDigits digits}) only once.</p>
  * 
  * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
  * @version 5.0, November 20, 200(
@@ -176,7 +188,23 @@ public final class Decimal extends NumberField<Decimal> {
             20);
 
     /**
-     * Holds the significand value.
+     * Holds the largest compact significand magnitude (18 digits).
+     */
+    private static final long MAX_COMPACT = 999999999999999999L;
+
+    /**
+     * Holds the compact value of significands which are not compact.
+     */
+    private static final long INFLATED = Calculus.OVERFLOW;
+
+    /**
+     * Holds the significand value if compact or {@link #INFLATED}.
+     */
+    private long _compact;
+
+    /**
+     * Holds the significand value (<code>null</code> for compact 
+     * significands created from <code>long</code> values).
      */
     private LargeInteger _significand;
 
@@ -202,6 +230,7 @@ public final class Decimal extends NumberField<Decimal> {
      */
     public Decimal(LargeInteger significand, int exponent) {
         _significand = significand;
+        _compact = compact(significand);
         _exponent = exponent;
     }
 
@@ -228,10 +257,29 @@ public final class Decimal extends NumberField<Decimal> {
     public static Decimal valueOf(LargeInteger significand, int exponent) {
         Decimal fp = FACTORY.object();
         fp._significand = significand;
+        fp._compact = compact(significand);
+        fp._exponent = exponent;
+        return fp;
+    }
+
+    // Returns the decimal for the specified compact significand.
+    private static Decimal valueOfCompact(long significand, int exponent) {
+        Decimal fp = FACTORY.object();
+        fp._significand = null;
+        fp._compact = significand;
         fp._exponent = exponent;
         return fp;
     }
 
+    // Returns the compact form of the specified significand or INFLATED.
+    private static long compact(LargeInteger significand) {
+        if (significand.size() > 1)
+            return INFLATED;
+        long value = significand.longValue();
+        return ((value >= -MAX_COMPACT) && (value <= MAX_COMPACT)) ? value
+                : INFLATED;
+    }
+
     /**
      * Convenience method equivalent to
      * {@link #valueOf(org.jscience.mathematics.number.LargeInteger, int)
@@ -242,6 +290,8 @@ public final class Decimal extends NumberField<Decimal> {
      * @return the decimal number <code>(significand · 10<sup>pow10</sup></code>
      */
     public static Decimal valueOf(long significand, int exponent) {
+        if ((significand >= -MAX_COMPACT) && (significand <= MAX_COMPACT))
+            return Decimal.valueOfCompact(significand, exponent);
         return Decimal.valueOf(LargeInteger.valueOf(significand), exponent);
     }
 
@@ -266,7 +316,7 @@ public final class Decimal extends NumberField<Decimal> {
      * @return the fixed point number <code>(value)</code>
      */
     public static Decimal valueOf(long value) {
-        return Decimal.valueOf(LargeInteger.valueOf(value), 0);
+        return Decimal.valueOf(value, 0);
     }
 
     /**
@@ -293,6 +343,8 @@ public final class Decimal extends NumberField<Decimal> {
     public static Decimal valueOf(BigDecimal bigDecimal) {
         BigInteger significand = bigDecimal.unscaledValue();
         int scale = bigDecimal.scale();
+        if (significand.bitLength() < 64)
+            return Decimal.valueOf(significand.longValue(), -scale);
         return Decimal.valueOf(LargeInteger.valueOf(significand), -scale);
     }
 
@@ -326,7 +378,7 @@ public final class Decimal extends NumberField<Decimal> {
      * @return this decimal significand.
      */
     public LargeInteger getSignificand() {
-        return _significand;
+        return (_significand != null) ? _significand : LargeInteger.valueOf(_compact);
     }
 
     /**
@@ -344,7 +396,7 @@ public final class Decimal extends NumberField<Decimal> {
      * @return <code>this == 0</code>
      */
     public boolean isZero() {
-        return _significand.isZero() && (this != NaN);
+        return (_compact == 0) && (this != NaN);
     }
 
     /**
@@ -353,7 +405,7 @@ public final class Decimal extends NumberField<Decimal> {
      * @return <code>this &gt; 0</code>
      */
     public boolean isPositive() {
-        return _significand.isPositive();
+        return (_compact != INFLATED) ? _compact > 0 : _significand.isPositive();
     }
 
     /**
@@ -362,7 +414,7 @@ public final class Decimal extends NumberField<Decimal> {
      * @return <code>this &lt; 0</code>
      */
     public boolean isNegative() {
-        return _significand.isNegative();
+        return (_compact != INFLATED) ? _compact < 0 : _significand.isNegative();
     }
 
     /**
@@ -385,7 +437,7 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal floor() {
         if (this == NaN)
             return NaN;
-        LargeInteger integralPart = _significand.E(_exponent);
+        LargeInteger integralPart = getSignificand().E(_exponent);
         return Decimal.valueOf(isNegative() ? integralPart.minus(LargeInteger.ONE) : integralPart);
     }
 
@@ -399,7 +451,7 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal ceil() {
         if (this == NaN)
             return NaN;
-        LargeInteger integralPart = _significand.E(_exponent);
+        LargeInteger integralPart = getSignificand().E(_exponent);
         return Decimal.valueOf(isNegative() ? integralPart : integralPart.plus(LargeInteger.ONE));
     }
 
@@ -413,7 +465,7 @@ public final class Decimal extends NumberField<Decimal> {
         if (this == NaN)
             throw new ArithmeticException("Cannot convert NaN to integer value");
         Decimal fp = this.plus(Decimal.valueOf(5, -1)).floor();
-        return fp._significand.E(fp._exponent);
+        return fp.getSignificand().E(fp._exponent);
     }
 
     /**
@@ -425,13 +477,14 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal sqrt() {
         if ((this == NaN) | this.isNegative())
             return NaN;
-        int digitsShift = DIGITS_PRECISION.get() * 2 - _significand.digitLength();
+        LargeInteger significand = getSignificand();
+        int digitsShift = DIGITS_PRECISION.get() * 2 - significand.digitLength();
         int exp = _exponent - digitsShift;
         if ((exp & 1) == 1) { // Ensures that exp is even.
             digitsShift++;
             exp--;
         }
-        LargeInteger scaledValue = _significand.E(digitsShift);
+        LargeInteger scaledValue = significand.E(digitsShift);
         return Decimal.valueOf(scaledValue.sqrt(), exp >> 1).normalize();
     }
 
@@ -439,6 +492,8 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal opposite() {
         if (this == NaN)
             return NaN;
+        if (_compact != INFLATED)
+            return Decimal.valueOfCompact(-_compact, _exponent);
         return Decimal.valueOf(_significand.opposite(), _exponent);
     }
 
@@ -449,8 +504,17 @@ public final class Decimal extends NumberField<Decimal> {
         if (this._exponent > that._exponent)
             return that.plus(this);
         int pow10Scaling = that._exponent - this._exponent;
-        LargeInteger thatScaled = that._significand.times10pow(pow10Scaling);
-        return Decimal.valueOf(_significand.plus(thatScaled), _exponent).normalize();
+        if ((this._compact != INFLATED) && (that._compact != INFLATED)
+                && (pow10Scaling < LargeInteger.LONG_POW_10.length)) {
+            long thatScaled = Calculus.multiplyExact(that._compact,
+                    LargeInteger.LONG_POW_10[pow10Scaling]);
+            long sum = (thatScaled != Calculus.OVERFLOW) ? Calculus.addExact(
+                    _compact, thatScaled) : Calculus.OVERFLOW;
+            if (sum != Calculus.OVERFLOW)
+                return Decimal.valueOf(sum, _exponent).normalize();
+        }
+        LargeInteger thatScaled = that.getSignificand().times10pow(pow10Scaling);
+        return Decimal.valueOf(getSignificand().plus(thatScaled), _exponent).normalize();
     }
 
     @Override
@@ -462,18 +526,27 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal times(Decimal that) {
         if ((this == NaN) | (that == NaN))
             return NaN;
+        if ((this._compact != INFLATED) && (that._compact != INFLATED)) {
+            long product = Calculus.multiplyExact(this._compact, that._compact);
+            if (product != Calculus.OVERFLOW)
+                return Decimal.valueOf(product,
+                        this._exponent + that._exponent).normalize();
+        }
+        if (this == that)
+            return Decimal.valueOf(getSignificand().square(), _exponent << 1).normalize();
         return Decimal.valueOf(
-                this._significand.times(that._significand),
+                this.getSignificand().times(that.getSignificand()),
                 this._exponent + that._exponent).normalize();
     }
 
     // Implements GroupMultiplicative
     public Decimal reciprocal() {
-        if (_significand.isZero())
+        if (_compact == 0)
             return NaN;
-        int pow10 = DIGITS_PRECISION.get() + _significand.digitLength();
+        LargeInteger significand = getSignificand();
+        int pow10 = DIGITS_PRECISION.get() + significand.digitLength();
         LargeInteger dividend = LargeInteger.ONE.times10pow(pow10);
-        return Decimal.valueOf(dividend.divide(_significand),
+        return Decimal.valueOf(dividend.divide(significand),
                 -pow10 - _exponent).normalize();
     }
 
@@ -484,35 +557,197 @@ public final class Decimal extends NumberField<Decimal> {
 
     @Override
     public Decimal divide(Decimal that) {
-        if ((this.isNaN()) | (that._significand.isZero()))
+        if ((this.isNaN()) | (that._compact == 0))
             return NaN;
-        int pow10 = DIGITS_PRECISION.get() + that._significand.digitLength();
-        LargeInteger dividend = _significand.E(pow10);
-        return Decimal.valueOf(dividend.divide(that._significand),
+        LargeInteger divisor = that.getSignificand();
+        int pow10 = DIGITS_PRECISION.get() + divisor.digitLength();
+        LargeInteger dividend = getSignificand().E(pow10);
+        return Decimal.valueOf(dividend.divide(divisor),
                 this._exponent - pow10 - that._exponent).normalize();
     }
 
+    /**
+     * Returns <code>this · multiplier + addend</code> with a single 
+     * normalization (the intermediate product is exact).
+     *
+     * @param multiplier the multiplier.
+     * @param addend the number to add to the product.
+     * @return <code>this · multiplier + addend</code>
+     */
+    public Decimal multiplyAdd(Decimal multiplier, Decimal addend) {
+        Accumulator sum = new Accumulator();
+        sum.addProduct(this, multiplier);
+        sum.add(addend);
+        return sum.result();
+    }
+
+    /**
+     * Returns the dot product of the specified decimal arrays with a 
+     * single normalization (the products and partial sums are exact).
+     *
+     * @param  x the first array.
+     * @param  y the second array.
+     * @return <code>x[0]·y[0] + x[1]·y[1] + ... + x[n-1]·y[n-1]</code>
+     * @throws IllegalArgumentException if the arrays have different lengths.
+     */
+    public static Decimal dot(Decimal[] x, Decimal[] y) {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("x length: " + x.length
+                    + " and y length: " + y.length + " should be the same");
+        Accumulator sum = new Accumulator();
+        for (int i = 0; i < x.length; i++) {
+            sum.addProduct(x[i], y[i]);
+        }
+        return sum.result();
+    }
+
+    /**
+     * Returns the sum of the specified decimal numbers with a single
+     * normalization (the partial sums are exact).
+     *
+     * @param  values the decimal numbers to sum.
+     * @return the sum of the specified values or {@link #ZERO} if none.
+     */
+    public static Decimal sum(Iterable<Decimal> values) {
+        Accumulator sum = new Accumulator();
+        for (Decimal value : values) {
+            sum.add(value);
+        }
+        return sum.result();
+    }
+
+    /**
+     * Accumulates exact sums at a common exponent (the smallest of the 
+     * terms exponent); the sum is held in a <code>long</code> as long as
+     * it does not overflow.
+     */
+    private static final class Accumulator {
+
+        long _compact; // The sum or the part of the sum held in a long.
+
+        LargeInteger _large; // The part of the sum which overflowed or null.
+
+        int _exponent = Integer.MAX_VALUE; // The common exponent.
+
+        boolean _isNaN;
+
+        void add(Decimal that) {
+            if (that == NaN) {
+                _isNaN = true;
+            } else if (that._compact != INFLATED) {
+                add(that._compact, that._exponent);
+            } else {
+                add(that._significand, that._exponent);
+            }
+        }
+
+        void addProduct(Decimal x, Decimal y) {
+            if ((x == NaN) | (y == NaN)) {
+                _isNaN = true;
+                return;
+            }
+            int exponent = x._exponent + y._exponent;
+            if ((x._compact != INFLATED) && (y._compact != INFLATED)) {
+                long product = Calculus.multiplyExact(x._compact, y._compact);
+                if (product != Calculus.OVERFLOW) {
+                    add(product, exponent);
+                    return;
+                }
+            }
+            add(x.getSignificand().times(y.getSignificand()), exponent);
+        }
+
+        void add(long significand, int exponent) {
+            if (significand == 0)
+                return;
+            if (exponent < _exponent) {
+                rescale(exponent);
+            }
+            int pow10Scaling = exponent - _exponent;
+            long scaled = (pow10Scaling < LargeInteger.LONG_POW_10.length) ? Calculus
+                    .multiplyExact(significand, LargeInteger.LONG_POW_10[pow10Scaling])
+                    : Calculus.OVERFLOW;
+            long sum = (scaled != Calculus.OVERFLOW) ? Calculus.addExact(
+                    _compact, scaled) : Calculus.OVERFLOW;
+            if (sum != Calculus.OVERFLOW) {
+                _compact = sum;
+            } else {
+                addLarge(LargeInteger.valueOf(significand).times10pow(pow10Scaling));
+            }
+        }
+
+        void add(LargeInteger significand, int exponent) {
+            if (significand.isZero())
+                return;
+            if (exponent < _exponent) {
+                rescale(exponent);
+            }
+            addLarge(significand.times10pow(exponent - _exponent));
+        }
+
+        // Sets the common exponent to the specified smaller exponent.
+        private void rescale(int exponent) {
+            int pow10Scaling = _exponent - exponent;
+            _exponent = exponent;
+            if ((_compact == 0) && (_large == null))
+                return; // Empty.
+            if (_large != null) {
+                _large = _large.times10pow(pow10Scaling);
+            }
+            long scaled = (pow10Scaling < LargeInteger.LONG_POW_10.length) ? Calculus
+                    .multiplyExact(_compact, LargeInteger.LONG_POW_10[pow10Scaling])
+                    : Calculus.OVERFLOW;
+            if (scaled == Calculus.OVERFLOW) {
+                addLarge(LargeInteger.valueOf(_compact).times10pow(pow10Scaling));
+                _compact = 0;
+            } else {
+                _compact = scaled;
+            }
+        }
+
+        private void addLarge(LargeInteger value) {
+            _large = (_large == null) ? value : _large.plus(value);
+        }
+
+        Decimal result() {
+            if (_isNaN)
+                return NaN;
+            if (_large == null)
+                return Decimal.valueOf(_compact, (_compact != 0) ? _exponent : 0).normalize();
+            return Decimal.valueOf(_large.plus(_compact), _exponent).normalize();
+        }
+    }
+
     // Implements abstract class Number.
     public Decimal abs() {
-        return this._significand.isNegative() ? this.opposite() : this;
+        return this.isNegative() ? this.opposite() : this;
     }
 
     // Implements abstract class Number.
     public long longValue() {
         if (this == NaN)
             return Long.MAX_VALUE;
-        return _significand.E(_exponent).longValue();
+        if ((_compact != INFLATED) && (_exponent <= 0)) 
+            return (-_exponent < LargeInteger.LONG_POW_10.length) ? _compact
+                    / LargeInteger.LONG_POW_10[-_exponent] : 0;
+        return getSignificand().E(_exponent).longValue();
     }
 
     // Implements abstract class Number.
     public double doubleValue() {
         if (this == NaN)
             return Double.NaN;
+        if (_compact != INFLATED)
+            return MathLib.toDoublePow10(_compact, _exponent);
         return FixedPoint.valueOf(_significand, _exponent).doubleValue();
     }
 
     // Implements abstract class Number.
     public BigDecimal decimalValue() {
+        if (_compact != INFLATED)
+            return BigDecimal.valueOf(_compact, -_exponent);
+        if (_significand.size() <= 1) // Fits in a long.
+            return BigDecimal.valueOf(_significand.longValue(), -_exponent);
         return new BigDecimal(_significand.asBigInteger(), -_exponent);
     }
 
@@ -522,10 +757,28 @@ public final class Decimal extends NumberField<Decimal> {
             return that.isNaN() ? 0 : 1;
         if (that.isNaN())
             return -1; // NaN is considered greater than !NaN
+        if ((this._compact != INFLATED) && (that._compact != INFLATED)) {
+            if ((this._compact < 0) != (that._compact < 0)) // Different signs.
+                return (this._compact < 0) ? -1 : 1;
+            long thisScaled = this._compact;
+            long thatScaled = that._compact;
+            int pow10Scaling = this._exponent - that._exponent;
+            if ((pow10Scaling > 0) && (pow10Scaling < LargeInteger.LONG_POW_10.length)) {
+                thisScaled = Calculus.multiplyExact(thisScaled,
+                        LargeInteger.LONG_POW_10[pow10Scaling]);
+            } else if ((pow10Scaling < 0) && (-pow10Scaling < LargeInteger.LONG_POW_10.length)) {
+                thatScaled = Calculus.multiplyExact(thatScaled,
+                        LargeInteger.LONG_POW_10[-pow10Scaling]);
+            } else if (pow10Scaling != 0) {
+                thisScaled = Calculus.OVERFLOW;
+            }
+            if ((thisScaled != Calculus.OVERFLOW) && (thatScaled != Calculus.OVERFLOW))
+                return (thisScaled < thatScaled) ? -1 : (thisScaled == thatScaled) ? 0 : 1;
+        }
 
         // Delegate to fixed point.
-        FixedPoint thisFP = FixedPoint.valueOf(this._significand, this._exponent);
-        FixedPoint thatFP = FixedPoint.valueOf(that._significand, that._exponent);
+        FixedPoint thisFP = FixedPoint.valueOf(this.getSignificand(), this._exponent);
+        FixedPoint thatFP = FixedPoint.valueOf(that.getSignificand(), that._exponent);
         return thisFP.compareTo(thatFP);
     }
 
@@ -533,6 +786,8 @@ public final class Decimal extends NumberField<Decimal> {
     public Decimal copy() {
         if (this == NaN)
             return NaN; // Maintains unicity.
+        if (_significand == null)
+            return Decimal.valueOfCompact(_compact, _exponent);
         return Decimal.valueOf(_significand, _exponent);
     }
 
@@ -540,10 +795,19 @@ public final class Decimal extends NumberField<Decimal> {
     // the number of digits to be used.
     private Decimal normalize() {
         int digits = Decimal.getDigits();
-        int thisDigits = this._significand.digitLength();
+        if ((_compact != INFLATED) && (digits >= 18))
+            return this; // Compact significands have at most 18 digits.
+        int thisDigits = (_compact != INFLATED) ? MathLib.digitLength(MathLib
+                .abs(_compact)) : this._significand.digitLength();
         if (thisDigits > digits) { // Scale down.
             int pow10 = digits - thisDigits; // Negative.
-            _significand = _significand.E(pow10);
+            if (_compact != INFLATED) { // Truncates toward zero as E.
+                _compact /= LargeInteger.LONG_POW_10[-pow10];
+                _significand = null;
+            } else {
+                _significand = _significand.E(pow10);
+                _compact = compact(_significand);
+            }
             long exponent = ((long) _exponent) - pow10;
             if (exponent > Integer.MAX_VALUE)
                 return NaN;
@@ -553,6 +817,16 @@ public final class Decimal extends NumberField<Decimal> {
         }
         return this;
     }
+
+    // Recomputes the compact form (absent from older serialized forms).
+    private Object readResolve() {
+        if (_significand == null)
+            return this;
+        if ((_exponent == Integer.MAX_VALUE) && _significand.isZero())
+            return NaN; // Maintains unicity.
+        return new Decimal(_significand, _exponent);
+    }
+
     private static final long serialVersionUID = 1L;
 
 }
@@ -0,0 +1,310 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.context.ConcurrentContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class holds Lenstra's elliptic curve factorization method
+ *     (see {@link Factorization}).</p>
+ *
+ * <p> Curves are in Montgomery form <code>b·y<sup>2</sup> = x<sup>3</sup>
+ *     + a·x<sup>2</sup> + x</code> (Suyama's parametrization, group order
+ *     divisible by 12); points are represented by their projective
+ *     coordinates <code>(X : Z)</code> in Montgomery representation (see
+ *     {@link Modulus}) and multiplied using the Montgomery ladder. Stage 1
+ *     multiplies the starting point by all the prime powers less than
+ *     <code>B1</code>, stage 2 (standard continuation) looks for a single
+ *     prime <code>q</code> in <code>]B1, B2]</code> with
+ *     <code>B2 = 100·B1</code>, pairing the points <code>r·Q</code> and
+ *     <code>2d·Q</code> such as <code>q = r + 2d</code>.</p>
+ *
+ * <p> The bounds increase with the factor size searched for; the curves
+ *     of a level are run concurrently (see {@link ConcurrentContext}).</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Lenstra_elliptic_curve_factorization">
+ *      Wikipedia: Lenstra Elliptic Curve Factorization</a>
+ */
+final class EllipticCurveMethod {
+
+    /**
+     * Holds the levels: factor digits, B1 and expected number of curves
+     * (GMP-ECM recommended parameters).
+     */
+    private static final int[][] LEVELS = { { 15, 2000, 25 },
+            { 20, 11000, 90 }, { 25, 50000, 300 }, { 30, 250000, 700 },
+            { 35, 1000000, 1800 }, { 40, 3000000, 5100 },
+            { 45, 11000000, 10600 } };
+
+    /**
+     * Holds the ratio B2 / B1.
+     */
+    private static final int B2_RATIO = 100;
+
+    /**
+     * Holds the modulus context of the number to factor (odd).
+     */
+    private final Modulus _modulus;
+
+    /**
+     * Holds the factorization this method is used by.
+     */
+    private final Factorization _factorization;
+
+    /**
+     * Holds the thread calling the factorization.
+     */
+    private final Thread _caller;
+
+    /**
+     * Holds the factor found by any curve or <code>null</code>.
+     */
+    private volatile LargeInteger _factor;
+
+    /**
+     * Creates the elliptic curve method for the specified modulus.
+     *
+     * @param modulus the composite to factor (odd, no small factor).
+     * @param factorization the factorization using this method.
+     */
+    EllipticCurveMethod(Modulus modulus, Factorization factorization) {
+        _modulus = modulus;
+        _factorization = factorization;
+        _caller = factorization.caller();
+    }
+
+    /**
+     * Searches for a factor by running the curves of the levels up to the
+     * specified factor size.
+     *
+     * @param  digits the factor digits up to which curves are run, or
+     *         <code>Integer.MAX_VALUE</code> to run curves until a factor
+     *         is found (the last level being repeated).
+     * @return a non-trivial factor or <code>null</code> if none found.
+     */
+    LargeInteger factor(int digits) {
+        final int concurrency = ConcurrentContext.getConcurrency() + 1;
+        for (int level = 0; (level < LEVELS.length) && (LEVELS[level][0] <= digits);) {
+            final int b1 = LEVELS[level][1];
+            final int[] primes = Primes.primes(b1);
+            for (int i = 0; i < LEVELS[level][2]; i += concurrency) {
+                final Curve[] curves = new Curve[concurrency];
+                for (int j = 0; j < concurrency; j++) {
+                    curves[j] = new Curve(6 + _factorization.random().nextInt(
+                            Integer.MAX_VALUE - 6), b1, primes);
+                }
+                ConcurrentContext.enter();
+                try {
+                    for (int j = 0; j < concurrency; j++) {
+                        ConcurrentContext.execute(curves[j]);
+                    }
+                } finally {
+                    ConcurrentContext.exit();
+                }
+                _factorization.checkCancelled();
+                if (_factor != null)
+                    return _factor;
+            }
+            if ((level < LEVELS.length - 1) || (digits != Integer.MAX_VALUE)) {
+                level++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A curve run (for concurrent context).
+     */
+    private final class Curve implements Runnable {
+        private final long _sigma;
+        private final int _b1;
+        private final int[] _primes;
+
+        Curve(long sigma, int b1, int[] primes) {
+            _sigma = sigma;
+            _b1 = b1;
+            _primes = primes;
+        }
+
+        public void run() {
+            final LargeInteger n = _modulus.getValue();
+            final LargeInteger sigma = LargeInteger.valueOf(_sigma);
+
+            // Suyama: u = sigma^2 - 5, v = 4·sigma, x = u^3, z = v^3
+            // (a + 2) / 4 = (v - u)^3·(3·u + v) / (16·u^3·v)
+            final LargeInteger u = _modulus.reduce(sigma.square().minus(5));
+            final LargeInteger v = _modulus.reduce(sigma.times(4));
+            final LargeInteger u3 = _modulus.times(_modulus.times(u, u), u);
+            final LargeInteger v3 = _modulus.times(_modulus.times(v, v), v);
+            final LargeInteger vu = _modulus.minus(v, u);
+            final LargeInteger numerator = _modulus.times(_modulus.times(
+                    _modulus.times(vu, vu), vu), _modulus.reduce(u.times(3).plus(v)));
+            final LargeInteger denominator = _modulus.reduce(_modulus.times(u3, v).times(16));
+            final LargeInteger g = denominator.gcd(n);
+            if (!g.equals(1)) {
+                if (!g.equals(n)) {
+                    _factor = g;
+                }
+                return;
+            }
+            final LargeInteger a24 = _modulus.toMontgomery(_modulus.times(
+                    numerator, denominator.modInverse(n)));
+            LargeInteger[] q = { _modulus.toMontgomery(u3), _modulus.toMontgomery(v3) };
+
+            // Stage 1.
+            for (int k = 1; (1L << k) <= _b1; k++) {
+                q = duplicate(q, a24);
+            }
+            long multiplier = 1;
+            for (int i = 0; i < _primes.length; i++) {
+                final int p = _primes[i];
+                long power = p;
+                while (power * p <= _b1) {
+                    power *= p;
+                }
+                if (multiplier > (1L << 62) / power) {
+                    q = multiply(q, multiplier, a24);
+                    multiplier = 1;
+                    if (isAborted())
+                        return;
+                }
+                multiplier *= power;
+            }
+            q = multiply(q, multiplier, a24);
+            if (check(q[1]))
+                return;
+
+            // Stage 2.
+            final long b2 = (long) _b1 * B2_RATIO;
+            final int d = MathLib.max((int) MathLib.sqrt(b2 >> 1), 2);
+            final LargeInteger[][] s = new LargeInteger[d + 1][]; // s[i] = 2i·Q
+            final LargeInteger[] beta = new LargeInteger[d + 1];
+            s[1] = duplicate(q, a24);
+            s[2] = duplicate(s[1], a24);
+            for (int i = 3; i <= d; i++) {
+                s[i] = add(s[i - 1], s[1], s[i - 2]);
+            }
+            for (int i = 1; i <= d; i++) {
+                beta[i] = _modulus.montgomeryTimes(s[i][0], s[i][1]);
+            }
+            long r = ((_b1 & 1) == 0) ? _b1 - 1 : _b1;
+            LargeInteger[] rq = multiply(q, r, a24);
+            LargeInteger[] tq = multiply(q, MathLib.abs(r - 2 * d), a24); // (r - 2d)·Q
+            LargeInteger product = rq[1];
+            final boolean[] composite = new boolean[d + 1];
+            for (; r < b2; r += 2 * d) {
+                sieve(r, composite);
+                final LargeInteger alpha = _modulus.montgomeryTimes(rq[0], rq[1]);
+                for (int i = 1; i <= d; i++) {
+                    if (composite[i])
+                        continue;
+                    // (X_R - X_S)·(Z_R + Z_S) - X_R·Z_R + X_S·Z_S
+                    final LargeInteger t = _modulus.montgomeryTimes(
+                            _modulus.minus(rq[0], s[i][0]),
+                            _modulus.plus(rq[1], s[i][1]));
+                    product = _modulus.montgomeryTimes(product, _modulus.plus(
+                            _modulus.minus(t, alpha), beta[i]));
+                }
+                final LargeInteger[] next = add(rq, s[d], tq);
+                tq = rq;
+                rq = next;
+                if (isAborted())
+                    return;
+            }
+            check(product);
+        }
+
+        // Sets the factor if gcd(x, n) is not trivial, returns true if
+        // no more search is possible.
+        private boolean check(LargeInteger x) {
+            final LargeInteger g = x.gcd(_modulus.getValue());
+            if (g.equals(_modulus.getValue()))
+                return true; // All factors found at once.
+            if (g.equals(1))
+                return false;
+            _factor = g;
+            return true;
+        }
+
+        // Indicates if this run should stop.
+        private boolean isAborted() {
+            return (_factor != null) || _factorization.isAborted(_caller);
+        }
+    }
+
+    // Returns 2·P
+    private LargeInteger[] duplicate(LargeInteger[] p, LargeInteger a24) {
+        final LargeInteger sum = _modulus.plus(p[0], p[1]);
+        final LargeInteger difference = _modulus.minus(p[0], p[1]);
+        final LargeInteger s = _modulus.montgomeryTimes(sum, sum);
+        final LargeInteger d = _modulus.montgomeryTimes(difference, difference);
+        final LargeInteger t = _modulus.minus(s, d); // 4·X·Z
+        return new LargeInteger[] { _modulus.montgomeryTimes(s, d),
+                _modulus.montgomeryTimes(t, _modulus.plus(d,
+                        _modulus.montgomeryTimes(a24, t))) };
+    }
+
+    // Returns P + Q knowing P - Q.
+    private LargeInteger[] add(LargeInteger[] p, LargeInteger[] q,
+            LargeInteger[] difference) {
+        final LargeInteger u = _modulus.montgomeryTimes(_modulus.minus(p[0],
+                p[1]), _modulus.plus(q[0], q[1]));
+        final LargeInteger v = _modulus.montgomeryTimes(_modulus.plus(p[0],
+                p[1]), _modulus.minus(q[0], q[1]));
+        final LargeInteger sum = _modulus.plus(u, v);
+        final LargeInteger diff = _modulus.minus(u, v);
+        return new LargeInteger[] {
+                _modulus.montgomeryTimes(difference[1], _modulus.montgomeryTimes(sum, sum)),
+                _modulus.montgomeryTimes(difference[0], _modulus.montgomeryTimes(diff, diff)) };
+    }
+
+    // Returns k·P (Montgomery ladder), k positive.
+    private LargeInteger[] multiply(LargeInteger[] p, long k, LargeInteger a24) {
+        if (k == 1)
+            return p;
+        LargeInteger[] r0 = p;
+        LargeInteger[] r1 = duplicate(p, a24);
+        for (int i = 62 - Long.numberOfLeadingZeros(k); i >= 0; i--) {
+            if (((k >>> i) & 1) != 0) {
+                r0 = add(r1, r0, p);
+                r1 = duplicate(r1, a24);
+            } else {
+                r1 = add(r0, r1, p);
+                r0 = duplicate(r0, a24);
+            }
+        }
+        return r0;
+    }
+
+    // Marks the i in [1, d] such as r + 2·i is composite (r odd).
+    private static void sieve(long r, boolean[] composite) {
+        final int d = composite.length - 1;
+        final long last = r + 2L * d;
+        for (int i = 1; i <= d; i++) {
+            composite[i] = false;
+        }
+        final int[] primes = Primes.SMALL_PRIMES;
+        for (int k = 0; k < primes.length; k++) {
+            final int p = primes[k];
+            if ((long) p * p > last)
+                break;
+            // r + 2·i = 0 mod p, i = -r·(p + 1)/2 mod p
+            int i = (int) ((p - r % p) * ((p + 1) >> 1) % p);
+            if (i == 0) {
+                i = p;
+            }
+            for (; i <= d; i += p) {
+                composite[i] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+
+import javolution.lang.Configurable;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class represents a service factoring {@link LargeInteger} into
+ *     (probable) primes.
+ *     [code]
+ *     Factorization factorization = new Factorization();
+ *     SortedMap<LargeInteger, Integer> factors = factorization.factor(n);
+ *     for (Map.Entry<LargeInteger, Integer> factor : factors.entrySet()) {
+ *         ... // factor.getKey() raised to the power factor.getValue()
+ *     }
+ *     [/code]</p>
+ *
+ * <p> The factors are searched for by increasing cost:<ul>
+ *     <li> Trial division by the primes less than <code>2<sup>16</sup></code>.</li>
+ *     <li> Pollard's rho (Brent's variant), exhaustive for cofactors of
+ *          62 bits or less, limited to factors of about ten digits
+ *          otherwise.</li>
+ *     <li> Lenstra's elliptic curve method (Montgomery curves, standard
+ *          continuation) with bounds increasing until a factor is found
+ *          (medium factors).</li>
+ *     <li> The self-initializing quadratic sieve for cofactors of
+ *          {@link #QUADRATIC_SIEVE_THRESHOLD} bits or more, after an
+ *          elliptic curve pretest proportional to the cofactor size
+ *          (its running time depends only on the cofactor size).</li></ul>
+ *     Curves and sieve polynomials are processed concurrently
+ *     (see {@link javolution.context.ConcurrentContext}). Cofactors are
+ *     tested using {@link LargeInteger#isProbablyPrime()} and perfect powers
+ *     are detected before any factor search.</p>
+ *
+ * <p> A factorization can be {@link #cancel cancelled} from any thread;
+ *     interrupting the thread calling {@link #factor} also cancels it.
+ *     Instances of this class are thread-safe.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Integer_factorization">
+ *      Wikipedia: Integer Factorization</a>
+ */
+public final class Factorization {
+
+    /**
+     * Holds the minimum bit length of the cofactors for which the
+     * quadratic sieve is used instead of the elliptic curve method
+     * (default <code>80</code>, about 24 digits). Setting this threshold
+     * to <code>Integer.MAX_VALUE</code> disables the quadratic sieve.
+     */
+    public static final Configurable<Integer> QUADRATIC_SIEVE_THRESHOLD = new Configurable<Integer>(
+            80) {
+    };
+
+    /**
+     * Holds the number of rho iterations for cofactors larger than 62 bits.
+     */
+    private static final int RHO_ITERATIONS = 1 << 15;
+
+    /**
+     * Holds the number of rho iterations between two gcd.
+     */
+    private static final int RHO_BATCH = 128;
+
+    /**
+     * Holds the elliptic curve pretest, in digits per bit of the cofactor
+     * (about 30% of the cofactor digits).
+     */
+    private static final double PRETEST_RATIO = 0.3 * MathLib.LOG2 / MathLib.LOG10;
+
+    /**
+     * Holds the square of the first prime not used for trial division
+     * (cofactors less than this value are prime).
+     */
+    private static final LargeInteger PRIME_LIMIT = LargeInteger.valueOf(65537L * 65537L);
+
+    /**
+     * Holds the random generator (rho constants and curves).
+     */
+    private final Random _random = new Random();
+
+    /**
+     * Indicates if this factorization has been cancelled.
+     */
+    private volatile boolean _isCancelled;
+
+    /**
+     * Holds the threads calling {@link #factor} (interruption checks).
+     */
+    private final ThreadLocal<Thread> _caller = new ThreadLocal<Thread>();
+
+    /**
+     * Default constructor.
+     */
+    public Factorization() {
+    }
+
+    /**
+     * Returns the prime factorization of the specified large integer.
+     *
+     * @param  n the large integer to factor.
+     * @return the (probable) prime factors of <code>|n|</code> in increasing
+     *         order mapped to their exponents (empty if <code>|n| = 1</code>).
+     * @throws ArithmeticException if <code>n</code> is zero.
+     * @throws CancellationException if this factorization is (or has been)
+     *         cancelled or the calling thread is interrupted.
+     */
+    public SortedMap<LargeInteger, Integer> factor(LargeInteger n) {
+        if (n.isZero())
+            throw new ArithmeticException("Zero has no factorization");
+        final TreeMap<LargeInteger, Integer> factors = new TreeMap<LargeInteger, Integer>();
+        _caller.set(Thread.currentThread());
+        try {
+            checkCancelled();
+            LargeInteger m = n.abs();
+            final int twos = m.getLowestSetBit();
+            if (twos > 0) {
+                add(factors, LargeInteger.valueOf(2), twos);
+                m = m.shiftRight(twos);
+            }
+            m = trialDivision(m, factors);
+
+            // Cofactors (without small factors) and their multiplicities.
+            LargeInteger[] cofactors = new LargeInteger[16];
+            int[] multiplicities = new int[16];
+            int count = 0;
+            cofactors[count] = m;
+            multiplicities[count++] = 1;
+            while (count > 0) {
+                final LargeInteger c = cofactors[--count];
+                final int e = multiplicities[count];
+                if (c.equals(1))
+                    continue;
+                if ((c.compareTo(PRIME_LIMIT) < 0) || c.isProbablyPrime()) {
+                    add(factors, c, e);
+                    continue;
+                }
+                if (count + 2 > cofactors.length) {
+                    LargeInteger[] tmp = new LargeInteger[count << 1];
+                    System.arraycopy(cofactors, 0, tmp, 0, count);
+                    cofactors = tmp;
+                    int[] tmp2 = new int[count << 1];
+                    System.arraycopy(multiplicities, 0, tmp2, 0, count);
+                    multiplicities = tmp2;
+                }
+                final int k = c.isPerfectPower() ? exponent(c) : 1;
+                if (k > 1) {
+                    cofactors[count] = c.nthRoot(k);
+                    multiplicities[count++] = e * k;
+                    continue;
+                }
+                final LargeInteger d = findFactor(c);
+                cofactors[count] = d;
+                multiplicities[count++] = e;
+                cofactors[count] = c.divide(d);
+                multiplicities[count++] = e;
+            }
+            return factors;
+        } finally {
+            _caller.remove();
+        }
+    }
+
+    /**
+     * Cancels this factorization; the current and subsequent calls to
+     * {@link #factor} throw a <code>CancellationException</code>.
+     */
+    public void cancel() {
+        _isCancelled = true;
+    }
+
+    /**
+     * Indicates if this factorization has been cancelled.
+     *
+     * @return <code>true</code> if {@link #cancel} has been called;
+     *         <code>false</code> otherwise.
+     */
+    public boolean isCancelled() {
+        return _isCancelled;
+    }
+
+    /**
+     * Indicates if the factor search of the specified caller should stop
+     * (may be called from concurrent threads).
+     *
+     * @param  caller the thread calling {@link #factor}.
+     * @return <code>true</code> if cancelled or the caller is interrupted.
+     */
+    boolean isAborted(Thread caller) {
+        return _isCancelled || caller.isInterrupted();
+    }
+
+    /**
+     * Returns the thread calling {@link #factor} from the current thread.
+     *
+     * @return the calling thread.
+     */
+    Thread caller() {
+        return _caller.get();
+    }
+
+    /**
+     * Throws a cancellation exception if this factorization is cancelled
+     * or the current thread interrupted.
+     *
+     * @throws CancellationException if cancelled.
+     */
+    void checkCancelled() {
+        if (isAborted(Thread.currentThread()))
+            throw new CancellationException("Factorization cancelled");
+    }
+
+    /**
+     * Returns a random number generator (calling thread only).
+     *
+     * @return the random generator of this factorization.
+     */
+    Random random() {
+        return _random;
+    }
+
+    // Returns a non-trivial factor of the specified composite (odd, not a
+    // perfect power, no small factor).
+    private LargeInteger findFactor(LargeInteger c) {
+        if (c.bitLength() <= 62)
+            return LargeInteger.valueOf(rho(c.longValue()));
+        final Modulus modulus = new Modulus(c);
+        LargeInteger d = rho(modulus);
+        if (d != null)
+            return d;
+        final boolean isSieved = c.bitLength() >= QUADRATIC_SIEVE_THRESHOLD.get();
+        final int digits = isSieved ? (int) (c.bitLength() * PRETEST_RATIO)
+                : Integer.MAX_VALUE;
+        d = new EllipticCurveMethod(modulus, this).factor(digits);
+        if (d != null)
+            return d;
+        return new QuadraticSieve(c, this).factor();
+    }
+
+    // Pollard's rho (Brent's variant) for composites less than 2^62.
+    private long rho(long n) {
+        final Modulus modulus = new Modulus(LargeInteger.valueOf(n));
+        while (true) {
+            final long c = 1 + _random.nextInt(Integer.MAX_VALUE) % (n - 1);
+            long y = _random.nextInt(Integer.MAX_VALUE) % n;
+            long x = y, ys = y, q = 1, g = 1;
+            for (int r = 1; g == 1; r <<= 1) {
+                x = y;
+                for (int i = 0; i < r; i++) {
+                    y = modulus.plus(modulus.times(y, y), c);
+                }
+                for (int k = 0; (k < r) && (g == 1); k += RHO_BATCH) {
+                    ys = y;
+                    for (int i = MathLib.min(RHO_BATCH, r - k); --i >= 0;) {
+                        y = modulus.plus(modulus.times(y, y), c);
+                        q = modulus.times(q, (x > y) ? x - y : y - x);
+                    }
+                    g = Calculus.gcd(q, n);
+                }
+                checkCancelled();
+            }
+            if (g == n) { // Backtracks.
+                do {
+                    ys = modulus.plus(modulus.times(ys, ys), c);
+                    g = Calculus.gcd((x > ys) ? x - ys : ys - x, n);
+                } while (g == 1);
+            }
+            if (g != n)
+                return g;
+        }
+    }
+
+    // Pollard's rho (Brent's variant) on Montgomery forms, returns a factor
+    // or null if none found after RHO_ITERATIONS.
+    private LargeInteger rho(Modulus modulus) {
+        final LargeInteger n = modulus.getValue();
+        final LargeInteger c = LargeInteger.valueOf(1 + _random.nextInt(Integer.MAX_VALUE));
+        LargeInteger y = LargeInteger.valueOf(_random.nextInt(Integer.MAX_VALUE));
+        LargeInteger x = y, ys = y, q = LargeInteger.ONE, g = LargeInteger.ONE;
+        for (int r = 1; g.equals(1) && (r <= RHO_ITERATIONS); r <<= 1) {
+            x = y;
+            for (int i = 0; i < r; i++) {
+                y = modulus.plus(modulus.montgomeryTimes(y, y), c);
+            }
+            for (int k = 0; (k < r) && g.equals(1); k += RHO_BATCH) {
+                ys = y;
+                for (int i = MathLib.min(RHO_BATCH, r - k); --i >= 0;) {
+                    y = modulus.plus(modulus.montgomeryTimes(y, y), c);
+                    q = modulus.montgomeryTimes(q, modulus.minus(x, y));
+                }
+                g = q.gcd(n);
+            }
+            checkCancelled();
+        }
+        if (g.equals(n)) { // Backtracks.
+            do {
+                ys = modulus.plus(modulus.montgomeryTimes(ys, ys), c);
+                g = modulus.minus(x, ys).gcd(n);
+            } while (g.equals(1));
+        }
+        return (g.equals(1) || g.equals(n)) ? null : g;
+    }
+
+    // Divides out the small odd primes, returns the cofactor.
+    private static LargeInteger trialDivision(LargeInteger m,
+            TreeMap<LargeInteger, Integer> factors) {
+        final int[] primes = Primes.SMALL_PRIMES;
+        for (int i = 0; i < primes.length; i++) {
+            final int p = primes[i];
+            if (m.bitLength() <= 62) { // Single word.
+                long w = m.longValue();
+                if (w / p < p)
+                    break; // w is one or prime.
+                if (w % p != 0)
+                    continue;
+                int e = 0;
+                do {
+                    w /= p;
+                    e++;
+                } while (w % p == 0);
+                add(factors, LargeInteger.valueOf(p), e);
+                m = LargeInteger.valueOf(w);
+                continue;
+            }
+            if (Calculus.remainder(m.words(), m.size(), p) != 0)
+                continue;
+            int e = 0;
+            LargeInteger q = m.divide(p);
+            do {
+                m = q;
+                e++;
+                q = m.divide(p);
+            } while (q.getRemainder().isZero());
+            add(factors, LargeInteger.valueOf(p), e);
+        }
+        return m;
+    }
+
+    // Returns the largest exponent k such as c is a k-th power.
+    private static int exponent(LargeInteger c) {
+        for (int k = c.bitLength() >> 4; k > 1; k--) { // Roots larger than 2^16.
+            if (c.nthRoot(k).getRemainder().isZero())
+                return k;
+        }
+        return 1;
+    }
+
+    // Multiplies the factorization by p^e.
+    private static void add(TreeMap<LargeInteger, Integer> factors,
+            LargeInteger p, int e) {
+        final Integer previous = factors.get(p);
+        factors.put(p, (previous == null) ? e : previous + e);
+    }
+}
@@ -11,6 +11,10 @@ package org.jscience.mathematics.number;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 
 import javolution.context.ArrayFactory;
 import javolution.context.ConcurrentContext;
@@ -37,7 +41,10 @@ import static org.jscience.mathematics.number.Calculus.*;
  *          (no garbage generated when executing in 
  *          {@link javolution.context.StackContext StackContext}).</li>
  *     <li> Improved algorithms (e.g. Concurrent Karatsuba multiplication in
- *          O(n<sup>Log3</sup>) instead of O(n<sup>2</sup>).</li>
+ *          O(n<sup>Log3</sup>) instead of O(n<sup>2</sup>), Toom-Cook
+ *          3-way and 4-way multiplication for larger operands and
+ *          number-theoretic transform multiplication in O(n·Log(n)) for
+ *          huge operands, Burnikel-Ziegler recursive division).</li>
  * </ul></p>
  * 
  * <p> <b>Note:</b> This class uses {@link ConcurrentContext ConcurrentContext}
@@ -59,6 +66,97 @@ public final class LargeInteger extends Number<LargeInteger> {
             100) {
     };
 
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand
+     * for which the Karatsuba multiplication is used instead of the
+     * conventional multiplication (default <code>10</code>).
+     */
+    public static final Configurable<Integer> KARATSUBA_THRESHOLD = new Configurable<Integer>(
+            10) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand
+     * for which the Toom-Cook 3-way multiplication is used instead of
+     * Karatsuba (default <code>100</code>, cannot be less than
+     * <code>20</code>).
+     */
+    public static final Configurable<Integer> TOOM_COOK_3_THRESHOLD = new Configurable<Integer>(
+            100) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand
+     * for which the Toom-Cook 4-way multiplication is used instead of
+     * Toom-Cook 3-way (default <code>1000</code>).
+     */
+    public static final Configurable<Integer> TOOM_COOK_4_THRESHOLD = new Configurable<Integer>(
+            1000) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand
+     * for which the number-theoretic transform (FFT) multiplication is used
+     * instead of Toom-Cook (default <code>4000</code>).
+     */
+    public static final Configurable<Integer> FFT_THRESHOLD = new Configurable<Integer>(
+            4000) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand
+     * for which the sub-products of Karatsuba and Toom-Cook multiplications
+     * are executed concurrently (default <code>400</code>). Smaller
+     * sub-products are always executed by the current thread.
+     * The number of concurrent threads is the {@link ConcurrentContext}
+     * local concurrency; setting it to <code>0</code> within a
+     * local context disables concurrent multiplications for that context.
+     */
+    public static final Configurable<Integer> CONCURRENCY_THRESHOLD = new Configurable<Integer>(
+            400) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the divisor and of the
+     * quotient for which the Burnikel-Ziegler recursive division is used
+     * instead of the schoolbook long division (default <code>80</code>).
+     */
+    public static final Configurable<Integer> BURNIKEL_ZIEGLER_THRESHOLD = new Configurable<Integer>(
+            80) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the divisor for which 
+     * the Newton division (multiplication by the divisor reciprocal) is 
+     * used instead of the Burnikel-Ziegler recursive division 
+     * (default <code>60000</code>).
+     */
+    public static final Configurable<Integer> NEWTON_DIVISION_THRESHOLD = new Configurable<Integer>(
+            60000) {
+    };
+
+    /**
+     * Holds the minimum size in 63 bits words of the smallest operand for 
+     * which the recursive half-GCD is used instead of Lehmer's algorithm
+     * (default <code>3000</code>).
+     */
+    public static final Configurable<Integer> HALF_GCD_THRESHOLD = new Configurable<Integer>(
+            3000) {
+    };
+
+    /**
+     * Holds the thread tuning the thresholds or <code>null</code> 
+     * (see {@link LargeIntegerTuner}). The thresholds values tried by
+     * the tuning thread are visible to that thread only.
+     */
+    static volatile Thread TUNING_THREAD;
+
+    /**
+     * Holds the thresholds values tried by the tuning thread (accessed
+     * by that thread only).
+     */
+    static final HashMap<Configurable<Integer>, Integer> TUNED_THRESHOLDS = new HashMap<Configurable<Integer>, Integer>();
+
     /**
      * Holds the default text format for large integers numbers (decimal representation).
      *
@@ -104,24 +202,30 @@ public final class LargeInteger extends Number<LargeInteger> {
     };
 
     /**
-     * Holds small integers values.
+     * Holds the number of cached negative small integers.
+     */
+    private static final int SMALL_NEGATIVES = 128;
+
+    /**
+     * Holds small integers values (from <code>-128</code> to
+     * <code>1023</code>), shared instead of being allocated.
      */
-    private static final LargeInteger[] SMALL_INTEGERS = new LargeInteger[16];
+    private static final LargeInteger[] SMALL_INTEGERS = new LargeInteger[SMALL_NEGATIVES + 1024];
 
     static {
         for (int i = 0; i < SMALL_INTEGERS.length; i++) {
-            SMALL_INTEGERS[i] = new LargeInteger((long) i);
+            SMALL_INTEGERS[i] = new LargeInteger((long) (i - SMALL_NEGATIVES));
         }
     }
     /**
      * The large integer representing the additive identity.
      */
-    public static final LargeInteger ZERO = SMALL_INTEGERS[0];
+    public static final LargeInteger ZERO = SMALL_INTEGERS[SMALL_NEGATIVES];
 
     /**
      * The large integer representing the multiplicative identity.
      */
-    public static final LargeInteger ONE = SMALL_INTEGERS[1];
+    public static final LargeInteger ONE = SMALL_INTEGERS[SMALL_NEGATIVES + 1];
 
     /**
      * Holds Long.MIN_VALUE
@@ -216,11 +320,10 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @return the corresponding large integer number.
      */
     public static LargeInteger valueOf(long value) {
-        if (value < 0) {
-            if (value == Long.MIN_VALUE)
-                return LONG_MIN_VALUE;
-        } else if (value < SMALL_INTEGERS.length)
-            return SMALL_INTEGERS[(int) value];
+        if ((value >= -SMALL_NEGATIVES) && (value < SMALL_INTEGERS.length - SMALL_NEGATIVES))
+            return SMALL_INTEGERS[(int) value + SMALL_NEGATIVES];
+        if (value == Long.MIN_VALUE)
+            return LONG_MIN_VALUE;
         LargeInteger li = ARRAY_FACTORY.array(1);
         li._isNegative = value < 0;
         li._words[0] = MathLib.abs(value);
@@ -367,6 +470,40 @@ public final class LargeInteger extends Number<LargeInteger> {
         return num;
     }
 
+    /**
+     * Returns the large integer sharing the specified words (not copied).
+     * 
+     * @param  words the 63 bits words (least significant first).
+     * @param  size the number of words used.
+     * @param  isNegative indicates if the large integer is negative.
+     * @return the corresponding large integer.
+     */
+    static LargeInteger valueOf(long[] words, int size, boolean isNegative) {
+        LargeInteger li = NO_ARRAY_FACTORY.object();
+        li._words = words;
+        li._size = size;
+        li._isNegative = isNegative && (size != 0);
+        return li;
+    }
+
+    /**
+     * Returns the words of this large integer (not copied).
+     * 
+     * @return the 63 bits words (least significant first).
+     */
+    long[] words() {
+        return _words;
+    }
+
+    /**
+     * Returns the number of words used by this large integer.
+     * 
+     * @return the size in words.
+     */
+    int size() {
+        return _size;
+    }
+
     /**
      * Returns the large integer corresponding to the specified 
      * <code>java.math.BigInteger</code> instance.
@@ -375,8 +512,93 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @return the large integer having the same value.
      */
     public static LargeInteger valueOf(BigInteger bigInteger) {
-        byte[] bytes = bigInteger.toByteArray();
-        return LargeInteger.valueOf(bytes, 0, bytes.length);
+        if (bigInteger.bitLength() < 64) // Fits in a long.
+            return LargeInteger.valueOf(bigInteger.longValue());
+        final boolean isNegative = bigInteger.signum() < 0;
+        return LargeInteger.valueOfMagnitude((isNegative ? bigInteger.negate()
+                : bigInteger).toByteArray(), isNegative);
+    }
+
+    /**
+     * Returns the large integer of specified magnitude (big-endian) and sign;
+     * the 63 bits words are directly repacked from the bytes.
+     */
+    private static LargeInteger valueOfMagnitude(byte[] magnitude,
+            boolean isNegative) {
+        LargeInteger li = ARRAY_FACTORY.array(((magnitude.length * 8) / 63) + 1);
+        long word = 0;
+        int bits = 0; // Number of bits in word.
+        int size = 0;
+        for (int i = magnitude.length; i > 0;) {
+            final long b = magnitude[--i] & MASK_8;
+            word |= b << bits;
+            bits += 8;
+            if (bits >= 63) { // End of word reached.
+                li._words[size++] = word & MASK_63;
+                bits -= 63; // In range [0..7]
+                word = b >>> (8 - bits);
+            }
+        }
+        li._words[size++] = word;
+        while ((size > 0) && (li._words[size - 1] == 0)) {
+            size--;
+        }
+        li._size = size;
+        li._isNegative = isNegative && (size != 0);
+        return li;
+    }
+
+    /**
+     * Writes the binary representation of this large integer
+     * (see {@link BinaryFormat#LARGE_INTEGER}): the header
+     * <code>(size &lt;&lt; 1) | sign</code> followed by the single word as a
+     * variable-length integer or by the raw words.
+     */
+    void write(ByteBuffer buffer) {
+        BinaryFormat.writeUnsigned(((long) _size << 1) | (_isNegative ? 1 : 0),
+                buffer);
+        if (_size == 1) {
+            BinaryFormat.writeUnsigned(_words[0], buffer);
+        } else if (_size > 1) {
+            if (buffer.remaining() < (_size << 3))
+                throw new BufferOverflowException();
+            buffer.asLongBuffer().put(_words, 0, _size);
+            buffer.position(buffer.position() + (_size << 3));
+        }
+    }
+
+    /**
+     * Reads the binary representation of a large integer
+     * (see {@link #write}).
+     */
+    static LargeInteger read(ByteBuffer buffer) {
+        final long header = BinaryFormat.readUnsigned(buffer);
+        final long size = header >>> 1;
+        final boolean isNegative = (header & 1) != 0;
+        if (size <= 1) {
+            final long word = (size == 0) ? 0 : BinaryFormat.readUnsigned(buffer);
+            if (word < 0)
+                throw new IllegalArgumentException("Invalid large integer word");
+            return LargeInteger.valueOf(isNegative ? -word : word);
+        }
+        if (size > Integer.MAX_VALUE >> 3)
+            throw new IllegalArgumentException("Invalid large integer size: " + size);
+        if (buffer.remaining() < (size << 3))
+            throw new BufferUnderflowException();
+        LargeInteger li = ARRAY_FACTORY.array((int) size);
+        buffer.asLongBuffer().get(li._words, 0, (int) size);
+        buffer.position(buffer.position() + ((int) size << 3));
+        for (int i = 0; i < size; i++) {
+            if (li._words[i] < 0)
+                throw new IllegalArgumentException("Invalid large integer word");
+        }
+        int n = (int) size;
+        while ((n > 0) && (li._words[n - 1] == 0)) {
+            n--;
+        }
+        li._size = n;
+        li._isNegative = isNegative && (n != 0);
+        return li;
     }
 
     /**
@@ -426,13 +648,32 @@ public final class LargeInteger extends Number<LargeInteger> {
     }
 
     /**
-     * Indicates if this large integer is probably prime.
+     * Indicates if this large integer is probably prime. The test is
+     * deterministic below <code>2<sup>64</sup></code>, larger numbers are 
+     * tested using Baillie-PSW followed by Miller-Rabin rounds to random
+     * bases (see {@link #PRIME_CERTAINTY}).
      * 
      * @return <code>true</code> if this large integer is probable prime;
-     *         <code>false</code> otherwise.
+     *         <code>false</code> otherwise (composite or less than 
+     *         <code>2</code>).
      */
     public boolean isProbablyPrime() {
-        throw new UnsupportedOperationException("Not Implemented");
+        return Primes.isProbablePrime(this, false);
+    }
+
+    /**
+     * Returns the first integer greater than this large integer that is
+     * probably prime. Candidates are sieved by the small primes before 
+     * being tested (see {@link PrimeSieve}).
+     * 
+     * @return the smallest probable prime greater than <code>this</code>.
+     * @throws ArithmeticException if <code>this &lt; 0</code>
+     * @see #isProbablyPrime()
+     */
+    public LargeInteger nextProbablePrime() {
+        if (_isNegative)
+            throw new ArithmeticException("Negative number");
+        return new PrimeSieve(this.plus(1), null).next();
     }
 
     /**
@@ -459,7 +700,9 @@ public final class LargeInteger extends Number<LargeInteger> {
     public int digitLength() {
         if (_size <= 1)
             return MathLib.digitLength(_words[0]);
-        return this.divide(1000000000).digitLength() + 9;
+        // 2^(bitLength - 1) <= |this| < 2^bitLength, hence d or d + 1 digits.
+        final int d = (int) ((bitLength() - 1) / DIGITS_TO_BITS) + 1;
+        return pow10(d).isLargerThan(this) ? d : d + 1;
     }
 
     /**
@@ -504,8 +747,9 @@ public final class LargeInteger extends Number<LargeInteger> {
     /**
      * Returns the final undivided part after division that is less or of 
      * lower degree than the divisor. This value is only set by the 
-     * {@link #divide} operation and is not considered as part of 
-     * this large integer (ignored by all methods).
+     * {@link #divide}, {@link #sqrt} and {@link #nthRoot} operations and
+     * is not considered as part of this large integer (ignored by all 
+     * methods).
      * 
      * @return the remainder of the division for which this large integer
      *         is the quotient.
@@ -522,6 +766,11 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @return <code>this + value</code>.
      */
     public LargeInteger plus(long value) {
+        if ((_size <= 1) && (value != Long.MIN_VALUE)) { // Single words.
+            final long sum = Calculus.addExact(this.longValue(), value);
+            if (sum != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(sum);
+        }
         return this.plus(LargeInteger.valueOf(value));
     }
 
@@ -533,6 +782,11 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @return <code>this - value</code>.
      */
     public LargeInteger minus(long value) {
+        if ((_size <= 1) && (value != Long.MIN_VALUE)) { // Single words.
+            final long difference = Calculus.addExact(this.longValue(), -value);
+            if (difference != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(difference);
+        }
         return this.minus(LargeInteger.valueOf(value));
     }
 
@@ -553,11 +807,17 @@ public final class LargeInteger extends Number<LargeInteger> {
         LargeInteger remainder;
         LargeInteger thisAbs = this.abs();
         LargeInteger thatAbs = that.abs();
-        int precision = thisAbs.bitLength() - thatAbs.bitLength() + 1;
-        if (precision <= 0) {
+        if (thisAbs.compareTo(thatAbs) < 0) {
             result = LargeInteger.ZERO;
-            remainder = this;
+            remainder = thisAbs;
+        } else if (thatAbs._size < threshold(NEWTON_DIVISION_THRESHOLD)) {
+            final int threshold = threshold(BURNIKEL_ZIEGLER_THRESHOLD);
+            result = ((thatAbs._size < threshold) || (_size - thatAbs._size < threshold)) 
+                    ? thisAbs.divideSchoolbook(thatAbs)
+                    : thisAbs.divideBurnikelZiegler(thatAbs);
+            remainder = result._remainder;
         } else {
+            int precision = thisAbs.bitLength() - thatAbs.bitLength() + 1;
             LargeInteger thatReciprocal = thatAbs.inverseScaled(precision);
             result = thisAbs.times(thatReciprocal);
             result = result.shiftRight(thisAbs.bitLength() + 1);
@@ -585,6 +845,106 @@ public final class LargeInteger extends Number<LargeInteger> {
         return li;
     }
 
+    // Schoolbook division of positive numbers (Knuth, Algorithm D).
+    // Returns the quotient with its remainder set.
+    private LargeInteger divideSchoolbook(LargeInteger that) {
+        if (this.compareTo(that) < 0)
+            return LargeInteger.quotient(LargeInteger.ZERO, this);
+        // Normalizes, the divisor most significant bit is bit 62.
+        final int shift = 63 - MathLib.bitLength(that._words[that._size - 1]);
+        LargeInteger y = that.shiftLeft(shift);
+        LargeInteger x = ARRAY_FACTORY.array(_size + 2);
+        int xSize = _size;
+        if (shift == 0) {
+            System.arraycopy(_words, 0, x._words, 0, _size);
+        } else {
+            xSize = Calculus.shiftLeft(0, shift, _words, _size, x._words);
+        }
+        LargeInteger q = ARRAY_FACTORY.array(xSize - y._size + 1);
+        q._isNegative = false;
+        q._size = Calculus.divide(x._words, xSize, y._words, y._size, q._words);
+        x._isNegative = false;
+        x._size = y._size;
+        while ((x._size > 0) && (x._words[x._size - 1] == 0)) {
+            x._size--;
+        }
+        return LargeInteger.quotient(q, x.shiftRight(shift));
+    }
+
+    // Burnikel-Ziegler recursive division of positive numbers.
+    // Returns the quotient with its remainder set.
+    private LargeInteger divideBurnikelZiegler(LargeInteger that) {
+        // The divisor is split in 2^k blocks smaller than the threshold.
+        final int threshold = threshold(BURNIKEL_ZIEGLER_THRESHOLD);
+        int m = 1;
+        while (that._size / m >= threshold) {
+            m <<= 1;
+        }
+        final int n = ((that._size + m - 1) / m) * m;
+
+        // Normalizes, the divisor has exactly n words and bit 62 set.
+        final int sigma = n * 63 - that.bitLength();
+        LargeInteger b = that.shiftLeft(sigma);
+        LargeInteger a = this.shiftLeft(sigma);
+
+        // Divides by blocks of n words (the most significant block of the
+        // dividend being less than the divisor).
+        final int t = MathLib.max(2, (a.bitLength() + n * 63) / (n * 63));
+        LargeInteger z = a.part((t - 2) * n, t * n);
+        LargeInteger q = LargeInteger.ZERO;
+        for (int i = t - 2;; i--) {
+            LargeInteger qi = z.divide2n1n(b, n);
+            q = q.shiftWordLeft(n).plus(qi);
+            if (i == 0)
+                return LargeInteger.quotient(q, qi._remainder.shiftRight(sigma));
+            z = qi._remainder.shiftWordLeft(n).plus(a.part((i - 1) * n, i * n));
+        }
+    }
+
+    // Divides this (less than b * 2^(63*n)) by b (n words, normalized).
+    private LargeInteger divide2n1n(LargeInteger b, int n) {
+        if (((n & 1) != 0) || (n < threshold(BURNIKEL_ZIEGLER_THRESHOLD)))
+            return this.divideSchoolbook(b);
+        final int h = n >> 1;
+        LargeInteger q1 = this.part(h, n << 1).divide3n2n(b, h);
+        LargeInteger q2 = q1._remainder.shiftWordLeft(h).plus(this.low(h))
+                .divide3n2n(b, h);
+        return LargeInteger.quotient(q1.shiftWordLeft(h).plus(q2),
+                q2._remainder);
+    }
+
+    // Divides this (less than b * 2^(63*h)) by b (2h words, normalized).
+    private LargeInteger divide3n2n(LargeInteger b, int h) {
+        LargeInteger a12 = this.part(h, 3 * h);
+        LargeInteger b1 = b.part(h, h << 1);
+        LargeInteger q;
+        LargeInteger r1;
+        if (this.part(h << 1, 3 * h).compareTo(b1) < 0) {
+            q = a12.divide2n1n(b1, h);
+            r1 = q._remainder;
+        } else { // Quotient estimate is 2^(63*h) - 1
+            q = LargeInteger.ONE.shiftWordLeft(h).minus(LargeInteger.ONE);
+            r1 = a12.minus(b1.shiftWordLeft(h)).plus(b1);
+        }
+        LargeInteger r = r1.shiftWordLeft(h).plus(this.low(h)).minus(
+                q.times(b.low(h)));
+        while (r.isNegative()) { // At most two corrections.
+            q = q.minus(LargeInteger.ONE);
+            r = r.plus(b);
+        }
+        return LargeInteger.quotient(q, r);
+    }
+
+    // Returns a new quotient instance holding the specified remainder.
+    private static LargeInteger quotient(LargeInteger q, LargeInteger r) {
+        LargeInteger li = NO_ARRAY_FACTORY.object();
+        li._words = q._words;
+        li._size = q._size;
+        li._isNegative = q._isNegative;
+        li._remainder = r;
+        return li;
+    }
+
     /**
      * Returns this large integer divided by the specified <code>int</code>
      * divisor. The remainder of this division is accessible using 
@@ -654,7 +1014,10 @@ public final class LargeInteger extends Number<LargeInteger> {
     }
 
     /**
-     * Returns the integer square root of this integer.
+     * Returns the integer square root of this integer. The remainder 
+     * <code>this - k<sup>2</sup></code> is accessible using
+     * {@link #getRemainder}. Zimmermann's recursive (Karatsuba) square root
+     * is used, its cost is about the cost of a division of same size.
      * 
      * @return <code>k<code> such as <code>k^2 <= this < (k + 1)^2</code>
      * @throws ArithmeticException if this integer is negative.
@@ -662,23 +1025,163 @@ public final class LargeInteger extends Number<LargeInteger> {
     public LargeInteger sqrt() {
         if (this.isNegative())
             throw new ArithmeticException("Square root of negative integer");
-        int bitLength = this.bitLength();
-        if (bitLength <= 1)
-            return this; // ZERO or ONE.
+        if (this.bitLength() <= 1)
+            return LargeInteger.quotient(this, LargeInteger.ZERO); // ZERO or ONE.
+        LargeInteger root, remainder;
         StackContext.enter();
         try {
-            // First approximation.
-            LargeInteger k = this.times2pow(-((bitLength >> 1) + (bitLength & 1)));
-            while (true) {
-                LargeInteger newK = (k.plus(this.divide(k))).times2pow(-1);
-                if (!newK.minus(k).isLargerThan(ONE)) {
-                    if (this.divide(newK).isLessThan(newK)) {
-                        newK = newK.minus(ONE);
-                    }
-                    return StackContext.outerCopy(newK);
-                }
-                k = newK;
+            LargeInteger sr = this.sqrtKaratsuba();
+            root = StackContext.outerCopy(sr);
+            remainder = StackContext.outerCopy(sr._remainder);
+        } finally {
+            StackContext.exit();
+        }
+        return LargeInteger.quotient(root, remainder);
+    }
+
+    // Zimmermann's Karatsuba square root of this positive integer, returns
+    // the root holding the remainder.
+    private LargeInteger sqrtKaratsuba() {
+        final int n = this.bitLength();
+        if (n <= 62) { // Direct calculation.
+            final long x = _words[0];
+            long s = (long) MathLib.sqrt(x);
+            while (s * s > x) {
+                s--;
             }
+            while ((s + 1) * (s + 1) <= x) {
+                s++;
+            }
+            return LargeInteger.quotient(LargeInteger.valueOf(s), 
+                    LargeInteger.valueOf(x - s * s));
+        }
+        // this = a3 b^3 + a2 b^2 + a1 b + a0 with b = 2^k, a3 >= b/4 
+        // (normalized, shifted by two bits if necessary).
+        final int k = (n + 3) >> 2;
+        final boolean isShifted = ((k << 2) - n) >= 2;
+        final LargeInteger a = isShifted ? this.shiftLeft(2) : this;
+        final LargeInteger sr = a.shiftRight(k << 1).sqrtKaratsuba();
+        final LargeInteger a1 = a.shiftRight(k).lowBits(k);
+        final LargeInteger a0 = a.lowBits(k);
+        final LargeInteger q = sr._remainder.shiftLeft(k).plus(a1).divide(
+                sr.shiftLeft(1));
+        LargeInteger s = sr.shiftLeft(k).plus(q);
+        LargeInteger r = q._remainder.shiftLeft(k).plus(a0).minus(q.square());
+        if (r.isNegative()) {
+            r = r.plus(s.shiftLeft(1)).minus(ONE);
+            s = s.minus(ONE);
+        }
+        if (isShifted) { // 4 this = (2 s0 + s1)^2 + r
+            final boolean s1 = s.isOdd();
+            s = s.shiftRight(1);
+            r = (s1 ? r.plus(s.shiftLeft(2)).plus(ONE) : r).shiftRight(2);
+        }
+        return LargeInteger.quotient(s, r);
+    }
+
+    // Returns the n low bits of this positive large integer.
+    private LargeInteger lowBits(int n) {
+        final int w = n / 63;
+        if (w >= _size)
+            return this;
+        LargeInteger li = ARRAY_FACTORY.array(w + 1);
+        System.arraycopy(_words, 0, li._words, 0, w);
+        li._words[w] = _words[w] & ((1L << (n - w * 63)) - 1);
+        int size = w + 1;
+        while ((size > 0) && (li._words[size - 1] == 0)) {
+            size--;
+        }
+        li._size = size;
+        li._isNegative = false;
+        return li;
+    }
+
+    /**
+     * Returns the integer k-th root of this integer (rounded toward zero).
+     * The remainder <code>this - r<sup>k</sup></code> is accessible using
+     * {@link #getRemainder}.
+     * 
+     * @param k the root degree.
+     * @return <code>r</code> such as <code>|r|^k <= |this| < (|r| + 1)^k</code>
+     *         and <code>r</code> has the sign of <code>this</code>.
+     * @throws IllegalArgumentException if <code>k &lt;= 0</code>
+     * @throws ArithmeticException if this integer is negative and 
+     *         <code>k</code> is even.
+     */
+    public LargeInteger nthRoot(int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("k: " + k + " should be a positive number");
+        if (_isNegative && ((k & 1) == 0))
+            throw new ArithmeticException("Even root of negative integer");
+        if (k == 1)
+            return LargeInteger.quotient(this, LargeInteger.ZERO);
+        if ((k == 2) || (_size == 0))
+            return this.sqrt();
+        LargeInteger root, remainder;
+        StackContext.enter();
+        try {
+            LargeInteger abs = this.abs();
+            LargeInteger r = abs.nthRootNewton(k);
+            root = StackContext.outerCopy(_isNegative ? r.opposite() : r);
+            remainder = StackContext.outerCopy(this.minus(root.pow(k)));
+        } finally {
+            StackContext.exit();
+        }
+        return LargeInteger.quotient(root, remainder);
+    }
+
+    // Returns floor(this^(1/k)), this positive, k >= 2. The root of this
+    // shifted by half the root bits provides an upper estimate from which
+    // Newton's iteration (decreasing) converges in a few steps.
+    private LargeInteger nthRootNewton(int k) {
+        final int n = this.bitLength();
+        final int rootBits = (n + k - 1) / k;
+        LargeInteger x;
+        if (rootBits <= 30) { // Upper estimate from the 62 high bits.
+            final int shift = MathLib.max(n - 62 + k - 1, 0) / k;
+            final double high = this.shiftRight(shift * k).longValue();
+            final long estimate = (long) (MathLib.pow(high, 1.0 / k) * (1 + 1E-12)) + 2;
+            x = LargeInteger.valueOf(estimate).shiftLeft(shift);
+        } else {
+            final int m = rootBits >> 1;
+            x = this.shiftRight(m * k).nthRootNewton(k).plus(ONE).shiftLeft(m);
+        }
+        while (true) { // x = ((k - 1) x + this / x^(k-1)) / k
+            LargeInteger y = x.times(k - 1).plus(this.divide(x.pow(k - 1))).divide(k);
+            if (y.compareTo(x) >= 0)
+                return x;
+            x = y;
+        }
+    }
+
+    /**
+     * Indicates if this large integer is a perfect power 
+     * (<code>this = a<sup>b</sup></code> for some integers <code>a</code>
+     * and <code>b &gt; 1</code>). Each possible prime exponent is first 
+     * checked modulo a few small primes before the exact root is calculated.
+     * 
+     * @return <code>true</code> if this integer is a perfect power
+     *         (including <code>0</code>, <code>1</code> and odd powers
+     *         of negative integers); <code>false</code> otherwise.
+     */
+    public boolean isPerfectPower() {
+        if ((_size == 0) || ((_size == 1) && (_words[0] == 1)))
+            return true; // 0, 1 or -1
+        StackContext.enter();
+        try {
+            final LargeInteger abs = this.abs();
+            final int n = abs.bitLength();
+            final int v = abs.getLowestSetBit(); // Multiple of the exponent.
+            for (int p = _isNegative ? 3 : 2; p < n; p = (p == 2) ? 3 : p + 2) {
+                if (((v != 0) && (v % p != 0)) || !Primes.isPrime(p, false))
+                    continue;
+                if (!Primes.isPowerResidue(abs, p))
+                    continue;
+                if (((p == 2) ? abs.sqrtKaratsuba()._remainder
+                        : abs.minus(abs.nthRootNewton(p).pow(p))).isZero())
+                    return true;
+            }
+            return false;
         } finally {
             StackContext.exit();
         }
@@ -696,7 +1199,7 @@ public final class LargeInteger extends Number<LargeInteger> {
      */
     public LargeInteger mod(LargeInteger m) {
         final LargeInteger li = m.isLargerThan(this) ? this : this.divide(m).getRemainder();
-        return (this._isNegative == m._isNegative) ? li : li.plus(m);
+        return ((this._isNegative == m._isNegative) || li.isZero()) ? li : li.plus(m);
     }
 
     /**
@@ -714,37 +1217,140 @@ public final class LargeInteger extends Number<LargeInteger> {
             throw new ArithmeticException("Modulus is not a positive number");
         StackContext.enter();
         try {
-            // Extended Euclidian Algorithm
-            LargeInteger a = this.mod(m);
-            LargeInteger b = m;
-            LargeInteger p = ONE;
-            LargeInteger q = ZERO;
-            LargeInteger r = ZERO;
-            LargeInteger s = ONE;
-            while (!b.isZero()) {
-                LargeInteger quot = a.divide(b);
-                LargeInteger c = quot.getRemainder();
-                a = b;
-                b = c;
-
-                LargeInteger new_r = p.minus(quot.times(r));
-                LargeInteger new_s = q.minus(quot.times(s));
-                p = r;
-                q = s;
-                r = new_r;
-                s = new_s;
+            LargeInteger[] gcdx = this.mod(m).bezout(m);
+            if (!gcdx[0].equals(ONE))
+                throw new ArithmeticException("GCD(" + this + ", " + m + ") = " + gcdx[0]);
+            return StackContext.outerCopy(gcdx[1].mod(m));
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Returns the multiplicative inverses modulo <code>m</code> of the 
+     * specified large integers. This method uses Montgomery's trick: 
+     * a single modular inversion and <code>3·(n-1)</code> modular 
+     * multiplications for <code>n</code> values.
+     *
+     * @param  values the large integers to invert.
+     * @param  m the modulus.
+     * @return <code>{values[0]<sup>-1</sup> mod m, values[1]<sup>-1</sup>
+     *         mod m, ...}</code>
+     * @throws ArithmeticException <code> m &lt;= 0</code>, or any of the 
+     *         specified integers has no multiplicative inverse mod m.
+     * @see    #modInverse(LargeInteger)
+     */
+    public static LargeInteger[] modInverse(LargeInteger[] values, LargeInteger m) {
+        if (!m.isPositive())
+            throw new ArithmeticException("Modulus is not a positive number");
+        final int n = values.length;
+        final LargeInteger[] inverses = new LargeInteger[n];
+        if (n == 0)
+            return inverses;
+        StackContext.enter();
+        try {
+            // Prefix products.
+            final LargeInteger[] products = new LargeInteger[n];
+            products[0] = values[0].mod(m);
+            for (int i = 1; i < n; i++) {
+                products[i] = products[i - 1].times(values[i]).mod(m);
+            }
+            LargeInteger inverse = products[n - 1].modInverse(m);
+            for (int i = n - 1; i > 0; i--) {
+                inverses[i] = StackContext.outerCopy(inverse.times(products[i - 1]).mod(m));
+                inverse = inverse.times(values[i]).mod(m);
             }
-            if (!a.abs().equals(ONE)) // (a != 1) || (a != -1)
-                throw new ArithmeticException("GCD(" + this + ", " + m + ") = " + a);
-            return StackContext.outerCopy(a.isNegative() ? p.opposite().mod(m) : p.mod(m));
+            inverses[0] = StackContext.outerCopy(inverse);
+            return inverses;
         } finally {
             StackContext.exit();
         }
     }
 
+    /**
+     * Returns the greatest common divisor of this large integer and the 
+     * one specified together with the Bézout coefficients <code>x</code>
+     * and <code>y</code> such as <code>this·x + that·y = gcd</code> 
+     * (extended Lehmer's algorithm).
+     * 
+     * @param  that the other number to compute the GCD with.
+     * @return <code>{gcd, x, y}</code> the gcd being positive.
+     * @see    #gcd(LargeInteger)
+     */
+    public LargeInteger[] gcdExtended(LargeInteger that) {
+        StackContext.enter();
+        try {
+            LargeInteger[] gcdx = this.bezout(that);
+            LargeInteger y = that.isZero() ? ZERO : gcdx[0].minus(
+                    this.times(gcdx[1])).divide(that);
+            return new LargeInteger[] { StackContext.outerCopy(gcdx[0]),
+                    StackContext.outerCopy(gcdx[1]), StackContext.outerCopy(y) };
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    // Returns {gcd(this, that), x} such as this·x = gcd (mod that).
+    // The cofactor of the largest operand is tracked in place.
+    private LargeInteger[] bezout(LargeInteger that) {
+        final boolean swap = this.abs().compareTo(that.abs()) < 0;
+        final LargeInteger u0 = swap ? that : this;
+        final LargeInteger v0 = swap ? this : that;
+        final int capacity = u0._size + 2;
+        LargeInteger u = u0.copy(capacity);
+        LargeInteger v = v0.copy(capacity);
+        LargeInteger x = ARRAY_FACTORY.array(capacity);
+        LargeInteger y = ARRAY_FACTORY.array(capacity);
+
+        // u = cu·u0 + ...·v0, v = cv·u0 + ...·v0 (or with v0 if swap) 
+        LargeInteger cu = (swap ? ZERO : ONE).copy(capacity);
+        LargeInteger cv = (swap ? ONE : ZERO).copy(capacity);
+        LargeInteger cx = ARRAY_FACTORY.array(capacity);
+        LargeInteger cy = ARRAY_FACTORY.array(capacity);
+        boolean negative = swap; // Sign of cu (cv has the opposite sign).
+
+        final long[] cosequence = new long[4];
+        while (!v.isZero()) {
+            if ((v._size > 1) && LargeInteger.lehmer(u, v, cosequence)) {
+                final long a = cosequence[0], b = cosequence[1];
+                final long c = cosequence[2], d = cosequence[3];
+                LargeInteger.combine(u, v, a, b, x);
+                LargeInteger.combine(u, v, c, d, y);
+                cx._size = Calculus.addProducts(MathLib.abs(a), cu._words, cu._size,
+                        MathLib.abs(b), cv._words, cv._size, cx._words);
+                cy._size = Calculus.addProducts(MathLib.abs(c), cu._words, cu._size,
+                        MathLib.abs(d), cv._words, cv._size, cy._words);
+                negative ^= (b > 0);
+            } else { // Euclidian step.
+                LargeInteger q = u.divide(v);
+                x.set(v);
+                y.set(q.getRemainder());
+                cx.set(cv);
+                cy.set(cu.plus(q.times(cv)));
+                negative = !negative;
+            }
+            LargeInteger tmp = u;
+            u = x;
+            x = tmp;
+            tmp = v;
+            v = y;
+            y = tmp;
+            tmp = cu;
+            cu = cx;
+            cx = tmp;
+            tmp = cv;
+            cv = cy;
+            cy = tmp; // Swaps.
+        }
+        cu._isNegative = (negative != this._isNegative) && (cu._size != 0);
+        return new LargeInteger[] { u, cu };
+    }
+
     /**
      * Returns this large integer raised at the specified exponent modulo 
-     * the specified modulus.
+     * the specified modulus. Exponentiation is performed using a sliding 
+     * window with Montgomery reduction for odd moduli and Barrett reduction
+     * for even moduli.
      *
      * @param  exp the exponent.
      * @param  m the modulus.
@@ -758,29 +1364,47 @@ public final class LargeInteger extends Number<LargeInteger> {
         if (exp.isPositive()) {
             StackContext.enter();
             try {
-                LargeInteger result = null;
-                LargeInteger pow2 = this.mod(m);
-                while (exp.compareTo(ONE) >= 0) { // Iteration.
-                    if (exp.isOdd()) {
-                        result = (result == null) ? pow2 : result.times(pow2).mod(m);
-                    }
-                    pow2 = pow2.times(pow2).mod(m);
-                    exp = exp.shiftRight(1);
-                }
-                return StackContext.outerCopy(result);
+                Modulus modulus = new Modulus(m);
+                return StackContext.outerCopy(modulus.pow(this.mod(m), exp));
             } finally {
                 StackContext.exit();
             }
         } else if (exp.isNegative()) {
             return this.modPow(exp.opposite(), m).modInverse(m);
         } else { // exp == 0
-            return LargeInteger.ONE;
+            return m.equals(LargeInteger.ONE) ? LargeInteger.ZERO : LargeInteger.ONE;
         }
     }
 
+    /**
+     * Returns the Montgomery product <code>this · that · 2<sup>-63·n</sup>
+     * mod m</code> where <code>n</code> is the size in words of the 
+     * specified odd modulus (used by {@link Modulus}).
+     * 
+     * @param  that the other factor (in the range <code>[0, m[</code>).
+     * @param  m the odd modulus.
+     * @param  inverse <code>-m<sup>-1</sup> mod 2<sup>63</sup></code>
+     * @return the Montgomery product, in the range <code>[0, m[</code>.
+     */
+    LargeInteger montgomeryTimes(LargeInteger that, LargeInteger m, long inverse) {
+        final int n = m._size;
+        final LargeInteger product = (this == that) ? this.square() : this.times(that);
+        final LargeInteger tmp = ARRAY_FACTORY.array((n << 1) + 1);
+        System.arraycopy(product._words, 0, tmp._words, 0, product._size);
+        for (int i = product._size; i <= (n << 1); i++) {
+            tmp._words[i] = 0;
+        }
+        LargeInteger li = ARRAY_FACTORY.array(n);
+        li._isNegative = false;
+        li._size = Calculus.montgomeryReduce(tmp._words, m._words, n, inverse, li._words);
+        return li;
+    }
+
     /**
      * Returns the greatest common divisor of this large integer and 
-     * the one specified.
+     * the one specified. Lehmer's algorithm is used for small operands
+     * and the recursive half-GCD for large operands (see 
+     * {@link #HALF_GCD_THRESHOLD}).
      * 
      * @param  that the other number to compute the GCD with.
      * @return a positive number or {@link #ZERO} if
@@ -788,77 +1412,265 @@ public final class LargeInteger extends Number<LargeInteger> {
      */
     public LargeInteger gcd(LargeInteger that) {
         if (this.isZero())
-            return that;
+            return that.abs();
         if (that.isZero())
-            return this;
+            return this.abs();
+        if ((this._size <= 1) && (that._size <= 1)) // Single words.
+            return LargeInteger.valueOf(Calculus.gcd(this._words[0], that._words[0]));
         StackContext.enter();
         try {
-            LargeInteger u = this;
-            LargeInteger v = that;
-
-            // Euclidian algorithm until u, v about the same size.
-            while (MathLib.abs(u._size - v._size) > 1) {
-                LargeInteger tmp = u.divide(v);
-                LargeInteger rem = tmp.getRemainder();
+            LargeInteger u = this.abs();
+            LargeInteger v = that.abs();
+            if (u.compareTo(v) < 0) {
+                LargeInteger tmp = u;
                 u = v;
-                v = rem;
-                if (v.isZero())
-                    return u;
+                v = tmp; // Swaps.
             }
 
-            // Works with local (modifiable) copies of the inputs.
-            u = u.copy();
-            u._isNegative = false; // abs()
-            v = v.copy();
-            v._isNegative = false; // abs()
-
-            // Binary GCD Implementation adapted from
-            // http://en.wikipedia.org/wiki/Binary_GCD_algorithm
-            final int uShift = u.getLowestSetBit();
-            u.shiftRightSelf(uShift);
-            final int vShift = v.getLowestSetBit();
-            v.shiftRightSelf(vShift);
+            // Half-GCD reductions (subquadratic).
+            final int threshold = threshold(HALF_GCD_THRESHOLD);
+            while (v._size >= threshold) {
+                final int p = u._size / 3;
+                LargeInteger[] r = (v._size > p + 1) ? LargeInteger.halfGcd(
+                        u.high(p), v.high(p)) : null;
+                if ((r != null) && LargeInteger.reduce(u, v, r) && (r[4].compareTo(u) < 0)) {
+                    u = r[4];
+                    v = r[5];
+                } else { // Euclidian step.
+                    LargeInteger rem = u.divide(v).getRemainder();
+                    u = v;
+                    v = rem;
+                }
+            }
 
-            // From here on, u is always odd.
-            while (true) {
-                // Now u and v are both odd, so diff(u, v) is even.
-                // Let u = min(u, v), v = diff(u, v)/2.
-                if (u.compareTo(v) < 0) {
-                    v.subtract(u);
-                } else {
-                    u.subtract(v);
+            // Lehmer reductions (works with local modifiable copies).
+            final long[] cosequence = new long[4];
+            if (v._size > 1) {
+                u = u.copy(u._size + 1);
+                v = v.copy(u._size);
+                LargeInteger x = ARRAY_FACTORY.array(u._size);
+                LargeInteger y = ARRAY_FACTORY.array(u._size);
+                while (v._size > 1) {
+                    if (LargeInteger.lehmer(u, v, cosequence)) {
+                        LargeInteger.combine(u, v, cosequence[0], cosequence[1], x);
+                        LargeInteger.combine(u, v, cosequence[2], cosequence[3], y);
+                    } else { // Euclidian step.
+                        LargeInteger rem = u.divide(v).getRemainder();
+                        x.set(v);
+                        y.set(rem);
+                    }
                     LargeInteger tmp = u;
-                    u = v;
-                    v = tmp; // Swaps.
+                    u = x;
+                    x = tmp;
+                    tmp = v;
+                    v = y;
+                    y = tmp; // Swaps.
                 }
-                v.shiftRightSelf();
-                if (v.isZero())
-                    break;
-                v.shiftRightSelf(v.getLowestSetBit());
             }
-            return StackContext.outerCopy(u.shiftLeft(MathLib.min(uShift, vShift)));
+            if (v.isZero())
+                return StackContext.outerCopy(u);
+
+            // Single word.
+            long x = v._words[0];
+            long y = u.divide(v).getRemainder().longValue();
+            while (y != 0) {
+                long tmp = x % y;
+                x = y;
+                y = tmp;
+            }
+            return StackContext.outerCopy(LargeInteger.valueOf(x));
         } finally {
             StackContext.exit();
         }
     }
 
-    private void shiftRightSelf() {
-        if (_size == 0)
-            return;
-        _size = Calculus.shiftRight(0, 1, _words, _size, _words);
+    // Calculates the Lehmer cosequence {a, b, c, d} of u >= v (at least two 
+    // words) such as u' = a·u + b·v and v' = c·u + d·v (Knuth, Algorithm L).
+    // Returns false if a single Euclidian step is required.
+    private static boolean lehmer(LargeInteger u, LargeInteger v, long[] cosequence) {
+        final int shift = u.bitLength() - 61; // Leading 61 bits.
+        long x = u.bits(shift);
+        long y = v.bits(shift);
+        long a = 1, b = 0, c = 0, d = 1;
+        while ((y + c != 0) && (y + d != 0)) {
+            final long q = (x + a) / (y + c);
+            if (q != (x + b) / (y + d))
+                break;
+            long tmp = a - q * c;
+            a = c;
+            c = tmp;
+            tmp = b - q * d;
+            b = d;
+            d = tmp;
+            tmp = x - q * y;
+            x = y;
+            y = tmp;
+        }
+        if (b == 0)
+            return false;
+        cosequence[0] = a;
+        cosequence[1] = b;
+        cosequence[2] = c;
+        cosequence[3] = d;
+        return true;
     }
 
-    private void shiftRightSelf(int n) {
-        if ((n == 0) || (_size == 0))
-            return;
-        int wordShift = n < 63 ? 0 : n / 63;
-        int bitShift = n - ((wordShift << 6) - wordShift); // n - wordShift * 63
-        _size = Calculus.shiftRight(wordShift, bitShift, _words, _size, _words);
+    // Sets z = a·u + b·v (a, b of opposite signs, result positive).
+    private static void combine(LargeInteger u, LargeInteger v, long a, long b, LargeInteger z) {
+        z._isNegative = false;
+        z._size = (b <= 0) ? Calculus.combine(a, u._words, u._size, -b, v._words, v._size, z._words)
+                : Calculus.combine(b, v._words, v._size, -a, u._words, u._size, z._words);
+    }
+
+    // Returns a positive copy with the specified minimum capacity.
+    private LargeInteger copy(int capacity) {
+        LargeInteger li = ARRAY_FACTORY.array(MathLib.max(capacity, _size));
+        li.set(this);
+        return li;
+    }
+
+    // Sets this to the specified positive value (capacity permitting).
+    private void set(LargeInteger that) {
+        System.arraycopy(that._words, 0, _words, 0, that._size);
+        _size = that._size;
+        _isNegative = false;
+    }
+
+    // Returns this >> from (Preconditions: result less than 2^63)
+    private long bits(int from) {
+        final int w = from / 63;
+        final int b = from - w * 63;
+        if (w >= _size)
+            return 0;
+        long bits = _words[w] >>> b;
+        if ((b != 0) && (w + 1 < _size)) {
+            bits |= (_words[w + 1] << (63 - b)) & MASK_63;
+        }
+        return bits;
     }
 
-    private void subtract(LargeInteger that) { // this >= that
-        _size = Calculus.subtract(_words, _size, that._words, that._size,
-                _words);
+    /**
+     * Holds the size in words below which half-GCD reductions are performed
+     * using Lehmer steps.
+     */
+    private static final int HALF_GCD_BASE_SIZE = 100;
+
+    // Half-GCD of a >= b >= 0, returns {m00, m01, m10, m11, α, β} such as 
+    // (a, b) = M·(α, β) with M unimodular and β about half the size of a.
+    private static LargeInteger[] halfGcd(LargeInteger a, LargeInteger b) {
+        final int s = (a._size >> 1) + 1;
+        final LargeInteger[] r = { ONE, ZERO, ZERO, ONE, a, b };
+        if (b._size <= s)
+            return r;
+        if (a._size < HALF_GCD_BASE_SIZE) {
+            LargeInteger.euclid(r, s);
+            return r;
+        }
+        // Reduces the most significant half.
+        final int p = a._size >> 1;
+        LargeInteger[] r1 = LargeInteger.halfGcd(a.high(p), b.high(p));
+        if (LargeInteger.reduce(a, b, r1)) {
+            LargeInteger.compose(r, r1);
+        }
+        if (r[5]._size > s) { // One Euclidian step.
+            LargeInteger.step(r, r[4].divide(r[5]));
+        }
+        // Reduces the most significant half of the remainders.
+        if (r[5]._size > s) {
+            final int p2 = 2 * s - r[4]._size + 1;
+            LargeInteger[] r2 = LargeInteger.halfGcd(r[4].high(p2), r[5].high(p2));
+            if (LargeInteger.reduce(r[4], r[5], r2)) {
+                LargeInteger.compose(r, r2);
+            }
+            LargeInteger.euclid(r, s); // Fix-up.
+        }
+        return r;
+    }
+
+    // Sets r[4], r[5] to M^-1·(a, b), M = r[0..3], returns false if the 
+    // matrix is not a reduction of (a, b) (negative remainders).
+    private static boolean reduce(LargeInteger a, LargeInteger b, LargeInteger[] r) {
+        final long det = r[0].longValue() * r[3].longValue() 
+               - r[1].longValue() * r[2].longValue(); // +1 or -1
+        LargeInteger alpha = r[3].times(a).minus(r[1].times(b));
+        LargeInteger beta = r[0].times(b).minus(r[2].times(a));
+        if (det < 0) {
+            alpha = alpha.opposite();
+            beta = beta.opposite();
+        }
+        if (alpha.isNegative() || beta.isNegative())
+            return false;
+        if (alpha.compareTo(beta) < 0) { // Swaps columns.
+            LargeInteger tmp = r[0];
+            r[0] = r[1];
+            r[1] = tmp;
+            tmp = r[2];
+            r[2] = r[3];
+            r[3] = tmp;
+            r[4] = beta;
+            r[5] = alpha;
+        } else {
+            r[4] = alpha;
+            r[5] = beta;
+        }
+        return true;
+    }
+
+    // Sets M = M·M' (r[4], r[5] set to r'[4], r'[5])
+    private static void compose(LargeInteger[] r, LargeInteger[] r1) {
+        final LargeInteger m00 = r[0].times(r1[0]).plus(r[1].times(r1[2]));
+        final LargeInteger m01 = r[0].times(r1[1]).plus(r[1].times(r1[3]));
+        final LargeInteger m10 = r[2].times(r1[0]).plus(r[3].times(r1[2]));
+        final LargeInteger m11 = r[2].times(r1[1]).plus(r[3].times(r1[3]));
+        r[0] = m00;
+        r[1] = m01;
+        r[2] = m10;
+        r[3] = m11;
+        r[4] = r1[4];
+        r[5] = r1[5];
+    }
+
+    // Euclidian step (α, β) = (β, α - q·β), M = M·[[q, 1], [1, 0]]
+    private static void step(LargeInteger[] r, LargeInteger q) {
+        LargeInteger tmp = r[0];
+        r[0] = r[0].times(q).plus(r[1]);
+        r[1] = tmp;
+        tmp = r[2];
+        r[2] = r[2].times(q).plus(r[3]);
+        r[3] = tmp;
+        r[4] = r[5];
+        r[5] = q.getRemainder();
+    }
+
+    // Reduces (α, β) until β size is less or equal to the specified size
+    // (Lehmer steps while β is large enough, Euclidian steps otherwise).
+    private static void euclid(LargeInteger[] r, int size) {
+        final long[] cosequence = new long[4];
+        while (r[5]._size > size) {
+            if ((r[5]._size > size + 1) && LargeInteger.lehmer(r[4], r[5], cosequence)) {
+                final long a = cosequence[0], b = cosequence[1];
+                final long c = cosequence[2], d = cosequence[3];
+                final LargeInteger alpha = ARRAY_FACTORY.array(r[4]._size + 1);
+                LargeInteger.combine(r[4], r[5], a, b, alpha);
+                final LargeInteger beta = ARRAY_FACTORY.array(r[4]._size + 1);
+                LargeInteger.combine(r[4], r[5], c, d, beta);
+                // M = M·[[a, b], [c, d]]^-1 (the inverse has positive entries)
+                final long absA = MathLib.abs(a), absB = MathLib.abs(b);
+                final long absC = MathLib.abs(c), absD = MathLib.abs(d);
+                final LargeInteger m00 = r[0].times(absD).plus(r[1].times(absC));
+                final LargeInteger m01 = r[1].times(absA).plus(r[0].times(absB));
+                final LargeInteger m10 = r[2].times(absD).plus(r[3].times(absC));
+                final LargeInteger m11 = r[3].times(absA).plus(r[2].times(absB));
+                r[0] = m00;
+                r[1] = m01;
+                r[2] = m10;
+                r[3] = m11;
+                r[4] = alpha;
+                r[5] = beta;
+            } else {
+                LargeInteger.step(r, r[4].divide(r[5]));
+            }
+        }
     }
 
     /**
@@ -969,6 +1781,8 @@ public final class LargeInteger extends Number<LargeInteger> {
         if (this._size == 0)
             return LargeInteger.ZERO;
         if (n > 0) {
+            if ((n >= LONG_POW_5.length) && (n < POW_10_CACHE_SIZE))
+                return this.times(pow10(n)); // More than one pass.
             int bitLength = (int) (n * DIGITS_TO_BITS);
             LargeInteger li = ARRAY_FACTORY.array(_size + (bitLength / 63) + 1); // Approx.
             li._isNegative = _isNegative;
@@ -988,6 +1802,8 @@ public final class LargeInteger extends Number<LargeInteger> {
             return li;
         } else {// n < 0
             n = -n;
+            if ((n >= 4 * INT_POW_5.length) && (n < POW_10_CACHE_SIZE))
+                return this.divide(pow10(n)); // More than four passes.
             // Divides by 2^n
             final int wordShift = n < 63 ? 0 : n / 63;
             final int bitShift = n - ((wordShift << 6) - wordShift); // n - 63 * wordShift
@@ -1022,6 +1838,41 @@ public final class LargeInteger extends Number<LargeInteger> {
         11920928955078125L, 59604644775390625L, 298023223876953125L,
         1490116119384765625L, 7450580596923828125L};
 
+    /**
+     * Returns <code>10<sup>n</sup></code>, the powers less than
+     * <code>10<sup>512</sup></code> being cached.
+     *
+     * @param n the decimal exponent (positive).
+     * @return <code>10<sup>n</sup></code>
+     */
+    static LargeInteger pow10(int n) {
+        LargeInteger[] powers = POW_10;
+        if (n < powers.length)
+            return powers[n];
+        if (n >= POW_10_CACHE_SIZE)
+            return LargeInteger.valueOf(5).pow(n).shiftLeft(n);
+        synchronized (LargeInteger.class) {
+            powers = POW_10;
+            if (n < powers.length)
+                return powers[n];
+            LargeInteger[] newPowers = new LargeInteger[MathLib.min(
+                    MathLib.max(n + 1, powers.length << 1), POW_10_CACHE_SIZE)];
+            System.arraycopy(powers, 0, newPowers, 0, powers.length);
+            for (int i = powers.length; i < newPowers.length; i++) {
+                newPowers[i] = (i < LONG_POW_10.length) ? new LargeInteger(
+                        LONG_POW_10[i]) : newPowers[i - 1].times(10).heapCopy();
+            }
+            POW_10 = newPowers;
+            return newPowers[n];
+        }
+    }
+
+    // Holds the powers of ten (lazily computed, never recycled).
+    private static volatile LargeInteger[] POW_10 = new LargeInteger[0];
+
+    // The number of cached powers of ten.
+    private static final int POW_10_CACHE_SIZE = 512;
+
     /**
      * Compares this large integer against the specified <code>long</code>
      * value.
@@ -1059,9 +1910,27 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @return the corresponding <code>java.math.BigInteger</code>
      */
     public BigInteger asBigInteger() {
-        byte[] bytes = new byte[(bitLength() >> 3) + 1];
-        this.toByteArray(bytes, 0);
-        return new BigInteger(bytes);
+        if (_size <= 1) // Fits in a long.
+            return BigInteger.valueOf(longValue());
+        final int n = _size - 1;
+        final byte[] magnitude = new byte[(MathLib.bitLength(_words[n])
+                + (n << 6) - n + 7) >> 3];
+        long word = 0;
+        int bits = 0; // Number of bits in word.
+        int wordIndex = 0;
+        for (int i = magnitude.length; i > 0;) {
+            if (bits >= 8) {
+                magnitude[--i] = (byte) word;
+                word >>>= 8;
+                bits -= 8;
+            } else { // End of word reached.
+                final long next = (wordIndex < _size) ? _words[wordIndex++] : 0;
+                magnitude[--i] = (byte) (word | (next << bits));
+                word = next >>> (8 - bits);
+                bits += 63 - 8;
+            }
+        }
+        return new BigInteger(_isNegative ? -1 : 1, magnitude);
     }
 
     // Implements abstract class Number.
@@ -1082,6 +1951,11 @@ public final class LargeInteger extends Number<LargeInteger> {
     public LargeInteger plus(LargeInteger that) {
         if (that.isZero())
             return this;
+        if ((this._size <= 1) && (that._size <= 1)) { // Single words.
+            final long sum = Calculus.addExact(this.longValue(), that.longValue());
+            if (sum != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(sum);
+        }
         if (this._size < that._size) // Adds smallest in size to largest.
             return that.plus(this);
         if (this._isNegative != that._isNegative)
@@ -1097,6 +1971,11 @@ public final class LargeInteger extends Number<LargeInteger> {
     public LargeInteger minus(LargeInteger that) {
         if (that.isZero())
             return this;
+        if ((this._size <= 1) && (that._size <= 1)) { // Single words.
+            final long difference = Calculus.addExact(this.longValue(), -that.longValue());
+            if (difference != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(difference);
+        }
         if (this._isNegative != that._isNegative)
             return this.plus(that.opposite()); // Switches that sign.
         if (that.isLargerThan(this)) // Always subtract the smallest to the largest. 
@@ -1110,33 +1989,39 @@ public final class LargeInteger extends Number<LargeInteger> {
 
     // Implements Ring.
     public LargeInteger times(LargeInteger that) {
+        if ((this._size <= 1) && (that._size <= 1)) { // Single words.
+            final long product = Calculus.multiplyExact(this.longValue(), that.longValue());
+            if (product != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(product);
+        }
         if (that._size > this._size) // Always multiply the smallest to the largest.
             return that.times(this);
         if (that._size <= 1) // Direct times(long) multiplication.
             return this.times(that.longValue());
-        if (that._size < 10) { // Conventional multiplication.
+        if ((this == that) && (_size < SQUARE_KARATSUBA_THRESHOLD))
+            return this.square(); // Dedicated kernel.
+        if (that._size < threshold(KARATSUBA_THRESHOLD)) { // Conventional multiplication.
             LargeInteger li = ARRAY_FACTORY.array(this._size + that._size);
             li._size = Calculus.multiply(this._words, this._size, that._words,
                     that._size, li._words);
             li._isNegative = (this._isNegative != that._isNegative);
             return li;
-        } else if (that._size < 20) { // Karatsuba (sequential).
-            int n = (that._size >> 1) + (that._size & 1);
-            // this = a + 2^(n*63) b, that = c + 2^(n*63) d
-            LargeInteger b = this.high(n);
-            LargeInteger a = this.low(n);
-            // Optimization for square (a == c, b == d).
-            LargeInteger d = (this == that) ? b : that.high(n);
-            LargeInteger c = (this == that) ? a : that.low(n);
-            LargeInteger ab = a.plus(b);
-            LargeInteger cd = (this == that) ? ab : c.plus(d);
-            LargeInteger abcd = ab.times(cd);
-            LargeInteger ac = a.times(c);
-            LargeInteger bd = b.times(d);
-            // li = a*c + ((a+b)*(c+d)-(a*c+b*d)) 2^n + b*d 2^2n 
-            return ac.plus(abcd.minus(ac.plus(bd)).shiftWordLeft(n)).plus(
-                    bd.shiftWordLeft(n << 1));
-        } else { // Karatsuba (concurrent).
+        } else if ((that._size >= threshold(FFT_THRESHOLD))
+                && NumberTheoreticTransform.isSupported(this._size, that._size)) {
+            LargeInteger li = ARRAY_FACTORY.array(this._size + that._size);
+            li._size = NumberTheoreticTransform.multiply(this._words, this._size,
+                    that._words, that._size, li._words);
+            li._isNegative = (this._isNegative != that._isNegative);
+            return li;
+        } else if (this._size >= (that._size << 1)) { // Unbalanced.
+            return this.timesSliced(that);
+        } else if ((that._size >= toomCookThreshold(TOOM_COOK_4_THRESHOLD))
+                && (that._size > 3 * ((this._size + 3) >> 2))) { // Balanced.
+            return this.toomCook4(that);
+        } else if ((that._size >= toomCookThreshold(TOOM_COOK_3_THRESHOLD))
+                && (that._size > 2 * ((this._size + 2) / 3))) { // Balanced.
+            return this.toomCook3(that);
+        } else { // Karatsuba.
             int n = (that._size >> 1) + (that._size & 1);
             // this = a + 2^(63*n) b, that = c + 2^(63*n) d
             LargeInteger b = this.high(n);
@@ -1149,19 +2034,325 @@ public final class LargeInteger extends Number<LargeInteger> {
             MultiplyLogic abcd = MultiplyLogic.newInstance(ab, cd);
             MultiplyLogic ac = MultiplyLogic.newInstance(a, c);
             MultiplyLogic bd = MultiplyLogic.newInstance(b, d);
-            ConcurrentContext.enter();
-            try { // this = a + 2^n b,   that = c + 2^n d
-                ConcurrentContext.execute(abcd);
-                ConcurrentContext.execute(ac);
-                ConcurrentContext.execute(bd);
-            } finally {
-                ConcurrentContext.exit();
-            }
+            execute(new MultiplyLogic[] { abcd, ac, bd }, that._size);
             // result = a*c + ((a+b)*(c+d)-(a*c+b*d)) 2^n + b*d 2^2n 
-            LargeInteger result = ac.value().plus(
+            return ac.value().plus(
                     abcd.value().minus(ac.value().plus(bd.value())).shiftWordLeft(n)).plus(
                     bd.value().shiftWordLeft(n << 1));
-            return result;
+        }
+    }
+
+    // Executes the specified sub-products, concurrently only if the smallest
+    // operand size is above the concurrency threshold.
+    private static void execute(MultiplyLogic[] products, int size) {
+        if ((size < threshold(CONCURRENCY_THRESHOLD))
+                || (ConcurrentContext.getConcurrency() == 0)) {
+            for (int i = 0; i < products.length; i++) {
+                products[i].run();
+            }
+            return;
+        }
+        ConcurrentContext.enter();
+        try {
+            for (int i = 0; i < products.length; i++) {
+                ConcurrentContext.execute(products[i]);
+            }
+        } finally {
+            ConcurrentContext.exit();
+        }
+    }
+
+    // Returns the configured threshold (at least 20 words).
+    private static int toomCookThreshold(Configurable<Integer> threshold) {
+        return MathLib.max(threshold(threshold), 20);
+    }
+
+    // Returns the value of the specified threshold for the current thread.
+    static int threshold(Configurable<Integer> threshold) {
+        final Thread tuning = TUNING_THREAD;
+        if ((tuning == null) || (tuning != Thread.currentThread()))
+            return threshold.get();
+        final Integer value = TUNED_THRESHOLDS.get(threshold);
+        return (value != null) ? value.intValue() : threshold.get();
+    }
+
+    // Toom-Cook 3-way (Bodrato's sequence), evaluation points 0, 1, -1, -2, inf.
+    // Preconditions: this._size >= that._size > 2 * k
+    private LargeInteger toomCook3(LargeInteger that) {
+        final int k = (this._size + 2) / 3;
+        // this = a0 + a1 x + a2 x^2, that = b0 + b1 x + b2 x^2 (x = 2^(63*k))
+        LargeInteger a0 = this.low(k);
+        LargeInteger a1 = this.part(k, k << 1);
+        LargeInteger a2 = this.high(k << 1);
+        LargeInteger ap = a0.plus(a2);
+        LargeInteger ap1 = ap.plus(a1);
+        LargeInteger am1 = ap.minus(a1);
+        LargeInteger am2 = am1.plus(a2).times2pow(1).minus(a0);
+        LargeInteger bp1, bm1, bm2, b0, b2;
+        if (this == that) { // Square.
+            b0 = a0;
+            b2 = a2;
+            bp1 = ap1;
+            bm1 = am1;
+            bm2 = am2;
+        } else {
+            b0 = that.low(k);
+            LargeInteger b1 = that.part(k, k << 1);
+            b2 = that.high(k << 1);
+            LargeInteger bp = b0.plus(b2);
+            bp1 = bp.plus(b1);
+            bm1 = bp.minus(b1);
+            bm2 = bm1.plus(b2).times2pow(1).minus(b0);
+        }
+        MultiplyLogic v0 = MultiplyLogic.newInstance(a0, b0);
+        MultiplyLogic v1 = MultiplyLogic.newInstance(ap1, bp1);
+        MultiplyLogic vm1 = MultiplyLogic.newInstance(am1, bm1);
+        MultiplyLogic vm2 = MultiplyLogic.newInstance(am2, bm2);
+        MultiplyLogic vinf = MultiplyLogic.newInstance(a2, b2);
+        execute(new MultiplyLogic[] { v0, v1, vm1, vm2, vinf }, that._size);
+        // Interpolation (all divisions are exact).
+        LargeInteger r0 = v0.value();
+        LargeInteger r4 = vinf.value();
+        LargeInteger r3 = vm2.value().minus(v1.value()).divide(3);
+        LargeInteger r1 = v1.value().minus(vm1.value()).times2pow(-1);
+        LargeInteger r2 = vm1.value().minus(r0);
+        r3 = r2.minus(r3).times2pow(-1).plus(r4.times2pow(1));
+        r2 = r2.plus(r1).minus(r4);
+        r1 = r1.minus(r3);
+        return r0.plus(r1.shiftWordLeft(k)).plus(r2.shiftWordLeft(k << 1)).plus(
+                r3.shiftWordLeft(3 * k)).plus(r4.shiftWordLeft(k << 2));
+    }
+
+    // Toom-Cook 4-way, evaluation points 0, 1, -1, 2, -2, 1/2, inf.
+    // Preconditions: this._size >= that._size > 3 * k
+    private LargeInteger toomCook4(LargeInteger that) {
+        final int k = (this._size + 3) >> 2;
+        // this = a0 + a1 x + a2 x^2 + a3 x^3 (x = 2^(63*k)), same for that.
+        LargeInteger[] a = this.toomCook4Evaluate(k);
+        LargeInteger[] b = (this == that) ? a : that.toomCook4Evaluate(k);
+        MultiplyLogic[] v = new MultiplyLogic[7];
+        for (int i = 0; i < 7; i++) {
+            v[i] = MultiplyLogic.newInstance(a[i], b[i]);
+        }
+        execute(v, that._size);
+        // Interpolation (all divisions are exact), r(x) = r0 + ... + r6 x^6
+        LargeInteger r0 = v[0].value();
+        LargeInteger r6 = v[6].value();
+        LargeInteger e1 = v[1].value().plus(v[2].value()).times2pow(-1); // r0 + r2 + r4 + r6
+        LargeInteger o1 = v[1].value().minus(v[2].value()).times2pow(-1); // r1 + r3 + r5
+        LargeInteger e2 = v[3].value().plus(v[4].value()).times2pow(-1); // r0 + 4 r2 + 16 r4 + 64 r6
+        LargeInteger o2 = v[3].value().minus(v[4].value()).times2pow(-2); // r1 + 4 r3 + 16 r5
+        LargeInteger s1 = e1.minus(r0).minus(r6); // r2 + r4
+        LargeInteger s2 = e2.minus(r0).minus(r6.times2pow(6)); // 4 r2 + 16 r4
+        LargeInteger r4 = s2.minus(s1.times2pow(2)).divide(12);
+        LargeInteger r2 = s1.minus(r4);
+        // 64 r(1/2) = 64 r0 + 32 r1 + 16 r2 + 8 r3 + 4 r4 + 2 r5 + r6
+        LargeInteger t = v[5].value().minus(r0.times2pow(6)).minus(r2.times2pow(4)).minus(
+                r4.times2pow(2)).minus(r6).times2pow(-1); // 16 r1 + 4 r3 + r5
+        LargeInteger u = o2.minus(o1).divide(3); // r3 + 5 r5
+        LargeInteger w = t.minus(o1).divide(3); // 5 r1 + r3
+        LargeInteger r5 = w.plus(u.times2pow(2)).minus(o1.times(5)).divide(15);
+        LargeInteger r3 = u.minus(r5.times(5));
+        LargeInteger r1 = o1.minus(r3).minus(r5);
+        return r0.plus(r1.shiftWordLeft(k)).plus(r2.shiftWordLeft(k << 1)).plus(
+                r3.shiftWordLeft(3 * k)).plus(r4.shiftWordLeft(k << 2)).plus(
+                r5.shiftWordLeft(5 * k)).plus(r6.shiftWordLeft(6 * k));
+    }
+
+    // Evaluates this = a0 + a1 x + a2 x^2 + a3 x^3 at 0, 1, -1, 2, -2, 1/2
+    // (scaled by 8) and infinity.
+    private LargeInteger[] toomCook4Evaluate(int k) {
+        LargeInteger a0 = this.low(k);
+        LargeInteger a1 = this.part(k, k << 1);
+        LargeInteger a2 = this.part(k << 1, 3 * k);
+        LargeInteger a3 = this.high(3 * k);
+        LargeInteger even = a0.plus(a2);
+        LargeInteger odd = a1.plus(a3);
+        LargeInteger even2 = a0.plus(a2.times2pow(2));
+        LargeInteger odd2 = a1.plus(a3.times2pow(2)).times2pow(1);
+        LargeInteger half = a0.times2pow(3).plus(a1.times2pow(2)).plus(
+                a2.times2pow(1)).plus(a3);
+        return new LargeInteger[] { a0, even.plus(odd), even.minus(odd),
+                even2.plus(odd2), even2.minus(odd2), half, a3 };
+    }
+
+    // Multiplies slices of this (size of that) by that.
+    private LargeInteger timesSliced(LargeInteger that) {
+        final int n = that._size;
+        LargeInteger li = ARRAY_FACTORY.array(_size + n + 1);
+        for (int i = _size + n; i >= 0;) {
+            li._words[i--] = 0;
+        }
+        for (int i = 0; i < _size; i += n) {
+            LargeInteger product = this.part(i, i + n).times(that);
+            Calculus.add(li._words, i, product._words, product._size);
+        }
+        li._size = _size + n;
+        while (li._words[li._size - 1] == 0) {
+            li._size--;
+        }
+        li._isNegative = (this._isNegative != that._isNegative);
+        return li;
+    }
+
+    private LargeInteger part(int from, int to) { // this.high(from).low(to - from)
+        if (from >= _size)
+            return LargeInteger.ZERO;
+        if (to > _size)
+            return high(from);
+        for (int i = to; i > from; i--) {
+            if (_words[i - 1] != 0) {
+                LargeInteger li = ARRAY_FACTORY.array(i - from);
+                li._isNegative = _isNegative;
+                li._size = i - from;
+                System.arraycopy(_words, from, li._words, 0, i - from);
+                return li;
+            }
+        } // Else zero.
+        return LargeInteger.ZERO;
+    }
+
+    /**
+     * Holds the size in words from which squares are calculated using
+     * Karatsuba instead of the dedicated squaring kernel.
+     */
+    static final int SQUARE_KARATSUBA_THRESHOLD = 32;
+
+    /**
+     * Returns the square of this large integer. Squares are calculated using
+     * a dedicated kernel (each cross product being computed only once)
+     * for small sizes and the multiplication algorithms optimized for 
+     * identical operands otherwise.
+     * 
+     * @return <code>this · this</code>
+     */
+    public LargeInteger square() {
+        if (_size == 0)
+            return LargeInteger.ZERO;
+        if (_size >= SQUARE_KARATSUBA_THRESHOLD)
+            return this.times(this);
+        LargeInteger li = ARRAY_FACTORY.array(_size << 1);
+        li._size = Calculus.square(_words, _size, li._words);
+        li._isNegative = false;
+        return li;
+    }
+
+    /**
+     * Returns this large integer raised at the specified positive exponent
+     * (using repeated {@link #square squaring}).
+     *
+     * @param  exp the positive exponent.
+     * @return <code>this<sup>exp</sup></code>
+     * @throws IllegalArgumentException if <code>exp &lt;= 0</code> 
+     */
+    @Override
+    public LargeInteger pow(int exp) {
+        if (exp <= 0)
+            throw new IllegalArgumentException("exp: " + exp + " should be a positive number");
+        LargeInteger pow2 = this;
+        LargeInteger result = null;
+        while (true) { // Iteration.
+            if ((exp & 1) == 1) {
+                result = (result == null) ? pow2 : result.times(pow2);
+            }
+            exp >>>= 1;
+            if (exp == 0)
+                return result;
+            pow2 = pow2.square();
+        }
+    }
+
+    /**
+     * Returns the factorial of the specified integer (prime swing
+     * algorithm, the products being evaluated using balanced product trees).
+     *
+     * @param  n the positive integer or zero.
+     * @return <code>n! = 1·2·3···n</code>
+     * @throws IllegalArgumentException if <code>n &lt; 0</code> 
+     */
+    public static LargeInteger factorial(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n: " + n + " should be a positive number or zero");
+        StackContext.enter();
+        try {
+            return StackContext.outerCopy(Combinatorics.factorial(n));
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Returns the binomial coefficient <code>n</code> choose <code>k</code>
+     * (product tree of its prime factorization).
+     *
+     * @param  n the positive integer or zero.
+     * @param  k the number of elements chosen.
+     * @return <code>n! / (k!·(n-k)!)</code> or <code>0</code> if 
+     *         <code>k &lt; 0</code> or <code>k &gt; n</code>
+     * @throws IllegalArgumentException if <code>n &lt; 0</code> 
+     */
+    public static LargeInteger binomial(int n, int k) {
+        if (n < 0)
+            throw new IllegalArgumentException("n: " + n + " should be a positive number or zero");
+        StackContext.enter();
+        try {
+            return StackContext.outerCopy(Combinatorics.binomial(n, k));
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Returns the product of all the primes less than or equal to the
+     * specified integer.
+     *
+     * @param  n the integer.
+     * @return <code>n# = 2·3·5···p</code> with <code>p &lt;= n</code>
+     *         (<code>1</code> if <code>n &lt; 2</code>)
+     */
+    public static LargeInteger primorial(int n) {
+        StackContext.enter();
+        try {
+            return StackContext.outerCopy(Combinatorics.primorial(n));
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Returns the product of the specified values. The factors are 
+     * multiplied by pairs in a balanced binary tree (the last multiplications
+     * between operands of similar size use the fastest multiplication
+     * algorithms); large sub-trees are evaluated concurrently.
+     *
+     * @param  values the factors.
+     * @return <code>values[0]·values[1]···values[n-1]</code> 
+     *         (<code>1</code> if no value)
+     */
+    public static LargeInteger productOf(long... values) {
+        StackContext.enter();
+        try {
+            return StackContext.outerCopy(Combinatorics.productOf(values, values.length));
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Returns the product of the specified large integers (balanced 
+     * product tree).
+     *
+     * @param  values the factors.
+     * @return <code>values[0]·values[1]···values[n-1]</code> 
+     *         (<code>1</code> if no value)
+     * @see    #productOf(long[])
+     */
+    public static LargeInteger productOf(LargeInteger... values) {
+        StackContext.enter();
+        try {
+            return StackContext.outerCopy(Combinatorics.productOf(values, values.length));
+        } finally {
+            StackContext.exit();
         }
     }
 
@@ -1177,7 +2368,7 @@ public final class LargeInteger extends Number<LargeInteger> {
         LargeInteger li = NO_ARRAY_FACTORY.object();
         li._words = _words;
         li._isNegative = _isNegative;
-        for (int i = w; i > 0; i--) {
+        for (int i = MathLib.min(w, _size); i > 0; i--) {
             if (_words[i - 1] != 0) {
                 li._size = i;
                 return li;
@@ -1209,6 +2400,11 @@ public final class LargeInteger extends Number<LargeInteger> {
             return this.opposite();
         if (multiplier == Long.MIN_VALUE)
             return times(LONG_MIN_VALUE); // Size 2.
+        if (_size == 1) { // Single words.
+            final long product = Calculus.multiplyExact(this.longValue(), multiplier);
+            if (product != Calculus.OVERFLOW)
+                return LargeInteger.valueOf(product);
+        }
         boolean isNegative = _isNegative ^ (multiplier < 0);
         multiplier = MathLib.abs(multiplier);
         LargeInteger li = ARRAY_FACTORY.array(_size + 1);
@@ -1246,11 +2442,18 @@ public final class LargeInteger extends Number<LargeInteger> {
 
     @Override
     public BigDecimal decimalValue() {
+        if (_size <= 1) // Fits in a long.
+            return BigDecimal.valueOf(longValue());
         return new BigDecimal(asBigInteger());
     }
 
     // Implements abstract class Number.
     public int compareTo(LargeInteger that) {
+        if ((this._size <= 1) && (that._size <= 1)) { // Single words.
+            final long x = this.longValue();
+            final long y = that.longValue();
+            return (x < y) ? -1 : ((x == y) ? 0 : 1);
+        }
         // Compares sign.
         if (_isNegative && !that._isNegative)
             return -1;
@@ -1302,7 +2505,12 @@ public final class LargeInteger extends Number<LargeInteger> {
 
     /**
      * Parses the specified character sequence from the specified position 
-     * as a large integer in the specified radix.
+     * as a large integer in the specified radix. Long sequences of digits
+     * are recursively split and their halves combined using a (cached) 
+     * power of the radix. Characters are only accessed through 
+     * {@link CharSequence#charAt}, large inputs (e.g. a 
+     * <code>java.nio.CharBuffer</code> view of a memory-mapped file) are
+     * not copied.
      *
      * @param  csq the character sequence to parse.
      * @param  radix the radix to be used while parsing.
@@ -1311,41 +2519,89 @@ public final class LargeInteger extends Number<LargeInteger> {
      * @throws NumberFormatException if error when parsing.
      */
     public static LargeInteger parse(CharSequence csq, int radix, Cursor cursor) {
+        if ((radix < 2) || (radix > 36))
+            throw new NumberFormatException("radix: " + radix);
         final int end = csq.length();
         boolean isNegative = cursor.at('-', csq);
         cursor.increment(isNegative || cursor.at('+', csq) ? 1 : 0);
-        LargeInteger li = null;
+        final int start = cursor.getIndex();
+        int i = start;
+        while ((i < end) && (digit(csq.charAt(i), radix) >= 0)) {
+            i++;
+        }
+        if (i == start)
+            throw new NumberFormatException("No digit at position " + start);
+        cursor.setIndex(i);
+        final int blockDigits = blockDigits(radix);
+        final int blockCount = (i - start + blockDigits - 1) / blockDigits;
+        final int size = (31 * blockCount) / 63 + 1; // Upper bound.
+        LargeInteger li;
+        if (size <= PARSING_BASE_SIZE) {
+            li = parse(csq, start, i, radix, size + 1);
+        } else {
+            StackContext.enter();
+            try {
+                LargeInteger[] powers = radixPowers(radix, blockDigits, size);
+                int level = 0;
+                while ((blockDigits << (level + 1)) < i - start) {
+                    level++;
+                }
+                li = StackContext.outerCopy(parse(csq, start, i, radix, level,
+                        blockDigits, powers));
+            } finally {
+                StackContext.exit();
+            }
+        }
+        return isNegative ? li.opposite() : li;
+    }
+
+    // Parses the specified digits (at most blockDigits << (level + 1)), 
+    // splitting them at the power of the radix at level.
+    private static LargeInteger parse(CharSequence csq, int from, int to,
+            int radix, int level, int blockDigits, LargeInteger[] powers) {
+        if (powers[2 * level + 2]._size <= PARSING_BASE_SIZE)
+            return parse(csq, from, to, radix, powers[2 * level + 2]._size + 1);
+        final int split = to - (blockDigits << level);
+        if (split <= from)
+            return parse(csq, from, to, radix, level - 1, blockDigits, powers);
+        LargeInteger high = parse(csq, from, split, radix, level - 1,
+                blockDigits, powers);
+        LargeInteger low = parse(csq, split, to, radix, level - 1,
+                blockDigits, powers);
+        return high.times(powers[2 * level]).plus(low);
+    }
+
+    // Parses the specified digits using single word multiplications.
+    private static LargeInteger parse(CharSequence csq, int from, int to,
+            int radix, int capacity) {
+        LargeInteger li = ARRAY_FACTORY.array(capacity);
+        li._isNegative = false;
+        li._size = 0;
         final int maxDigits = (radix <= 10) ? 18 : (radix <= 16) ? 15 : 12;
-        while (true) { // Reads up to digitsCount at a time.
-            int start = cursor.getIndex();
-            int split = MathLib.min(start + maxDigits, end);
-            long l = TypeFormat.parseLong(csq.subSequence(0, split), radix, cursor);
-            int readCount = cursor.getIndex() - start;
-            if (li == null) {
-                li = LargeInteger.valueOf(l);
+        for (int i = from; i < to;) { // Reads up to maxDigits at a time.
+            final int n = MathLib.min(maxDigits, to - i);
+            long l = 0;
+            for (int j = 0; j < n; j++) {
+                l = l * radix + digit(csq.charAt(i++), radix);
+            }
+            if (li._size == 0) {
+                li._words[0] = l;
+                li._size = (l == 0) ? 0 : 1;
             } else {
-                if (li._words.length < li._size + 2) { // Resizes.
-                    LargeInteger tmp = ARRAY_FACTORY.array(li._size + 2);
-                    System.arraycopy(li._words, 0, tmp._words, 0, li._size);
-                    tmp._isNegative = li._isNegative;
-                    tmp._size = li._size;
-                    li = tmp;
-                }
-                long factor = pow(radix, readCount);
-                li._size = Calculus.multiply(li._words, li._size, factor,
+                li._size = Calculus.multiply(li._words, li._size, pow(radix, n),
                         li._words);
                 li._size = Calculus.add(li._words, li._size, l);
             }
-            if (cursor.getIndex() == end)
-                break; // Reached end.
-            char c = csq.charAt(cursor.getIndex());
-            int digit = (c <= '9') ? c - '0'
-                    : ((c <= 'Z') && (c >= 'A')) ? c - 'A' + 10
-                    : ((c <= 'z') && (c >= 'a')) ? c - 'a' + 10 : -1;
-            if ((digit < 0) || (digit >= radix))
-                break; // No more digit.
         }
-        return isNegative ? li.opposite() : li;
+        return li;
+    }
+
+    // Returns the value of the specified digit or -1 if not a digit.
+    private static int digit(char c, int radix) {
+        int digit = (c <= '9') ? c - '0'
+                : ((c <= 'Z') && (c >= 'A')) ? c - 'A' + 10
+                : ((c <= 'z') && (c >= 'a')) ? c - 'a' + 10 : -1;
+        return (digit < radix) ? digit : -1;
     }
 
     private static long pow(int radix, int n) {
@@ -1359,7 +2615,7 @@ public final class LargeInteger extends Number<LargeInteger> {
         }
         return l;
     }
-    private static final long[] LONG_POW_10 = new long[]{1, 10, 100, 1000,
+    static final long[] LONG_POW_10 = new long[]{1, 10, 100, 1000,
         10000, 100000, 1000000, 10000000, 100000000, 1000000000,
         10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
         100000000000000L, 1000000000000000L, 10000000000000000L,
@@ -1372,7 +2628,9 @@ public final class LargeInteger extends Number<LargeInteger> {
 
     /**
      * Formats the specified large integer in the specified radix and into
-     * the specified <code>Appendable</code> argument.
+     * the specified <code>Appendable</code> argument. Large numbers are 
+     * recursively split using a (cached) tree of radix powers and their 
+     * digits are written directly to the <code>Appendable</code>.
      *
      * @param  li the large integer to format.
      * @param  radix the radix.
@@ -1383,33 +2641,169 @@ public final class LargeInteger extends Number<LargeInteger> {
      */
     public static Appendable format(LargeInteger li, int radix, Appendable out)
             throws IOException {
+        if ((radix < 2) || (radix > 36))
+            throw new IllegalArgumentException("radix: " + radix);
         if (li._isNegative) {
             out.append('-');
         }
-        final int maxDigits = (radix <= 10) ? 9 : (radix <= 16) ? 7 : 5;
-        return write(li.copy(), radix, (int) pow(radix, maxDigits), out);
+        final int blockDigits = blockDigits(radix);
+        final long[] words = new long[RADIX_CONVERSION_BASE_SIZE];
+        final int[] blocks = new int[RADIX_CONVERSION_BASE_SIZE * 3 + 1];
+        if (li._size <= RADIX_CONVERSION_BASE_SIZE) {
+            write(li, 0, radix, blockDigits, words, blocks, out);
+            return out;
+        }
+        StackContext.enter();
+        try {
+            LargeInteger[] powers = radixPowers(radix, blockDigits, li._size);
+            int level = 0;
+            while (powers[2 * level + 2]._size <= li._size) {
+                level++;
+            }
+            LargeInteger abs = LargeInteger.valueOf(li._words, li._size, false);
+            write(abs, level, false, powers, radix, blockDigits, words, blocks, out);
+            return out;
+        } finally {
+            StackContext.exit();
+        }
     }
 
-    private static Appendable write(LargeInteger li, int radix, int divisor,
-            Appendable out) throws IOException {
-        if (li._size <= 1) // Direct long formatting.
-            return TypeFormat.format(li._size == 0 ? 0 : li._words[0], radix, out);
-        int rem = (int) Calculus.divide(li._words, li._size, divisor, li._words);
-        if (li._words[li._size - 1] == 0L) {
-            li._size--;
+    // Writes the specified positive number less than the power at level + 1
+    // (with leading zeros if padding), splitting it by the power at level.
+    private static void write(LargeInteger li, int level, boolean pad,
+            LargeInteger[] powers, int radix, int blockDigits, long[] words,
+            int[] blocks, Appendable out) throws IOException {
+        if (li._size <= RADIX_CONVERSION_BASE_SIZE) {
+            write(li, pad ? blockDigits << (level + 1) : 0, radix, blockDigits,
+                    words, blocks, out);
+            return;
         }
-        write(li, radix, divisor, out); // Writes high.
-        divisor /= radix;
-        while (rem < divisor) {
-            out.append('0');
-            divisor /= radix;
+        // Barrett division by p (n words), mu = 2^(126·n) / p 
+        final LargeInteger p = powers[2 * level];
+        final LargeInteger mu = powers[2 * level + 1];
+        final int n = p._size;
+        LargeInteger q = (li._size >= n) ? li.high(n - 1).times(mu)
+                : LargeInteger.ZERO;
+        q = (q._size > n + 1) ? q.high(n + 1) : LargeInteger.ZERO;
+        LargeInteger r = li.minus(q.times(p));
+        while (r.compareTo(p) >= 0) { // At most two corrections.
+            r = r.minus(p);
+            q = q.plus(LargeInteger.ONE);
         }
-        if (0 != rem) {
-            return TypeFormat.format(rem, radix, out); // Writes low.
+        if (pad || !q.isZero()) {
+            write(q, level - 1, pad, powers, radix, blockDigits, words, blocks,
+                    out); // Writes high.
+            pad = true;
+        }
+        write(r, level - 1, pad, powers, radix, blockDigits, words, blocks, out);
+    }
+
+    // Writes the specified small number using single word divisions.
+    private static void write(LargeInteger li, int digits, int radix,
+            int blockDigits, long[] words, int[] blocks, Appendable out)
+            throws IOException {
+        System.arraycopy(li._words, 0, words, 0, li._size);
+        final int divisor = (int) pow(radix, blockDigits);
+        int size = li._size;
+        int n = 0;
+        while (size > 0) {
+            blocks[n++] = (int) Calculus.divide(words, size, divisor, words);
+            if (words[size - 1] == 0L) {
+                size--;
+            }
+        }
+        if (digits == 0) { // No padding.
+            write((n == 0) ? 0 : blocks[--n], radix, 0, out);
         } else {
-            return out;
+            for (int j = digits - n * blockDigits; j > 0; j--) {
+                out.append('0');
+            }
+        }
+        while (n > 0) {
+            write(blocks[--n], radix, blockDigits, out);
         }
     }
+
+    // Writes the specified block left padded with zeros.
+    private static void write(int block, int radix, int digits, Appendable out)
+            throws IOException {
+        int count = 1;
+        for (int i = block / radix; i != 0; i /= radix) {
+            count++;
+        }
+        for (; count < digits; count++) {
+            out.append('0');
+        }
+        TypeFormat.format(block, radix, out);
+    }
+
+    // Returns the maximum number of digits of a positive int in the specified radix.
+    private static int blockDigits(int radix) {
+        int n = 0;
+        for (long l = radix; l <= Integer.MAX_VALUE; l *= radix) {
+            n++;
+        }
+        return n;
+    }
+
+    // Returns the radix powers tree: radix^(blockDigits·2^i) at index 2·i 
+    // followed by its Barrett reciprocal, up to a power larger than the 
+    // specified size.
+    private static LargeInteger[] radixPowers(int radix, int blockDigits, int size) {
+        LargeInteger[] powers = RADIX_POWERS[radix];
+        if ((powers != null) && (powers[powers.length - 2]._size > size))
+            return powers;
+        synchronized (LargeInteger.class) {
+            powers = RADIX_POWERS[radix];
+            if ((powers != null) && (powers[powers.length - 2]._size > size))
+                return powers;
+            LargeInteger p = (powers == null) ? new LargeInteger(pow(radix,
+                    blockDigits)) : powers[powers.length - 2];
+            int n = (powers == null) ? 0 : powers.length;
+            LargeInteger[] newPowers = new LargeInteger[64];
+            if (n != 0) {
+                System.arraycopy(powers, 0, newPowers, 0, n);
+            }
+            while (true) {
+                if (n == 0) {
+                    newPowers[n++] = p;
+                } else if (p._size > size) {
+                    break;
+                } else {
+                    p = p.times(p).heapCopy();
+                    newPowers[n++] = p;
+                }
+                newPowers[n++] = LargeInteger.ONE.shiftWordLeft(2 * p._size)
+                        .divide(p).heapCopy(); // Barrett reciprocal.
+            }
+            powers = new LargeInteger[n];
+            System.arraycopy(newPowers, 0, powers, 0, n);
+            LargeInteger[][] newTables = new LargeInteger[37][];
+            System.arraycopy(RADIX_POWERS, 0, newTables, 0, 37);
+            newTables[radix] = powers;
+            RADIX_POWERS = newTables;
+            return powers;
+        }
+    }
+
+    // Returns a copy not allocated through the array factory (never recycled).
+    private LargeInteger heapCopy() {
+        LargeInteger li = new LargeInteger(_size);
+        System.arraycopy(_words, 0, li._words, 0, _size);
+        li._size = _size;
+        li._isNegative = _isNegative;
+        return li;
+    }
+
+    // Holds the radix powers trees (lazily computed, never recycled).
+    private static volatile LargeInteger[][] RADIX_POWERS = new LargeInteger[37][];
+
+    // The size below which numbers are formatted using single word divisions.
+    private static final int RADIX_CONVERSION_BASE_SIZE = 20;
+
+    // The size below which numbers are parsed using single word multiplications.
+    private static final int PARSING_BASE_SIZE = 300;
+
     private static final long serialVersionUID = 1L;
 
 }
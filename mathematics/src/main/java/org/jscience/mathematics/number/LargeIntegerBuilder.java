@@ -0,0 +1,365 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.context.StackContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class represents a mutable large integer. Its operations are
+ *     performed in place on a word buffer growing as needed, for example
+ *     to accumulate sums or to evaluate polynomials (Horner's scheme)
+ *     without creating a new {@link LargeInteger} at each step.
+ *     [code]
+ *     LargeIntegerBuilder sum = new LargeIntegerBuilder();
+ *     for (LargeInteger term : terms) {
+ *         sum.add(term);
+ *     }
+ *     LargeInteger result = sum.toLargeInteger();
+ *     [/code]</p>
+ *
+ * <p> Instances of this class are not thread-safe.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ */
+public final class LargeIntegerBuilder {
+
+    /**
+     * Holds the words buffer (63 bits, least significant first).
+     */
+    private long[] _words;
+
+    /**
+     * Holds the number of words used.
+     */
+    private int _size;
+
+    /**
+     * Indicates if this builder holds a negative value.
+     */
+    private boolean _isNegative;
+
+    /**
+     * Holds the square buffer (swapped with the words buffer).
+     */
+    private long[] _tmp = new long[0];
+
+    /**
+     * Holds the magnitude of long arguments.
+     */
+    private final long[] _long = new long[2];
+
+    /**
+     * Creates a builder holding the value zero.
+     */
+    public LargeIntegerBuilder() {
+        this(4);
+    }
+
+    /**
+     * Creates a builder holding the value zero with the specified initial
+     * capacity.
+     *
+     * @param capacity the initial capacity in 63 bits words.
+     */
+    public LargeIntegerBuilder(int capacity) {
+        _words = new long[MathLib.max(capacity, 2)];
+    }
+
+    /**
+     * Creates a builder holding the specified value.
+     *
+     * @param value the initial value.
+     */
+    public LargeIntegerBuilder(LargeInteger value) {
+        this(value.size() + 1);
+        set(value);
+    }
+
+    /**
+     * Sets the value of this builder.
+     *
+     * @param value the new value.
+     * @return <code>this</code>
+     */
+    public LargeIntegerBuilder set(LargeInteger value) {
+        ensureCapacity(value.size());
+        System.arraycopy(value.words(), 0, _words, 0, value.size());
+        _size = value.size();
+        _isNegative = value.isNegative();
+        return this;
+    }
+
+    /**
+     * Sets the value of this builder.
+     *
+     * @param value the new value.
+     * @return <code>this</code>
+     */
+    public LargeIntegerBuilder set(long value) {
+        _size = 0;
+        _isNegative = false;
+        return add(value);
+    }
+
+    /**
+     * Adds the specified large integer to this builder.
+     *
+     * @param that the large integer to add.
+     * @return <code>this += that</code>
+     */
+    public LargeIntegerBuilder add(LargeInteger that) {
+        return add(that.words(), that.size(), that.isNegative());
+    }
+
+    /**
+     * Adds the specified long to this builder.
+     *
+     * @param value the long to add.
+     * @return <code>this += value</code>
+     */
+    public LargeIntegerBuilder add(long value) {
+        return add(_long, magnitude(value), value < 0);
+    }
+
+    /**
+     * Subtracts the specified large integer from this builder.
+     *
+     * @param that the large integer to subtract.
+     * @return <code>this -= that</code>
+     */
+    public LargeIntegerBuilder subtract(LargeInteger that) {
+        return add(that.words(), that.size(), !that.isNegative());
+    }
+
+    /**
+     * Subtracts the specified long from this builder.
+     *
+     * @param value the long to subtract.
+     * @return <code>this -= value</code>
+     */
+    public LargeIntegerBuilder subtract(long value) {
+        return add(_long, magnitude(value), value >= 0);
+    }
+
+    /**
+     * Multiplies this builder by the specified long.
+     *
+     * @param multiplier the multiplier.
+     * @return <code>this *= multiplier</code>
+     */
+    public LargeIntegerBuilder multiply(long multiplier) {
+        if ((_size == 0) || (multiplier == 0)) {
+            _size = 0;
+            _isNegative = false;
+            return this;
+        }
+        _isNegative ^= multiplier < 0;
+        if (multiplier == Long.MIN_VALUE)
+            return shiftLeft(63);
+        ensureCapacity(_size + 1);
+        _size = Calculus.multiply(_words, _size, MathLib.abs(multiplier),
+                _words);
+        return this;
+    }
+
+    /**
+     * Multiplies this builder by the specified long and adds the specified
+     * addend (Horner's step).
+     *
+     * @param multiplier the multiplier.
+     * @param addend the long to add.
+     * @return <code>this = this * multiplier + addend</code>
+     */
+    public LargeIntegerBuilder multiplyAdd(long multiplier, long addend) {
+        return multiply(multiplier).add(addend);
+    }
+
+    /**
+     * Shifts this builder to the left.
+     *
+     * @param n the shift distance in bits (positive).
+     * @return <code>this &lt;&lt;= n</code>
+     * @throws IllegalArgumentException if <code>n &lt; 0</code>
+     */
+    public LargeIntegerBuilder shiftLeft(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n: " + n + " should be positive");
+        if ((_size == 0) || (n == 0))
+            return this;
+        final int wordShift = n / 63;
+        final int bitShift = n - wordShift * 63;
+        ensureCapacity(_size + wordShift + 1);
+        _size = Calculus.shiftLeft(wordShift, bitShift, _words, _size, _words);
+        return this;
+    }
+
+    /**
+     * Shifts this builder to the right with sign extension
+     * (<code>-1 >> 1 == -1</code>).
+     *
+     * @param n the shift distance in bits (positive).
+     * @return <code>this &gt;&gt;= n</code>
+     * @throws IllegalArgumentException if <code>n &lt; 0</code>
+     * @see LargeInteger#shiftRight(int)
+     */
+    public LargeIntegerBuilder shiftRight(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n: " + n + " should be positive");
+        if ((_size == 0) || (n == 0))
+            return this;
+        final int wordShift = n / 63;
+        final int bitShift = n - wordShift * 63;
+        boolean bitsLost = false; // Affects only negative values.
+        for (int i = 0; (i < wordShift) && (i < _size) && !bitsLost; i++) {
+            bitsLost = _words[i] != 0;
+        }
+        if ((wordShift < _size) && (bitShift != 0)) {
+            bitsLost |= (_words[wordShift] << (64 - bitShift)) != 0;
+        }
+        _size = (wordShift < _size) ? Calculus.shiftRight(wordShift, bitShift,
+                _words, _size, _words) : 0;
+        if (_isNegative && bitsLost) { // Rounds toward negative infinity.
+            if (_size == 0) {
+                _words[0] = 1;
+                _size = 1;
+            } else {
+                ensureCapacity(_size + 1);
+                _size = Calculus.add(_words, _size, 1);
+            }
+        }
+        _isNegative &= _size != 0;
+        return this;
+    }
+
+    /**
+     * Squares this builder.
+     *
+     * @return <code>this = this · this</code>
+     */
+    public LargeIntegerBuilder square() {
+        _isNegative = false;
+        if (_size == 0)
+            return this;
+        if (_size >= LargeInteger.SQUARE_KARATSUBA_THRESHOLD) {
+            StackContext.enter();
+            try {
+                LargeInteger square = LargeInteger.valueOf(_words, _size, false).square();
+                return set(square);
+            } finally {
+                StackContext.exit();
+            }
+        }
+        if (_tmp.length < 2 * _size) {
+            _tmp = new long[MathLib.max(2 * _size, _words.length)];
+        }
+        _size = Calculus.square(_words, _size, _tmp);
+        long[] tmp = _words;
+        _words = _tmp;
+        _tmp = tmp; // Swaps buffers.
+        return this;
+    }
+
+    /**
+     * Negates this builder.
+     *
+     * @return <code>this = -this</code>
+     */
+    public LargeIntegerBuilder opposite() {
+        _isNegative = !_isNegative && (_size != 0);
+        return this;
+    }
+
+    /**
+     * Indicates if this builder holds the value zero.
+     *
+     * @return <code>this == 0</code>
+     */
+    public boolean isZero() {
+        return _size == 0;
+    }
+
+    /**
+     * Indicates if this builder holds a negative value.
+     *
+     * @return <code>this &lt; 0</code>
+     */
+    public boolean isNegative() {
+        return _isNegative;
+    }
+
+    /**
+     * Returns the large integer value of this builder (copy).
+     *
+     * @return the current value as a large integer.
+     */
+    public LargeInteger toLargeInteger() {
+        return LargeInteger.valueOf(_words, _size, _isNegative).copy();
+    }
+
+    /**
+     * Returns the decimal text representation of this builder.
+     *
+     * @return the current value as a string.
+     */
+    public String toString() {
+        return LargeInteger.valueOf(_words, _size, _isNegative).toString();
+    }
+
+    // this += (isNegative ? -y : y), y magnitude words.
+    private LargeIntegerBuilder add(long[] y, int ySize, boolean isNegative) {
+        if (ySize == 0)
+            return this;
+        if (_size == 0) {
+            ensureCapacity(ySize);
+            System.arraycopy(y, 0, _words, 0, ySize);
+            _size = ySize;
+            _isNegative = isNegative;
+            return this;
+        }
+        if (_isNegative == isNegative) {
+            ensureCapacity(MathLib.max(_size, ySize) + 1);
+            _size = (_size >= ySize) ? Calculus.add(_words, _size, y, ySize, _words)
+                    : Calculus.add(y, ySize, _words, _size, _words);
+            return this;
+        }
+        final int cmp = (_size != ySize) ? _size - ySize : Calculus.compare(
+                _words, y, _size);
+        if (cmp >= 0) {
+            _size = Calculus.subtract(_words, _size, y, ySize, _words);
+        } else {
+            ensureCapacity(ySize);
+            _size = Calculus.subtract(y, ySize, _words, _size, _words);
+            _isNegative = isNegative;
+        }
+        _isNegative &= _size != 0;
+        return this;
+    }
+
+    // Sets the magnitude of the specified long, returns its size.
+    private int magnitude(long value) {
+        if (value == Long.MIN_VALUE) {
+            _long[0] = 0;
+            _long[1] = 1;
+            return 2;
+        }
+        _long[0] = MathLib.abs(value);
+        return (value == 0) ? 0 : 1;
+    }
+
+    // Grows the words buffer (preserving content) if too small.
+    private void ensureCapacity(int capacity) {
+        if (_words.length >= capacity)
+            return;
+        long[] words = new long[MathLib.max(capacity, 2 * _words.length)];
+        System.arraycopy(_words, 0, words, 0, _size);
+        _words = words;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+
+import javolution.lang.Configurable;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class tunes the {@link LargeInteger} algorithm thresholds for
+ *     the current host. The crossovers between the conventional, Karatsuba,
+ *     Toom-Cook and FFT multiplications and between the schoolbook and
+ *     Burnikel-Ziegler divisions are measured by micro-benchmarks, persisted
+ *     to a properties file and loaded from that file at the next use.
+ *     [code]
+ *     // Benchmarks the first time only (no file), loads the file afterward.
+ *     LargeIntegerTuner.configure(new File("largeinteger.properties"));
+ *     [/code]</p>
+ *
+ * <p> The properties keys are the names of the {@link LargeInteger}
+ *     thresholds (e.g. <code>"KARATSUBA_THRESHOLD"</code>); thresholds
+ *     not benchmarked (Newton division, half-GCD, concurrency) can be
+ *     added to the file manually.</p>
+ *
+ * <p> Tuning takes a few seconds and should be performed on an otherwise
+ *     idle machine. The threshold values tried during the benchmarks are
+ *     visible to the tuning thread only; other threads keep using the 
+ *     current configuration.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ */
+public final class LargeIntegerTuner {
+
+    /**
+     * Holds the names of the configurable thresholds.
+     */
+    private static final String[] NAMES = { "KARATSUBA_THRESHOLD",
+            "TOOM_COOK_3_THRESHOLD", "TOOM_COOK_4_THRESHOLD", "FFT_THRESHOLD",
+            "BURNIKEL_ZIEGLER_THRESHOLD", "NEWTON_DIVISION_THRESHOLD",
+            "HALF_GCD_THRESHOLD", "CONCURRENCY_THRESHOLD" };
+
+    /**
+     * Holds the configurable thresholds (same order as names).
+     */
+    @SuppressWarnings("unchecked")
+    private static final Configurable<Integer>[] THRESHOLDS = new Configurable[] {
+            LargeInteger.KARATSUBA_THRESHOLD, LargeInteger.TOOM_COOK_3_THRESHOLD,
+            LargeInteger.TOOM_COOK_4_THRESHOLD, LargeInteger.FFT_THRESHOLD,
+            LargeInteger.BURNIKEL_ZIEGLER_THRESHOLD,
+            LargeInteger.NEWTON_DIVISION_THRESHOLD,
+            LargeInteger.HALF_GCD_THRESHOLD, LargeInteger.CONCURRENCY_THRESHOLD };
+
+    /**
+     * Holds the number of timing runs per measurement (best kept).
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Holds the minimum duration of a timing run in nanoseconds.
+     */
+    private static final long RUN_DURATION = 2000000L;
+
+    /**
+     * Default constructor (private for utilities).
+     */
+    private LargeIntegerTuner() {
+    }
+
+    /**
+     * Configures the large integer thresholds from the specified file;
+     * if the file does not exist the thresholds are first tuned for the
+     * current host and stored into that file.
+     *
+     * @param file the properties file holding the thresholds.
+     * @throws IOException if the file cannot be read or written.
+     * @throws NumberFormatException if a threshold value is not an integer.
+     */
+    public static void configure(File file) throws IOException {
+        Properties thresholds;
+        if (file.exists()) {
+            thresholds = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                thresholds.load(in);
+            } finally {
+                in.close();
+            }
+        } else {
+            thresholds = tune();
+            store(thresholds, file);
+        }
+        configure(thresholds);
+    }
+
+    /**
+     * Configures the large integer thresholds from the specified properties
+     * (thresholds not specified are left unchanged).
+     *
+     * @param thresholds the thresholds values keyed by name.
+     * @throws NumberFormatException if a threshold value is not an integer.
+     */
+    public static void configure(Properties thresholds) {
+        for (int i = 0; i < NAMES.length; i++) {
+            String value = thresholds.getProperty(NAMES[i]);
+            if (value != null) {
+                Configurable.configure(THRESHOLDS[i], Integer.valueOf(value.trim()));
+            }
+        }
+    }
+
+    /**
+     * Measures the multiplication and division crossovers on the current
+     * host. The configured thresholds are not modified (see 
+     * {@link #configure(Properties)} to apply the result).
+     *
+     * @return the tuned thresholds keyed by name.
+     */
+    public static Properties tune() {
+        return tune(Integer.MAX_VALUE);
+    }
+
+    // Tunes with the benchmarked sizes limited to the specified number of words.
+    static synchronized Properties tune(int maxSize) {
+        Properties thresholds = new Properties();
+        LargeInteger.TUNING_THREAD = Thread.currentThread();
+        try {
+            set(LargeInteger.CONCURRENCY_THRESHOLD, Integer.MAX_VALUE);
+            warmUp(maxSize);
+            set(LargeInteger.TOOM_COOK_3_THRESHOLD, Integer.MAX_VALUE);
+            set(LargeInteger.TOOM_COOK_4_THRESHOLD, Integer.MAX_VALUE);
+            set(LargeInteger.FFT_THRESHOLD, Integer.MAX_VALUE);
+            int karatsuba = crossover(LargeInteger.KARATSUBA_THRESHOLD, 4, 80, maxSize, false);
+            int toomCook3 = crossover(LargeInteger.TOOM_COOK_3_THRESHOLD, 20, 1000, maxSize, false);
+            int toomCook4 = crossover(LargeInteger.TOOM_COOK_4_THRESHOLD, toomCook3, 5000, maxSize, false);
+            int fft = crossover(LargeInteger.FFT_THRESHOLD, 500, 40000, maxSize, false);
+            set(LargeInteger.NEWTON_DIVISION_THRESHOLD, Integer.MAX_VALUE);
+            int burnikelZiegler = crossover(LargeInteger.BURNIKEL_ZIEGLER_THRESHOLD, 10, 1000, maxSize, true);
+            thresholds.setProperty("KARATSUBA_THRESHOLD", String.valueOf(karatsuba));
+            thresholds.setProperty("TOOM_COOK_3_THRESHOLD", String.valueOf(toomCook3));
+            thresholds.setProperty("TOOM_COOK_4_THRESHOLD", String.valueOf(toomCook4));
+            thresholds.setProperty("FFT_THRESHOLD", String.valueOf(fft));
+            thresholds.setProperty("BURNIKEL_ZIEGLER_THRESHOLD", String.valueOf(burnikelZiegler));
+        } finally {
+            LargeInteger.TUNING_THREAD = null;
+            LargeInteger.TUNED_THRESHOLDS.clear();
+        }
+        return thresholds;
+    }
+
+    /**
+     * Tunes the large integer thresholds and stores them into the file
+     * specified or prints them if no file is specified.
+     *
+     * @param args the optional properties file name.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Properties thresholds = tune();
+        if (args.length == 0) {
+            thresholds.store(System.out, comment());
+        } else {
+            store(thresholds, new File(args[0]));
+        }
+    }
+
+    // Returns the smallest candidate size (geometric progression from min to
+    // max) for which the algorithm enabled by the specified threshold is
+    // faster at that size and at the next one (sequential thresholds above
+    // must already be set), sizes larger than maxSize are not benchmarked.
+    private static int crossover(Configurable<Integer> threshold, int min,
+            int max, int maxSize, boolean divide) {
+        max = MathLib.max(MathLib.min(max, maxSize), min);
+        Random random = new Random(63);
+        boolean wasFaster = false;
+        int previous = max;
+        for (int n = min; n <= max; n += MathLib.max(n >> 2, 1)) {
+            LargeInteger x = random(divide ? 2 * n : n, random);
+            LargeInteger y = random(n, random);
+            set(threshold, n + 1); // Below.
+            long below = time(x, y, divide);
+            set(threshold, n); // Above.
+            long above = time(x, y, divide);
+            boolean isFaster = above < below;
+            if (isFaster && wasFaster) {
+                set(threshold, previous);
+                return previous;
+            }
+            wasFaster = isFaster;
+            previous = n;
+        }
+        set(threshold, max);
+        return max;
+    }
+
+    // Runs the multiplications and divisions (current thresholds) at
+    // increasing sizes to get the code compiled before measuring.
+    private static void warmUp(int maxSize) {
+        Random random = new Random(63);
+        for (int n = 5; n <= MathLib.min(1500, maxSize); n *= 2) {
+            LargeInteger x = random(2 * n, random);
+            LargeInteger y = random(n, random);
+            time(y, y, false);
+            time(x, y, true);
+        }
+    }
+
+    // Returns the best time in nanoseconds of x.times(y) or x.divide(y).
+    private static long time(LargeInteger x, LargeInteger y, boolean divide) {
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int run = 0; run <= RUNS; run++) { // First run for warm-up.
+            int count = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += divide ? x.divide(y).size() : x.times(y).size();
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < RUN_DURATION);
+            if (run != 0) {
+                best = MathLib.min(best, elapsed / count);
+            }
+        }
+        return (sink == 0) ? best + 1 : best; // Keeps results alive.
+    }
+
+    // Returns a random positive large integer of the specified size in words.
+    private static LargeInteger random(int size, Random random) {
+        long[] words = new long[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = random.nextLong() & Calculus.MASK_63;
+        }
+        words[size - 1] |= 1L << 62;
+        return LargeInteger.valueOf(words, size, false);
+    }
+
+    // Stores the specified thresholds into the specified file.
+    private static void store(Properties thresholds, File file)
+            throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            thresholds.store(out, comment());
+        } finally {
+            out.close();
+        }
+    }
+
+    // Returns the properties file comment (host identification).
+    private static String comment() {
+        return "LargeInteger thresholds (" + System.getProperty("os.arch")
+                + ", " + System.getProperty("java.vm.name") + ")";
+    }
+
+    // Sets the specified threshold for the tuning thread only.
+    private static void set(Configurable<Integer> threshold, int value) {
+        LargeInteger.TUNED_THRESHOLDS.put(threshold, Integer.valueOf(value));
+    }
+}
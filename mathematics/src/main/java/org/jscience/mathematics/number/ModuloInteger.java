@@ -20,6 +20,11 @@ import javolution.text.TextFormat;
  *     with the {@link org.jscience.mathematics.vector.Matrix Matrix}
  *     class to resolve modulo equations (ref. number theory).</p>
  *     
+ * <p> The {@link javolution.context.LocalContext local} modulus is held 
+ *     by a {@link Modulus} context whose reduction constants are calculated
+ *     once when the modulus is set; operations results are reduced using
+ *     that context (no division).</p>
+ *     
  * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
  * @version 5.0, November 20, 2009
  * @see <a href="http://en.wikipedia.org/wiki/Modular_arithmetic">
@@ -72,7 +77,7 @@ public final class ModuloInteger extends NumberField<ModuloInteger> {
     /**
      * Holds the local modulus (for modular arithmetic).
      */
-    private static final LocalContext.Reference<LargeInteger> MODULUS = new LocalContext.Reference<LargeInteger>();
+    private static final LocalContext.Reference<Modulus> MODULUS = new LocalContext.Reference<Modulus>();
 
     /**
      * Holds the large integer value.
@@ -154,7 +159,8 @@ public final class ModuloInteger extends NumberField<ModuloInteger> {
      * @see #setModulus
      */
     public static LargeInteger getModulus() {
-        return MODULUS.get();
+        Modulus modulus = MODULUS.get();
+        return (modulus == null) ? null : modulus.getValue();
     }
 
     /**
@@ -167,6 +173,31 @@ public final class ModuloInteger extends NumberField<ModuloInteger> {
     public static void setModulus(LargeInteger modulus) {
         if ((modulus != null) && (!modulus.isPositive()))
             throw new IllegalArgumentException("modulus: " + modulus + " has to be greater than 0");
+        MODULUS.set((modulus == null) ? null : new Modulus(modulus));
+    }
+
+    /**
+     * Returns the {@link javolution.context.LocalContext local} modulus 
+     * context for modular arithmetic or <code>null</code> if the arithmetic
+     * operations are non-modular (default). 
+     * 
+     * @return the local modulus context or <code>null</code> if none.
+     * @see #setModulusContext
+     */
+    public static Modulus getModulusContext() {
+        return MODULUS.get();
+    }
+
+    /**
+     * Sets the {@link javolution.context.LocalContext local} modulus 
+     * context for modular arithmetic. Setting a precomputed context 
+     * avoids recalculating the reduction constants when the same 
+     * modulus is used by different local contexts.
+     * 
+     * @param modulus the new modulus context or <code>null</code> to unset
+     *        the modulus.
+     */
+    public static void setModulusContext(Modulus modulus) {
         MODULUS.set(modulus);
     }
 
@@ -179,44 +210,51 @@ public final class ModuloInteger extends NumberField<ModuloInteger> {
      *         this modulo creation value.
      */
     public LargeInteger moduloValue() {
-        LargeInteger modulus = MODULUS.get();
-        return (modulus == null) ? _value : _value.mod(modulus);
+        Modulus modulus = MODULUS.get();
+        return (modulus == null) ? _value : modulus.reduce(_value);
     }
 
     // Implements GroupAdditive.
     public ModuloInteger opposite() {
-        LargeInteger value = moduloValue().opposite();
-        LargeInteger modulus = MODULUS.get();
-        return ModuloInteger.valueOf((modulus == null) ? value : value.mod(modulus));
+        Modulus modulus = MODULUS.get();
+        if (modulus == null)
+            return ModuloInteger.valueOf(_value.opposite());
+        return ModuloInteger.valueOf(modulus.opposite(modulus.reduce(_value)));
     }
 
     // Implements GroupAdditive.
     public ModuloInteger plus(ModuloInteger that) {
-        LargeInteger value = moduloValue().plus(that.moduloValue());
-        LargeInteger modulus = MODULUS.get();
-        return ModuloInteger.valueOf((modulus == null) ? value : value.mod(modulus));
+        Modulus modulus = MODULUS.get();
+        if (modulus == null)
+            return ModuloInteger.valueOf(_value.plus(that._value));
+        return ModuloInteger.valueOf(modulus.plus(modulus.reduce(_value),
+                modulus.reduce(that._value)));
     }
 
     @Override
     public ModuloInteger times(long multiplier) {
-        LargeInteger value = moduloValue().times(multiplier);
-        LargeInteger modulus = MODULUS.get();
-        return ModuloInteger.valueOf((modulus == null) ? value : value.mod(modulus));
+        Modulus modulus = MODULUS.get();
+        if (modulus == null)
+            return ModuloInteger.valueOf(_value.times(multiplier));
+        return ModuloInteger.valueOf(modulus.times(modulus.reduce(_value),
+                modulus.reduce(LargeInteger.valueOf(multiplier))));
     }
 
     // Implements GroupMultiplicative.
     public ModuloInteger times(ModuloInteger that) {
-        LargeInteger value = moduloValue().times(that.moduloValue());
-        LargeInteger modulus = MODULUS.get();
-        return ModuloInteger.valueOf((modulus == null) ? value : value.mod(modulus));
+        Modulus modulus = MODULUS.get();
+        if (modulus == null)
+            return ModuloInteger.valueOf(_value.times(that._value));
+        return ModuloInteger.valueOf(modulus.times(modulus.reduce(_value),
+                modulus.reduce(that._value)));
     }
 
     // Implements GroupMultiplicative.
     public ModuloInteger reciprocal() {
-        LargeInteger modulus = MODULUS.get();
+        Modulus modulus = MODULUS.get();
         if (modulus == null)
             throw new ArithmeticException("Modulus not set");
-        return ModuloInteger.valueOf(_value.modInverse(modulus));
+        return ModuloInteger.valueOf(modulus.inverse(modulus.reduce(_value)));
     }
 
     // Implements abstract class Number.
@@ -0,0 +1,442 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class represents a positive modulus with the constants required
+ *     for fast modular reduction precomputed. Products are reduced using
+ *     Barrett reduction; exponentiations of odd moduli use Montgomery 
+ *     reduction (<code>R = 2<sup>63·n</sup></code>, <code>n</code> being
+ *     the modulus size in words). Moduli less than <code>2<sup>62</sup></code>
+ *     are handled using single word arithmetic.
+ *     [code]
+ *     Modulus p = new Modulus(LargeInteger.valueOf(1000000007));
+ *     LargeInteger z = p.plus(p.times(x, y), c); // x·y + c mod p
+ *     [/code]</p>
+ *
+ * <p> Instances of this class are immutable and can be reused for any 
+ *     number of reductions against the same modulus. They can also be set
+ *     as the {@link ModuloInteger#setModulusContext local modulus} for 
+ *     {@link ModuloInteger} arithmetic.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Montgomery_reduction">
+ *      Wikipedia: Montgomery Reduction</a>
+ * @see <a href="http://en.wikipedia.org/wiki/Barrett_reduction">
+ *      Wikipedia: Barrett Reduction</a>
+ */
+public final class Modulus {
+
+    /**
+     * Holds the modulus value.
+     */
+    private final LargeInteger _value;
+
+    /**
+     * Holds the modulus size in 63 bits words.
+     */
+    private final int _size;
+
+    /**
+     * Holds the modulus value if less than <code>2<sup>62</sup></code>
+     * (single word arithmetic) or <code>0</code>.
+     */
+    private final long _word;
+
+    /**
+     * Holds the modulus bit length and <code>(2<sup>2k</sup> - 1) / m</code>
+     * (single word arithmetic).
+     */
+    private final int _wordBits;
+    private final long _wordMu;
+
+    /**
+     * Holds <code>2<sup>63</sup> mod m</code> (single word arithmetic).
+     */
+    private final long _wordBase;
+
+    /**
+     * Holds <code>-m<sup>-1</sup> mod 2<sup>63</sup></code> (odd moduli).
+     */
+    private final long _inverse;
+
+    /**
+     * Holds <code>R<sup>2</sup> mod m</code> (odd moduli).
+     */
+    private final LargeInteger _rSquare;
+
+    /**
+     * Holds <code>2<sup>126·n</sup> / m</code>.
+     */
+    private final LargeInteger _mu;
+
+    /**
+     * Creates the context for the specified positive modulus.
+     *
+     * @param m the modulus.
+     * @throws ArithmeticException <code>m &lt;= 0</code>
+     */
+    public Modulus(LargeInteger m) {
+        if (!m.isPositive())
+            throw new ArithmeticException("Modulus is not a positive number");
+        _value = m;
+        _size = (m.bitLength() + 62) / 63;
+        _word = (m.bitLength() <= 62) ? m.longValue() : 0;
+        _wordBits = m.bitLength();
+        _wordMu = (_word == 0) ? 0 : LargeInteger.ONE.shiftLeft(
+                _wordBits << 1).minus(1).divide(m).longValue();
+        _wordBase = (_word == 0) ? 0 : LargeInteger.ONE.shiftLeft(63).mod(m).longValue();
+        _mu = LargeInteger.ONE.shiftLeft(126 * _size).divide(m);
+        if (m.isOdd()) {
+            final long m0 = m.longValue() & Calculus.MASK_63;
+            long inv = m0; // Correct to 3 bits (m0 odd).
+            for (int i = 0; i < 5; i++) { // Newton iteration, doubles precision.
+                inv *= 2 - m0 * inv;
+            }
+            _inverse = -inv & Calculus.MASK_63;
+            _rSquare = LargeInteger.ONE.shiftLeft(126 * _size).mod(m);
+        } else {
+            _inverse = 0;
+            _rSquare = null;
+        }
+    }
+
+    /**
+     * Returns the value of this modulus.
+     *
+     * @return the positive modulus.
+     */
+    public LargeInteger getValue() {
+        return _value;
+    }
+
+    /**
+     * Indicates if this modulus is a single word modulus (less than
+     * <code>2<sup>62</sup></code>) supporting primitive residue arithmetic.
+     *
+     * @return <code>true</code> if this modulus has at most 62 bits;
+     *         <code>false</code> otherwise.
+     */
+    public boolean isSingleWord() {
+        return _word != 0;
+    }
+
+    /**
+     * Returns the specified value modulo this modulus.
+     *
+     * @param  x the value to reduce.
+     * @return <code>x mod m</code> in the range <code>[0, m[</code>
+     */
+    public LargeInteger reduce(LargeInteger x) {
+        if (x.isNegative())
+            return x.mod(_value);
+        if (x.compareTo(_value) < 0)
+            return x; // Already reduced.
+        if ((_word == 0) && (x.size() <= 2 * _size))
+            return barrett(x);
+        return x.mod(_value);
+    }
+
+    /**
+     * Returns the sum of the specified residues modulo this modulus.
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x + y) mod m</code>
+     */
+    public LargeInteger plus(LargeInteger x, LargeInteger y) {
+        if (_word != 0) {
+            final long sum = x.longValue() + y.longValue();
+            return LargeInteger.valueOf((sum >= _word) ? sum - _word : sum);
+        }
+        final LargeInteger sum = x.plus(y);
+        return (sum.compareTo(_value) >= 0) ? sum.minus(_value) : sum;
+    }
+
+    /**
+     * Returns the difference of the specified residues modulo this modulus.
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x - y) mod m</code>
+     */
+    public LargeInteger minus(LargeInteger x, LargeInteger y) {
+        if (_word != 0) {
+            final long difference = x.longValue() - y.longValue();
+            return LargeInteger.valueOf((difference < 0) ? difference + _word : difference);
+        }
+        final LargeInteger difference = x.minus(y);
+        return difference.isNegative() ? difference.plus(_value) : difference;
+    }
+
+    /**
+     * Returns the opposite of the specified residue modulo this modulus.
+     *
+     * @param  x the value in the range <code>[0, m[</code>.
+     * @return <code>-x mod m</code>
+     */
+    public LargeInteger opposite(LargeInteger x) {
+        return x.isZero() ? x : _value.minus(x);
+    }
+
+    /**
+     * Returns the product of the specified residues modulo this modulus.
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x · y) mod m</code>
+     */
+    public LargeInteger times(LargeInteger x, LargeInteger y) {
+        if (_word != 0)
+            return LargeInteger.valueOf(Calculus.multiplyMod(x.longValue(),
+                    y.longValue(), _word, _wordMu, _wordBits));
+        return barrett((x == y) ? x.square() : x.times(y));
+    }
+
+    /**
+     * Returns the multiplicative inverse of the specified residue modulo
+     * this modulus.
+     *
+     * @param  x the value in the range <code>[0, m[</code>.
+     * @return <code>x<sup>-1</sup> mod m</code>
+     * @throws ArithmeticException if <code>x</code> has no multiplicative
+     *         inverse modulo this modulus.
+     */
+    public LargeInteger inverse(LargeInteger x) {
+        return x.modInverse(_value);
+    }
+
+    /**
+     * Returns the specified value modulo this single word modulus
+     * (less than <code>2<sup>62</sup></code>).
+     *
+     * @param  x the value to reduce.
+     * @return <code>x mod m</code> in the range <code>[0, m[</code>
+     * @throws IllegalStateException if this modulus is not a
+     *         {@link #isSingleWord single word} modulus.
+     */
+    public long residueOf(LargeInteger x) {
+        checkSingleWord();
+        final long[] words = x.words();
+        long r = 0; // Horner, r = r·2^63 + w mod m
+        for (int i = x.size(); --i >= 0;) {
+            r = Calculus.multiplyMod(r, _wordBase, _word, _wordMu, _wordBits)
+                    + words[i] % _word;
+            r = (r >= _word) ? r - _word : r;
+        }
+        return (x.isNegative() && (r != 0)) ? _word - r : r;
+    }
+
+    /**
+     * Returns the sum of the specified residues modulo this single word
+     * modulus (less than <code>2<sup>62</sup></code>).
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x + y) mod m</code>
+     * @throws IllegalStateException if this modulus is not a
+     *         {@link #isSingleWord single word} modulus.
+     */
+    public long plus(long x, long y) {
+        checkSingleWord();
+        final long sum = x + y;
+        return (sum >= _word) ? sum - _word : sum;
+    }
+
+    /**
+     * Returns the difference of the specified residues modulo this single
+     * word modulus (less than <code>2<sup>62</sup></code>).
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x - y) mod m</code>
+     * @throws IllegalStateException if this modulus is not a
+     *         {@link #isSingleWord single word} modulus.
+     */
+    public long minus(long x, long y) {
+        checkSingleWord();
+        final long difference = x - y;
+        return (difference < 0) ? difference + _word : difference;
+    }
+
+    /**
+     * Returns the product of the specified residues modulo this single
+     * word modulus (less than <code>2<sup>62</sup></code>).
+     *
+     * @param  x the first value in the range <code>[0, m[</code>.
+     * @param  y the second value in the range <code>[0, m[</code>.
+     * @return <code>(x · y) mod m</code>
+     * @throws IllegalStateException if this modulus is not a
+     *         {@link #isSingleWord single word} modulus.
+     */
+    public long times(long x, long y) {
+        checkSingleWord();
+        return Calculus.multiplyMod(x, y, _word, _wordMu, _wordBits);
+    }
+
+    /**
+     * Returns the multiplicative inverse of the specified residue modulo
+     * this single word modulus (less than <code>2<sup>62</sup></code>).
+     *
+     * @param  x the value in the range <code>[0, m[</code>.
+     * @return <code>x<sup>-1</sup> mod m</code>
+     * @throws ArithmeticException if <code>x</code> has no multiplicative
+     *         inverse modulo this modulus.
+     * @throws IllegalStateException if this modulus is not a
+     *         {@link #isSingleWord single word} modulus.
+     */
+    public long inverse(long x) {
+        checkSingleWord();
+        long r0 = _word, r1 = x, t0 = 0, t1 = 1; // Extended Euclid.
+        while (r1 != 0) {
+            final long q = r0 / r1;
+            long tmp = r0 - q * r1;
+            r0 = r1;
+            r1 = tmp;
+            tmp = t0 - q * t1;
+            t0 = t1;
+            t1 = tmp;
+        }
+        if (r0 != 1)
+            throw new ArithmeticException(x + " has no inverse modulo " + _word);
+        return (t0 < 0) ? t0 + _word : t0;
+    }
+
+    // Throws IllegalStateException if this modulus is not single word.
+    private void checkSingleWord() {
+        if (_word == 0)
+            throw new IllegalStateException("Modulus " + _value
+                    + " is larger than 62 bits");
+    }
+
+    /**
+     * Returns the specified value raised at the specified positive
+     * exponent modulo this modulus (sliding window exponentiation).
+     *
+     * @param  x the value in the range <code>[0, m[</code>.
+     * @param  exp the positive exponent.
+     * @return <code>x<sup>exp</sup> mod m</code>
+     * @throws IllegalArgumentException if <code>exp &lt;= 0</code>
+     */
+    public LargeInteger pow(LargeInteger x, LargeInteger exp) {
+        if (!exp.isPositive())
+            throw new IllegalArgumentException("exp: " + exp + " should be a positive number");
+        final byte[] bits = new byte[(exp.bitLength() >> 3) + 1];
+        exp.toByteArray(bits, 0);
+        final int bitLength = exp.bitLength();
+        final int k = windowSize(bitLength);
+
+        // Odd powers: x, x^3, x^5, ... x^(2^k - 1)
+        final LargeInteger[] powers = new LargeInteger[1 << (k - 1)];
+        powers[0] = (_rSquare != null) ? x.montgomeryTimes(_rSquare, _value, _inverse) : x;
+        final LargeInteger square = multiply(powers[0], powers[0]);
+        for (int i = 1; i < powers.length; i++) {
+            powers[i] = multiply(powers[i - 1], square);
+        }
+
+        LargeInteger result = null;
+        for (int i = bitLength - 1; i >= 0;) {
+            if (!testBit(bits, i)) {
+                result = multiply(result, result);
+                i--;
+                continue;
+            }
+            // Longest window ending with a set bit.
+            int j = MathLib.max(i - k + 1, 0);
+            while (!testBit(bits, j)) {
+                j++;
+            }
+            int window = 0;
+            for (int l = i; l >= j; l--) {
+                window = (window << 1) | (testBit(bits, l) ? 1 : 0);
+            }
+            if (result != null) {
+                for (int l = i; l >= j; l--) {
+                    result = multiply(result, result);
+                }
+                result = multiply(result, powers[window >> 1]);
+            } else {
+                result = powers[window >> 1];
+            }
+            i = j - 1;
+        }
+        return (_rSquare != null) ? result.montgomeryTimes(LargeInteger.ONE, _value, _inverse) : result;
+    }
+
+    /**
+     * Returns the Montgomery form <code>x·R mod m</code> of the specified
+     * residue (odd moduli). Sums and differences of Montgomery forms are
+     * calculated using {@link #plus(LargeInteger, LargeInteger)} and
+     * {@link #minus(LargeInteger, LargeInteger)}.
+     *
+     * @param  x the value in the range <code>[0, m[</code>.
+     * @return <code>x·R mod m</code>
+     */
+    LargeInteger toMontgomery(LargeInteger x) {
+        return x.montgomeryTimes(_rSquare, _value, _inverse);
+    }
+
+    /**
+     * Returns the residue of the specified Montgomery form (odd moduli).
+     *
+     * @param  x the Montgomery form in the range <code>[0, m[</code>.
+     * @return <code>x·R<sup>-1</sup> mod m</code>
+     */
+    LargeInteger fromMontgomery(LargeInteger x) {
+        return x.montgomeryTimes(LargeInteger.ONE, _value, _inverse);
+    }
+
+    /**
+     * Returns the Montgomery product of the specified Montgomery forms
+     * (odd moduli).
+     *
+     * @param  x the first Montgomery form in the range <code>[0, m[</code>.
+     * @param  y the second Montgomery form in the range <code>[0, m[</code>.
+     * @return <code>x·y·R<sup>-1</sup> mod m</code>
+     */
+    LargeInteger montgomeryTimes(LargeInteger x, LargeInteger y) {
+        return x.montgomeryTimes(y, _value, _inverse);
+    }
+
+    // Multiplies two residues (Montgomery form for odd moduli).
+    private LargeInteger multiply(LargeInteger x, LargeInteger y) {
+        if (_rSquare != null)
+            return x.montgomeryTimes(y, _value, _inverse);
+        return barrett((x == y) ? x.square() : x.times(y));
+    }
+
+    // Barrett reduction of x in [0, 2^(126·n)[
+    private LargeInteger barrett(LargeInteger x) {
+        LargeInteger q = x.shiftRight(63 * (_size - 1)).times(_mu).shiftRight(63 * (_size + 1));
+        LargeInteger r = x.minus(q.times(_value));
+        while (r.compareTo(_value) >= 0) { // At most two corrections.
+            r = r.minus(_value);
+        }
+        return r;
+    }
+
+    // Returns the window size minimizing the number of multiplications.
+    private static int windowSize(int bitLength) {
+        int k = 1;
+        while ((k < WINDOW_THRESHOLDS.length) && (bitLength > WINDOW_THRESHOLDS[k - 1])) {
+            k++;
+        }
+        return k;
+    }
+
+    private static final int[] WINDOW_THRESHOLDS = { 7, 25, 81, 241, 673, 1793 };
+
+    // Tests the specified bit of a two's-complement big-endian array.
+    private static boolean testBit(byte[] bytes, int index) {
+        return ((bytes[bytes.length - 1 - (index >> 3)] >> (index & 7)) & 1) != 0;
+    }
+}
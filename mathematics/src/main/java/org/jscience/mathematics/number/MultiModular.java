@@ -0,0 +1,578 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.context.ConcurrentContext;
+import javolution.context.StackContext;
+
+/**
+ * <p> This class provides exact integer and rational calculations using
+ *     multi-modular arithmetic. The calculation is performed independently
+ *     (and concurrently) modulo many word sized primes using primitive
+ *     <code>long</code> arithmetic (see {@link Modulus}), the exact result
+ *     is then reconstructed using the Chinese remainder theorem and, for
+ *     rational results, rational reconstruction. Intermediate expression
+ *     swell is avoided: the cost depends only on the size of the result.
+ *     [code]
+ *     // Exact solution of a rational linear system.
+ *     Rational[] x = MultiModular.solve(a, b);
+ *
+ *     // Custom calculation (e.g. a polynomial resultant).
+ *     LargeInteger[] result = MultiModular.integers(new MultiModular.Image() {
+ *         public long[] evaluate(Modulus p) {
+ *             ... // Calculation modulo p.getValue() (primitive arithmetic).
+ *         }
+ *     }, length, bound);
+ *     [/code]</p>
+ *
+ * <p> The primes are processed by batches whose size doubles; the residues
+ *     of each batch are combined using a product tree. When no bound on
+ *     the result is known, the calculation terminates as soon as the
+ *     reconstructed result does not change with a new batch.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Chinese_remainder_theorem">
+ *      Wikipedia: Chinese Remainder Theorem</a>
+ */
+public final class MultiModular {
+
+    /**
+     * This interface represents a calculation modulo a word sized prime.
+     */
+    public interface Image {
+
+        /**
+         * Evaluates this calculation modulo the specified prime.
+         *
+         * @param  p the prime modulus (less than <code>2<sup>62</sup></code>).
+         * @return the result residues in the range <code>[0, p[</code>
+         *         or <code>null</code> if the prime is unlucky (e.g. it
+         *         divides a denominator).
+         */
+        long[] evaluate(Modulus p);
+    }
+
+    /**
+     * Holds the number of primes of the first batch.
+     */
+    private static final int FIRST_BATCH = 4;
+
+    /**
+     * Holds the word sized primes (decreasing from <code>2<sup>62</sup></code>)
+     * and their moduli, extended on demand.
+     */
+    private static long[] PRIMES = new long[0];
+    private static Modulus[] MODULI = new Modulus[0];
+
+    /**
+     * Default constructor (private for utilities).
+     */
+    private MultiModular() {
+    }
+
+    /**
+     * Returns the integer results of the specified calculation.
+     *
+     * @param  image the calculation modulo primes.
+     * @param  length the number of results.
+     * @param  bound the bound on the absolute values of the results or
+     *         <code>null</code> to terminate when the results stabilize.
+     * @return the results in the range <code>[-bound, bound]</code>.
+     * @throws ArithmeticException if all the primes of the first batch are
+     *         unlucky.
+     */
+    public static LargeInteger[] integers(Image image, int length,
+            LargeInteger bound) {
+        final Reconstruction reconstruction = new Reconstruction(image, length);
+        if (bound != null) { // Enough primes for 2·bound + 1.
+            int n = bound.bitLength() / 61 + 1;
+            while (reconstruction._modulus.compareTo(bound.times2pow(1)) <= 0) {
+                if (reconstruction.next(n) == 0) {
+                    reconstruction.unlucky();
+                }
+                n = FIRST_BATCH;
+            }
+            return reconstruction.integers();
+        }
+        LargeInteger[] previous = null;
+        while (true) {
+            if (reconstruction.next(reconstruction.nextBatch()) == 0) {
+                reconstruction.unlucky();
+                continue; // Unlucky batch.
+            }
+            final LargeInteger[] current = reconstruction.integers();
+            if (equals(current, previous))
+                return current;
+            previous = current;
+        }
+    }
+
+    /**
+     * Returns the rational results of the specified calculation; the
+     * calculation terminates when the rational reconstructions stabilize.
+     *
+     * @param  image the calculation modulo primes.
+     * @param  length the number of results.
+     * @return the results.
+     * @throws ArithmeticException if all the primes of the first batch are
+     *         unlucky.
+     */
+    public static Rational[] rationals(Image image, int length) {
+        final Reconstruction reconstruction = new Reconstruction(image, length);
+        Rational[] previous = null;
+        while (true) {
+            if (reconstruction.next(reconstruction.nextBatch()) == 0) {
+                reconstruction.unlucky();
+                continue; // Unlucky batch.
+            }
+            final Rational[] current = reconstruction.rationals();
+            if ((current != null) && equals(current, previous))
+                return current;
+            previous = current;
+        }
+    }
+
+    /**
+     * Returns the determinant of the specified square matrix (Hadamard
+     * bound on the number of primes).
+     *
+     * @param  matrix the matrix rows.
+     * @return the matrix determinant.
+     */
+    public static LargeInteger determinant(final LargeInteger[][] matrix) {
+        final int n = matrix.length;
+        if (n == 0)
+            return LargeInteger.ONE;
+        int bits = 0; // Hadamard bound: product of the rows norms.
+        for (int i = 0; i < n; i++) {
+            LargeInteger norm = LargeInteger.ZERO;
+            for (int j = 0; j < n; j++) {
+                norm = norm.plus(matrix[i][j].square());
+            }
+            bits += (norm.bitLength() + 1) >> 1;
+        }
+        return integers(new Image() {
+            public long[] evaluate(Modulus p) {
+                return new long[] { determinant(residues(matrix, p), p) };
+            }
+        }, 1, LargeInteger.ONE.shiftLeft(bits))[0];
+    }
+
+    /**
+     * Returns the determinant of the specified square rational matrix
+     * (the determinant of the integer matrix obtained by clearing the
+     * rows denominators).
+     *
+     * @param  matrix the matrix rows.
+     * @return the matrix determinant.
+     */
+    public static Rational determinant(Rational[][] matrix) {
+        final int n = matrix.length;
+        final LargeInteger[][] integers = new LargeInteger[n][];
+        LargeInteger scale = LargeInteger.ONE;
+        for (int i = 0; i < n; i++) {
+            final LargeInteger multiplier = multiplier(matrix[i], null);
+            integers[i] = integers(matrix[i], null, multiplier);
+            scale = scale.times(multiplier);
+        }
+        return Rational.valueOf(determinant(integers), scale);
+    }
+
+    /**
+     * Returns the exact solution <code>x</code> of the linear system
+     * <code>a·x = b</code>. The rational reconstruction is verified
+     * (exact product) before being returned.
+     *
+     * @param  a the square matrix rows.
+     * @param  b the right hand side.
+     * @return the solution vector.
+     * @throws IllegalArgumentException if the matrix is not square or if
+     *         its number of rows differs from the number of values.
+     * @throws ArithmeticException if the matrix is singular.
+     */
+    public static Rational[] solve(Rational[][] a, Rational[] b) {
+        final int n = a.length;
+        if (b.length != n)
+            throw new IllegalArgumentException("Dimensions mismatch: " + n
+                    + " rows, " + b.length + " values");
+        // Integer system (rows denominators cleared).
+        final LargeInteger[][] matrix = new LargeInteger[n][];
+        final LargeInteger[] vector = new LargeInteger[n];
+        for (int i = 0; i < n; i++) {
+            if (a[i].length != n)
+                throw new IllegalArgumentException("Square matrix required: "
+                        + n + " rows, " + a[i].length + " columns");
+            final LargeInteger multiplier = multiplier(a[i], b[i]);
+            matrix[i] = integers(a[i], null, multiplier);
+            vector[i] = integers(new Rational[0], b[i], multiplier)[0];
+        }
+        final Reconstruction reconstruction = new Reconstruction(new Image() {
+            public long[] evaluate(Modulus p) {
+                return solve(residues(matrix, p), residues(
+                        new LargeInteger[][] { vector }, p)[0], p);
+            }
+        }, n);
+        Rational[] previous = null;
+        while (true) {
+            if (reconstruction.next(reconstruction.nextBatch()) == 0) {
+                if (determinant(matrix).isZero())
+                    throw new ArithmeticException("Singular matrix");
+                reconstruction.unlucky();
+                continue; // Unlucky batch.
+            }
+            final Rational[] x = reconstruction.rationals();
+            if ((x != null) && equals(x, previous) && verify(matrix, vector, x))
+                return x;
+            previous = x;
+        }
+    }
+
+    // Returns the word sized primes and their moduli (at least n).
+    private static synchronized Object[] primes(int n) {
+        if (PRIMES.length < n) {
+            final int length = Math.max(n, PRIMES.length << 1);
+            final long[] primes = new long[length];
+            final Modulus[] moduli = new Modulus[length];
+            System.arraycopy(PRIMES, 0, primes, 0, PRIMES.length);
+            System.arraycopy(MODULI, 0, moduli, 0, MODULI.length);
+            long p = (PRIMES.length == 0) ? (1L << 62) + 1 : PRIMES[PRIMES.length - 1];
+            for (int i = PRIMES.length; i < length; i++) {
+                do {
+                    p -= 2;
+                } while (!Primes.isPrime(p, false));
+                primes[i] = p;
+                moduli[i] = new Modulus(LargeInteger.valueOf(p));
+            }
+            PRIMES = primes;
+            MODULI = moduli;
+        }
+        return new Object[] { PRIMES, MODULI };
+    }
+
+    // Returns the matrix residues modulo p.
+    private static long[][] residues(LargeInteger[][] matrix, Modulus p) {
+        final long[][] residues = new long[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            residues[i] = new long[matrix[i].length];
+            for (int j = 0; j < matrix[i].length; j++) {
+                residues[i][j] = p.residueOf(matrix[i][j]);
+            }
+        }
+        return residues;
+    }
+
+    // Returns the determinant modulo p (Gaussian elimination, a is modified).
+    private static long determinant(long[][] a, Modulus p) {
+        final int n = a.length;
+        long det = 1;
+        for (int k = 0; k < n; k++) {
+            final int pivot = pivot(a, k);
+            if (pivot < 0)
+                return 0;
+            if (pivot != k) {
+                det = p.minus(0, det);
+            }
+            det = p.times(det, a[k][k]);
+            eliminate(a, null, k, p);
+        }
+        return det;
+    }
+
+    // Returns the solution of a·x = b modulo p or null if a is singular
+    // modulo p (a and b are modified).
+    private static long[] solve(long[][] a, long[] b, Modulus p) {
+        final int n = a.length;
+        for (int k = 0; k < n; k++) {
+            final int pivot = pivot(a, k);
+            if (pivot < 0)
+                return null;
+            if (pivot != k) {
+                final long tmp = b[k];
+                b[k] = b[pivot];
+                b[pivot] = tmp;
+            }
+            eliminate(a, b, k, p);
+        }
+        final long[] x = new long[n]; // Back substitution.
+        for (int i = n - 1; i >= 0; i--) {
+            long sum = b[i];
+            for (int j = i + 1; j < n; j++) {
+                sum = p.minus(sum, p.times(a[i][j], x[j]));
+            }
+            x[i] = p.times(sum, p.inverse(a[i][i]));
+        }
+        return x;
+    }
+
+    // Searches the pivot of column k and swaps it to row k, returns the
+    // pivot row or -1 if none.
+    private static int pivot(long[][] a, int k) {
+        for (int i = k; i < a.length; i++) {
+            if (a[i][k] != 0) {
+                final long[] tmp = a[k];
+                a[k] = a[i];
+                a[i] = tmp;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Eliminates column k below row k (and updates b if not null).
+    private static void eliminate(long[][] a, long[] b, int k, Modulus p) {
+        final long[] row = a[k];
+        final long inverse = p.inverse(row[k]);
+        for (int i = k + 1; i < a.length; i++) {
+            final long[] ai = a[i];
+            if (ai[k] == 0)
+                continue;
+            final long f = p.times(ai[k], inverse);
+            for (int j = k + 1; j < row.length; j++) {
+                ai[j] = p.minus(ai[j], p.times(f, row[j]));
+            }
+            ai[k] = 0;
+            if (b != null) {
+                b[i] = p.minus(b[i], p.times(f, b[k]));
+            }
+        }
+    }
+
+    // Returns the least common multiple of the denominators.
+    private static LargeInteger multiplier(Rational[] row, Rational value) {
+        LargeInteger lcm = (value == null) ? LargeInteger.ONE : value.getDivisor();
+        for (int j = 0; j < row.length; j++) {
+            final LargeInteger d = row[j].getDivisor();
+            lcm = lcm.times(d).divide(lcm.gcd(d));
+        }
+        return lcm;
+    }
+
+    // Returns the row (and value if not null) multiplied by the specified
+    // common denominator.
+    private static LargeInteger[] integers(Rational[] row, Rational value,
+            LargeInteger multiplier) {
+        final int n = (value == null) ? row.length : 1;
+        final LargeInteger[] integers = new LargeInteger[n];
+        for (int j = 0; j < n; j++) {
+            final Rational r = (value == null) ? row[j] : value;
+            integers[j] = r.getDividend().times(multiplier.divide(r.getDivisor()));
+        }
+        return integers;
+    }
+
+    // Verifies that matrix·x = vector exactly.
+    private static boolean verify(LargeInteger[][] matrix,
+            LargeInteger[] vector, Rational[] x) {
+        StackContext.enter();
+        try {
+            LargeInteger d = LargeInteger.ONE; // Common denominator.
+            for (int i = 0; i < x.length; i++) {
+                final LargeInteger di = x[i].getDivisor();
+                d = d.times(di).divide(d.gcd(di));
+            }
+            final LargeInteger[] y = new LargeInteger[x.length];
+            for (int i = 0; i < x.length; i++) {
+                y[i] = x[i].getDividend().times(d.divide(x[i].getDivisor()));
+            }
+            for (int i = 0; i < matrix.length; i++) {
+                LargeInteger sum = LargeInteger.ZERO;
+                for (int j = 0; j < y.length; j++) {
+                    sum = sum.plus(matrix[i][j].times(y[j]));
+                }
+                if (!sum.equals(vector[i].times(d)))
+                    return false;
+            }
+            return true;
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    // Indicates if the specified arrays are equal (false if any is null).
+    private static boolean equals(Object[] x, Object[] y) {
+        if ((x == null) || (y == null))
+            return false;
+        for (int i = 0; i < x.length; i++) {
+            if (!x[i].equals(y[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The residues combined so far.
+     */
+    private static final class Reconstruction {
+        private final Image _image;
+        private final int _length;
+        private LargeInteger _modulus = LargeInteger.ONE;
+        private LargeInteger[] _residues; // Modulo _modulus.
+        private int _next; // Index of the next prime.
+
+        Reconstruction(Image image, int length) {
+            _image = image;
+            _length = length;
+            _residues = new LargeInteger[length];
+            for (int i = 0; i < length; i++) {
+                _residues[i] = LargeInteger.ZERO;
+            }
+        }
+
+        // Returns the size of the next batch (doubles the number of primes).
+        int nextBatch() {
+            return Math.max(_next, FIRST_BATCH);
+        }
+
+        // Evaluates the next n primes (concurrently), combines their
+        // residues, returns the number of lucky primes.
+        int next(int n) {
+            final Object[] primes = primes(_next + n);
+            final Modulus[] moduli = (Modulus[]) primes[1];
+            final Evaluation[] evaluations = new Evaluation[n];
+            for (int i = 0; i < n; i++) {
+                evaluations[i] = new Evaluation(_image, moduli[_next + i]);
+            }
+            _next += n;
+            ConcurrentContext.enter();
+            try {
+                for (int i = 0; i < n; i++) {
+                    ConcurrentContext.execute(evaluations[i]);
+                }
+            } finally {
+                ConcurrentContext.exit();
+            }
+            int lucky = 0;
+            for (int i = 0; i < n; i++) {
+                if (evaluations[i]._residues != null) {
+                    evaluations[lucky++] = evaluations[i];
+                }
+            }
+            if (lucky == 0)
+                return 0;
+            final LargeInteger[] batch = combine(evaluations, 0, lucky);
+            final LargeInteger[] all = new LargeInteger[_length + 1];
+            all[0] = _modulus;
+            System.arraycopy(_residues, 0, all, 1, _length);
+            final LargeInteger[] combined = combine(all, batch);
+            _modulus = combined[0];
+            System.arraycopy(combined, 1, _residues, 0, _length);
+            return lucky;
+        }
+
+        // Throws ArithmeticException if no prime has been lucky so far
+        // (called after an unlucky batch).
+        void unlucky() {
+            if (_modulus.equals(LargeInteger.ONE))
+                throw new ArithmeticException("All primes unlucky");
+        }
+
+        // Returns the residues in the symmetric range.
+        LargeInteger[] integers() {
+            final LargeInteger[] integers = new LargeInteger[_length];
+            for (int i = 0; i < _length; i++) {
+                final LargeInteger r = _residues[i];
+                integers[i] = (r.times2pow(1).compareTo(_modulus) > 0) ? r
+                        .minus(_modulus) : r;
+            }
+            return integers;
+        }
+
+        // Returns the rational reconstructions or null if any fails. The
+        // results often share their denominators, the common denominator
+        // found so far is tried first (no reconstruction needed).
+        Rational[] rationals() {
+            final LargeInteger bound = _modulus.times2pow(-1).sqrt();
+            final Rational[] rationals = new Rational[_length];
+            LargeInteger d = LargeInteger.ONE;
+            for (int i = 0; i < _length; i++) {
+                LargeInteger y = _residues[i].times(d).mod(_modulus);
+                if (y.times2pow(1).compareTo(_modulus) > 0) {
+                    y = y.minus(_modulus);
+                }
+                if (!y.isLargerThan(bound)) {
+                    rationals[i] = Rational.valueOf(y, d);
+                    continue;
+                }
+                final Rational r = rational(y.mod(_modulus), _modulus, bound);
+                if (r == null)
+                    return null;
+                rationals[i] = Rational.valueOf(r.getDividend(), r.getDivisor().times(d));
+                d = d.times(r.getDivisor());
+                if (d.isLargerThan(bound))
+                    return null;
+            }
+            return rationals;
+        }
+
+        // Returns {m, r0, r1, ...} the residues of evaluations[from, to[
+        // combined (product tree).
+        private LargeInteger[] combine(Evaluation[] evaluations, int from, int to) {
+            if (to - from == 1) {
+                final LargeInteger[] leaf = new LargeInteger[_length + 1];
+                leaf[0] = evaluations[from]._modulus.getValue();
+                for (int i = 0; i < _length; i++) {
+                    leaf[i + 1] = LargeInteger.valueOf(evaluations[from]._residues[i]);
+                }
+                return leaf;
+            }
+            final int mid = (from + to) >>> 1;
+            return combine(combine(evaluations, from, mid), combine(evaluations, mid, to));
+        }
+
+        // Returns {mx·my, r0, r1, ...} with ri = xi mod mx, ri = yi mod my.
+        private LargeInteger[] combine(LargeInteger[] x, LargeInteger[] y) {
+            final LargeInteger mx = x[0];
+            final LargeInteger my = y[0];
+            final LargeInteger inverse = mx.modInverse(my);
+            final LargeInteger[] z = new LargeInteger[_length + 1];
+            z[0] = mx.times(my);
+            for (int i = 1; i <= _length; i++) {
+                z[i] = x[i].plus(mx.times(y[i].minus(x[i]).times(inverse).mod(my)));
+            }
+            return z;
+        }
+    }
+
+    // Returns n/d such as n = d·r mod m with |n|, d <= bound or null if
+    // none (Wang's rational reconstruction).
+    private static Rational rational(LargeInteger r, LargeInteger m, LargeInteger bound) {
+        LargeInteger r0 = m, r1 = r, t0 = LargeInteger.ZERO, t1 = LargeInteger.ONE;
+        while (r1.compareTo(bound) > 0) {
+            final LargeInteger q = r0.divide(r1);
+            final LargeInteger r2 = q.getRemainder();
+            r0 = r1;
+            r1 = r2;
+            final LargeInteger t2 = t0.minus(q.times(t1));
+            t0 = t1;
+            t1 = t2;
+        }
+        if (t1.isLargerThan(bound) || !r1.gcd(t1).equals(LargeInteger.ONE))
+            return null;
+        return Rational.valueOf(t1.isNegative() ? r1.opposite() : r1, t1.abs());
+    }
+
+    /**
+     * Evaluation of the image modulo a prime (for concurrent context).
+     */
+    private static final class Evaluation implements Runnable {
+        private final Image _image;
+        private final Modulus _modulus;
+        private long[] _residues;
+
+        Evaluation(Image image, Modulus modulus) {
+            _image = image;
+            _modulus = modulus;
+        }
+
+        public void run() {
+            _residues = _image.evaluate(_modulus);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import javolution.context.ConcurrentContext;
+import static org.jscience.mathematics.number.Calculus.*;
+
+/**
+ * <p> This class holds the number-theoretic transform (NTT) multiplication
+ *     of arrays of positive <code>long</code> (63 bits words).</p>
+ *
+ * <p> The operands are split into 30 bits digits, convolved modulo three
+ *     word-sized primes of the form <code>c·2<sup>k</sup>+1</code>
+ *     (one concurrent task per prime) and recombined using the Chinese
+ *     remainder theorem (Garner's algorithm). Modular multiplications are
+ *     performed in Montgomery form (<code>R = 2<sup>32</sup></code>).</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Sch%C3%B6nhage%E2%80%93Strassen_algorithm">
+ *      Wikipedia: Schönhage–Strassen algorithm</a>
+ */
+final class NumberTheoreticTransform {
+
+    /**
+     * Default constructor (private for utilities).
+     */
+    private NumberTheoreticTransform() {
+    }
+
+    /**
+     * Holds the number of bits per digit.
+     */
+    private static final int DIGIT_BITS = 30;
+
+    private static final long MASK_30 = (1L << DIGIT_BITS) - 1;
+
+    /**
+     * Holds the maximum transform length (limited by the prime
+     * <code>45·2<sup>24</sup>+1</code>).
+     */
+    private static final int MAX_LENGTH = 1 << 24;
+
+    /**
+     * Holds the primes (5·2^25+1, 7·2^26+1, 45·2^24+1), their product is
+     * greater than the largest convolution term
+     * (<code>MAX_LENGTH · 2<sup>2·DIGIT_BITS</sup></code>).
+     */
+    private static final long[] PRIMES = { 167772161L, 469762049L, 754974721L };
+
+    /**
+     * Holds the primitive roots of the primes.
+     */
+    private static final long[] GENERATORS = { 3L, 3L, 11L };
+
+    /**
+     * Holds the forward/inverse twiddle factors (Montgomery form) for each
+     * prime. The factors of the butterflies of length <code>2·h</code>
+     * are at indices <code>[h, 2·h[</code> (tables shared by all lengths).
+     */
+    private static volatile int[][] ROOTS = new int[3][];
+
+    private static volatile int[][] INVERSE_ROOTS = new int[3][];
+
+    /**
+     * Indicates if the product of numbers of specified sizes can be
+     * calculated by this class.
+     *
+     * @param xSize the size of the first operand.
+     * @param ySize the size of the second operand.
+     * @return <code>true</code> if the transform length is supported;
+     *         <code>false</code> otherwise.
+     */
+    static boolean isSupported(int xSize, int ySize) {
+        return digits(xSize) + digits(ySize) <= MAX_LENGTH;
+    }
+
+    /**
+     * z = x * y
+     * Preconditions: y != 0, x != 0, isSupported(xSize, ySize),
+     *                z.length >= xSize + ySize
+     * @return z size
+     */
+    static int multiply(long[] x, int xSize, long[] y, int ySize, long[] z) {
+        final boolean isSquare = (x == y) && (xSize == ySize);
+        final int xDigits = digits(xSize);
+        final int yDigits = digits(ySize);
+        int n = 1;
+        while (n < xDigits + yDigits - 1) {
+            n <<= 1;
+        }
+        Convolution[] convolutions = new Convolution[3];
+        ConcurrentContext.enter();
+        try {
+            for (int i = 0; i < 3; i++) {
+                convolutions[i] = new Convolution(i, n, x, xSize, xDigits,
+                        isSquare ? null : y, ySize, yDigits);
+                ConcurrentContext.execute(convolutions[i]);
+            }
+        } finally {
+            ConcurrentContext.exit();
+        }
+        return recombine(convolutions[0]._result, convolutions[1]._result,
+                convolutions[2]._result, xDigits + yDigits - 1, z,
+                xSize + ySize);
+    }
+
+    // Returns the number of digits for the specified number of words.
+    private static int digits(int size) {
+        return (int) (((long) size * 63 + DIGIT_BITS - 1) / DIGIT_BITS);
+    }
+
+    // Returns the digit at the specified index.
+    private static int digit(long[] x, int xSize, int index) {
+        final long bitIndex = (long) index * DIGIT_BITS;
+        final int i = (int) (bitIndex / 63);
+        final int shift = (int) (bitIndex - i * 63L);
+        if (i >= xSize)
+            return 0;
+        long bits = x[i] >>> shift;
+        if ((shift > 63 - DIGIT_BITS) && (i + 1 < xSize)) {
+            bits |= x[i + 1] << (63 - shift);
+        }
+        return (int) (bits & MASK_30);
+    }
+
+    // Garner recombination of the convolutions modulo each prime and carry
+    // propagation of the 30 bits digits into 63 bits words.
+    private static int recombine(int[] c0, int[] c1, int[] c2, int length,
+            long[] z, int zLength) {
+        final long p0 = PRIMES[0], p1 = PRIMES[1], p2 = PRIMES[2];
+        final long inv01 = modInverse(p0 % p1, p1); // p0^-1 mod p1
+        final long inv02 = modInverse(p0 % p2, p2); // p0^-1 mod p2
+        final long inv12 = modInverse(p1 % p2, p2); // p1^-1 mod p2
+        final long p01 = p0 * p1; // 56 bits.
+        final long p01High = p01 >>> 32; // 24 bits.
+        final long p01Low = p01 & MASK_32;
+        long carryLow = 0; // 63 bits
+        long carryHigh = 0;
+        long word = 0;
+        int wordBits = 0;
+        int j = 0;
+        for (int i = 0; (i < length) || (carryLow != 0) || (carryHigh != 0); i++) {
+            if (i < length) {
+                // x = v0 + v1·p0 + v2·p0·p1 (v0 < p0, v1 < p1, v2 < p2)
+                final long v0 = c0[i];
+                final long v1 = ((c1[i] - v0 % p1 + p1) % p1) * inv01 % p1;
+                long v2 = ((c2[i] - v0 % p2 + p2) % p2) * inv02 % p2;
+                v2 = ((v2 - v1 % p2 + p2) % p2) * inv12 % p2;
+                final long low = v0 + v1 * p0 + v2 * p01Low; // < 2^63
+                final long high = v2 * p01High; // To be shifted by 32.
+                carryLow += low & MASK_63;
+                carryHigh += (carryLow >>> 63) + (low >>> 63);
+                carryLow &= MASK_63;
+                carryLow += (high << 32) & MASK_63;
+                carryHigh += (carryLow >>> 63) + (high >>> 31);
+                carryLow &= MASK_63;
+            }
+            final long digit = carryLow & MASK_30;
+            carryLow = (carryLow >>> DIGIT_BITS)
+                    | ((carryHigh & MASK_30) << (63 - DIGIT_BITS));
+            carryHigh >>>= DIGIT_BITS;
+            // Packs digit into words.
+            word |= (digit << wordBits) & MASK_63;
+            wordBits += DIGIT_BITS;
+            if (wordBits >= 63) {
+                if (j < zLength) {
+                    z[j++] = word;
+                }
+                wordBits -= 63;
+                word = digit >>> (DIGIT_BITS - wordBits);
+            }
+        }
+        if ((word != 0) && (j < zLength)) {
+            z[j++] = word;
+        }
+        while (j > 0) { // Calculates size.
+            if (z[j - 1] != 0)
+                break;
+            j--;
+        }
+        return j;
+    }
+
+    // Returns the inverse of a modulo the prime p.
+    private static long modInverse(long a, long p) {
+        return modPow(a, p - 2, p);
+    }
+
+    private static long modPow(long a, long exp, long p) {
+        long result = 1;
+        while (exp != 0) {
+            if ((exp & 1) != 0) {
+                result = result * a % p;
+            }
+            a = a * a % p;
+            exp >>>= 1;
+        }
+        return result;
+    }
+
+    // Returns -p^-1 mod 2^32 (Montgomery constant).
+    private static long montgomeryInverse(long p) {
+        long inv = p; // Correct to 3 bits (p odd).
+        for (int i = 0; i < 4; i++) { // Newton iteration, doubles precision.
+            inv *= 2 - p * inv;
+        }
+        return -inv & MASK_32;
+    }
+
+    // Returns a·b·2^-32 mod p (a, b < 2^31, p < 2^31)
+    private static long montgomeryMultiply(long a, long b, long p, long pInv) {
+        final long t = a * b;
+        final long m = (t * pInv) & MASK_32;
+        final long u = (t + m * p) >>> 32;
+        return (u >= p) ? u - p : u;
+    }
+
+    // Returns the twiddle factors tables (forward or inverse) for the
+    // specified prime index, at least n long.
+    private static int[] roots(int index, int n, boolean inverse) {
+        int[] roots = inverse ? INVERSE_ROOTS[index] : ROOTS[index];
+        if ((roots != null) && (roots.length >= n))
+            return roots;
+        synchronized (NumberTheoreticTransform.class) {
+            int[][] tables = inverse ? INVERSE_ROOTS : ROOTS;
+            roots = tables[index];
+            if ((roots != null) && (roots.length >= n))
+                return roots;
+            final long p = PRIMES[index];
+            final long r = (1L << 32) % p; // Montgomery form of one.
+            roots = new int[n];
+            for (int h = 1; h < n; h <<= 1) { // Butterflies of length 2h.
+                long w = modPow(GENERATORS[index], (p - 1) / (h << 1), p);
+                if (inverse) {
+                    w = modInverse(w, p);
+                }
+                long wi = r;
+                final long wMontgomery = w * r % p;
+                final long pInv = montgomeryInverse(p);
+                for (int j = 0; j < h; j++) {
+                    roots[h + j] = (int) wi;
+                    wi = montgomeryMultiply(wi, wMontgomery, p, pInv);
+                }
+            }
+            int[][] newTables = new int[3][];
+            System.arraycopy(tables, 0, newTables, 0, 3);
+            newTables[index] = roots;
+            if (inverse) {
+                INVERSE_ROOTS = newTables;
+            } else {
+                ROOTS = newTables;
+            }
+            return roots;
+        }
+    }
+
+    /**
+     * Convolution modulo one of the primes (for concurrent context).
+     */
+    private static final class Convolution implements Runnable {
+
+        private final int _index, _n, _xSize, _xDigits, _ySize, _yDigits;
+
+        private final long[] _x, _y;
+
+        private int[] _result;
+
+        Convolution(int index, int n, long[] x, int xSize, int xDigits,
+                long[] y, int ySize, int yDigits) {
+            _index = index;
+            _n = n;
+            _x = x;
+            _xSize = xSize;
+            _xDigits = xDigits;
+            _y = y;
+            _ySize = ySize;
+            _yDigits = yDigits;
+        }
+
+        public void run() {
+            final long p = PRIMES[_index];
+            final long pInv = montgomeryInverse(p);
+            final int[] roots = roots(_index, _n, false);
+            final int[] inverseRoots = roots(_index, _n, true);
+            int[] a = load(_x, _xSize, _xDigits, p);
+            forward(a, _n, roots, p, pInv);
+            if (_y == null) { // Square.
+                for (int i = 0; i < _n; i++) {
+                    a[i] = (int) montgomeryMultiply(a[i], a[i], p, pInv);
+                }
+            } else {
+                int[] b = load(_y, _ySize, _yDigits, p);
+                forward(b, _n, roots, p, pInv);
+                for (int i = 0; i < _n; i++) {
+                    a[i] = (int) montgomeryMultiply(a[i], b[i], p, pInv);
+                }
+            }
+            inverse(a, _n, inverseRoots, p, pInv);
+            // Scales by n^-1 (also removes the Montgomery factor of the
+            // pointwise products): (n^-1 · 2^64) mod p
+            final long r = (1L << 32) % p;
+            final long scale = modInverse(_n % p, p) * r % p * r % p;
+            for (int i = 0; i < _n; i++) {
+                a[i] = (int) montgomeryMultiply(a[i], scale, p, pInv);
+            }
+            _result = a;
+        }
+
+        private int[] load(long[] x, int xSize, int xDigits, long p) {
+            int[] a = new int[_n];
+            for (int i = 0; i < xDigits; i++) {
+                a[i] = (int) (digit(x, xSize, i) % p);
+            }
+            return a;
+        }
+
+        // Decimation in frequency (natural order to bit-reversed order).
+        private static void forward(int[] a, int n, int[] roots, long p,
+                long pInv) {
+            for (int h = n >> 1; h >= 1; h >>= 1) {
+                for (int start = 0; start < n; start += h << 1) {
+                    for (int j = 0; j < h; j++) {
+                        final int k = start + j;
+                        final long u = a[k];
+                        final long v = a[k + h];
+                        final long sum = u + v;
+                        a[k] = (int) ((sum >= p) ? sum - p : sum);
+                        final long diff = u - v;
+                        a[k + h] = (int) montgomeryMultiply(
+                                (diff < 0) ? diff + p : diff, roots[h + j], p,
+                                pInv);
+                    }
+                }
+            }
+        }
+
+        // Decimation in time (bit-reversed order to natural order).
+        private static void inverse(int[] a, int n, int[] roots, long p,
+                long pInv) {
+            for (int h = 1; h < n; h <<= 1) {
+                for (int start = 0; start < n; start += h << 1) {
+                    for (int j = 0; j < h; j++) {
+                        final int k = start + j;
+                        final long u = a[k];
+                        final long v = montgomeryMultiply(a[k + h],
+                                roots[h + j], p, pInv);
+                        final long sum = u + v;
+                        a[k] = (int) ((sum >= p) ? sum - p : sum);
+                        final long diff = u - v;
+                        a[k + h] = (int) ((diff < 0) ? diff + p : diff);
+                    }
+                }
+            }
+        }
+    }
+}
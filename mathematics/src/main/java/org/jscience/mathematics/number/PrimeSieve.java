@@ -0,0 +1,287 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javolution.context.ConcurrentContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class represents an iterator over the primes of a range
+ *     (in increasing order) using a segmented sieve of Eratosthenes.
+ *     [code]
+ *     PrimeSieve primes = new PrimeSieve(LargeInteger.valueOf(1000000), LargeInteger.valueOf(2000000));
+ *     while (primes.hasNext()) {
+ *         LargeInteger p = primes.next();
+ *         ...
+ *     }
+ *     [/code]</p>
+ *
+ * <p> Each segment is sieved with the primes less than
+ *     <code>2<sup>16</sup></code>; the sieve is exact below
+ *     <code>2<sup>32</sup></code>, above that the survivors are tested using
+ *     {@link LargeInteger#isProbablyPrime()} (deterministic below
+ *     <code>2<sup>64</sup></code>). Segments may be sieved concurrently
+ *     (see {@link ConcurrentContext}).</p>
+ *
+ * <p> Instances of this class are not thread-safe.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Sieve_of_Eratosthenes">
+ *      Wikipedia: Sieve of Eratosthenes</a>
+ */
+public final class PrimeSieve implements Iterator<LargeInteger> {
+
+    /**
+     * Holds the number of odd candidates per segment for bounded ranges.
+     */
+    private static final int SEGMENT_LENGTH = 1 << 15;
+
+    /**
+     * Holds the square of the first prime not used for sieving (all
+     * composites below have a sieving prime factor).
+     */
+    private static final long EXACT_LIMIT = 65537L * 65537L;
+
+    /**
+     * Holds the exclusive upper bound or <code>null</code> if unbounded.
+     */
+    private final LargeInteger _to;
+
+    /**
+     * Indicates if segments are sieved concurrently.
+     */
+    private final boolean _isConcurrent;
+
+    /**
+     * Holds the number of odd candidates per segment.
+     */
+    private final int _length;
+
+    /**
+     * Holds the first (odd) candidate of the next segment.
+     */
+    private LargeInteger _next;
+
+    /**
+     * Indicates if the prime 2 has still to be returned.
+     */
+    private boolean _two;
+
+    /**
+     * Holds the current segments.
+     */
+    private Segment[] _segments = new Segment[0];
+
+    /**
+     * Holds the index of the current segment.
+     */
+    private int _current;
+
+    /**
+     * Holds the next prime to return (if already found).
+     */
+    private LargeInteger _prime;
+
+    /**
+     * Creates an iterator over the primes <code>p</code> such as
+     * <code>from &lt;= p &lt; to</code> (sequential sieve).
+     *
+     * @param from the inclusive lower bound.
+     * @param to the exclusive upper bound or <code>null</code> for no
+     *        upper bound.
+     */
+    public PrimeSieve(LargeInteger from, LargeInteger to) {
+        this(from, to, false);
+    }
+
+    /**
+     * Creates an iterator over the primes <code>p</code> such as
+     * <code>from &lt;= p &lt; to</code>, sieving segments concurrently
+     * (up to the {@link ConcurrentContext} local concurrency + 1 at once)
+     * if requested.
+     *
+     * @param from the inclusive lower bound.
+     * @param to the exclusive upper bound or <code>null</code> for no
+     *        upper bound.
+     * @param isConcurrent <code>true</code> if segments are sieved
+     *        concurrently; <code>false</code> otherwise.
+     */
+    public PrimeSieve(LargeInteger from, LargeInteger to, boolean isConcurrent) {
+        _to = to;
+        _isConcurrent = isConcurrent;
+        _two = (from.compareTo(2) <= 0) && ((to == null) || (to.compareTo(2) > 0));
+        LargeInteger first = (from.compareTo(3) < 0) ? LargeInteger.valueOf(3) : from;
+        _next = first.isEven() ? first.plus(1) : first;
+        // Unbounded ranges (next prime search) use smaller segments for
+        // large candidates (about 20 primes expected per segment).
+        _length = (to != null) ? SEGMENT_LENGTH : MathLib.min(MathLib.max(
+                _next.bitLength() << 3, 256), SEGMENT_LENGTH);
+    }
+
+    // Implements Iterator.
+    public boolean hasNext() {
+        if (_two || (_prime != null))
+            return true;
+        while (true) {
+            for (; _current < _segments.length; _current++) {
+                _prime = _segments[_current].nextPrime();
+                if (_prime != null)
+                    return true;
+            }
+            if ((_to != null) && (_next.compareTo(_to) >= 0))
+                return false;
+            sieve();
+        }
+    }
+
+    // Implements Iterator.
+    public LargeInteger next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        if (_two) {
+            _two = false;
+            return LargeInteger.valueOf(2);
+        }
+        LargeInteger prime = _prime;
+        _prime = null;
+        return prime;
+    }
+
+    /**
+     * Unsupported operation (primes cannot be removed).
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    // Sieves the next segment(s). A single segment is tested lazily
+    // (candidates are tested only when requested), concurrent segments
+    // are fully tested.
+    private void sieve() {
+        final int n = _isConcurrent ? ConcurrentContext.getConcurrency() + 1 : 1;
+        Segment[] segments = new Segment[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if ((_to != null) && (_next.compareTo(_to) >= 0))
+                break;
+            segments[count++] = new Segment(_next, _length, _to);
+            _next = _next.plus(_length << 1);
+        }
+        if (count > 1) {
+            ConcurrentContext.enter();
+            try {
+                for (int i = 0; i < count; i++) {
+                    ConcurrentContext.execute(segments[i]);
+                }
+            } finally {
+                ConcurrentContext.exit();
+            }
+        } else {
+            segments[0].sieve();
+        }
+        if (count < n) {
+            Segment[] tmp = new Segment[count];
+            System.arraycopy(segments, 0, tmp, 0, count);
+            segments = tmp;
+        }
+        _segments = segments;
+        _current = 0;
+    }
+
+    /**
+     * Sieving of the odd candidates <code>base + 2·i</code>,
+     * <code>0 &lt;= i &lt; length</code> (for concurrent context).
+     */
+    private static final class Segment implements Runnable {
+        private final LargeInteger _base, _to;
+        private final int _length;
+        private boolean[] _composite;
+        private boolean _isSmall, _isExact;
+        private int _position;
+        private LargeInteger[] _primes; // All primes (concurrent run).
+        private int _count;
+
+        Segment(LargeInteger base, int length, LargeInteger to) {
+            _base = base;
+            _length = length;
+            _to = to;
+        }
+
+        public void run() {
+            sieve();
+            LargeInteger[] primes = new LargeInteger[16];
+            for (LargeInteger p = nextPrime(); p != null; p = nextPrime()) {
+                if (_count == primes.length) {
+                    LargeInteger[] tmp = new LargeInteger[_count << 1];
+                    System.arraycopy(primes, 0, tmp, 0, _count);
+                    primes = tmp;
+                }
+                primes[_count++] = p;
+            }
+            _primes = primes;
+            _position = 0; // Now iterates over the primes found.
+        }
+
+        // Marks the multiples of the small primes.
+        void sieve() {
+            _isSmall = _base.bitLength() < 62;
+            final long base = _isSmall ? _base.longValue() : 0;
+            final long last = base + 2L * (_length - 1); // If small.
+            _isExact = _isSmall && (last < EXACT_LIMIT);
+            _composite = new boolean[_length];
+            final int[] primes = Primes.SMALL_PRIMES;
+            // Next prime searches test few candidates, sieving with all
+            // the small primes would cost more than the tests avoided.
+            final int n = ((_to != null) || _isExact) ? primes.length
+                    : MathLib.min(_base.bitLength() << 3, primes.length);
+            for (int k = 0; k < n; k++) {
+                final int p = primes[k];
+                if (_isSmall && ((long) p * p > last))
+                    break; // Larger primes have no multiple to sieve.
+                final long r = _isSmall ? base % p : Calculus.remainder(
+                        _base.words(), _base.size(), p);
+                // First i such as base + 2·i = 0 mod p.
+                int i = (int) (((r & 1) == 0) ? ((r == 0) ? 0 : p - (r >> 1))
+                        : (p - r) >> 1);
+                if (_isSmall && (base + 2L * i == p)) {
+                    i += p; // Skips the prime itself.
+                }
+                for (; i < _length; i += p) {
+                    _composite[i] = true;
+                }
+            }
+        }
+
+        // Returns the next prime of this segment or null if none.
+        LargeInteger nextPrime() {
+            if (_primes != null)
+                return (_position < _count) ? _primes[_position++] : null;
+            while (_position < _length) {
+                final int i = _position++;
+                if (_composite[i])
+                    continue;
+                final LargeInteger candidate = _isSmall ? LargeInteger.valueOf(
+                        _base.longValue() + 2L * i) : _base.plus(2L * i);
+                if ((_to != null) && (candidate.compareTo(_to) >= 0)) {
+                    _position = _length;
+                    return null;
+                }
+                if (_isExact || Primes.isProbablePrime(candidate, true))
+                    return candidate;
+            }
+            return null;
+        }
+    }
+}
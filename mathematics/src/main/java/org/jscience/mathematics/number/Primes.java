@@ -0,0 +1,427 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.util.Random;
+
+import javolution.context.StackContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class holds the primality tests of {@link LargeInteger}.</p>
+ *
+ * <p> Candidates are first trial divided by the small primes. Values less
+ *     than <code>2<sup>64</sup></code> are then tested deterministically
+ *     (Miller-Rabin to seven fixed bases); larger values are
+ *     tested using Baillie-PSW (Miller-Rabin to the base 2 and strong
+ *     Lucas test) followed by Miller-Rabin rounds to random bases as
+ *     required by {@link LargeInteger#PRIME_CERTAINTY}.</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://en.wikipedia.org/wiki/Baillie%E2%80%93PSW_primality_test">
+ *      Wikipedia: Baillie-PSW primality test</a>
+ */
+final class Primes {
+
+    /**
+     * Default constructor (private for utilities).
+     */
+    private Primes() {
+    }
+
+    /**
+     * Holds the odd primes less than <code>2<sup>16</sup></code>.
+     */
+    static final int[] SMALL_PRIMES = sieve(1 << 16);
+
+    /**
+     * Holds the number of small primes used for trial division
+     * (odd primes less than <code>1024</code>).
+     */
+    private static final int TRIAL_DIVISION_COUNT = count(1024);
+
+    /**
+     * Holds the products of consecutive trial division primes (31 bits).
+     */
+    private static final int[] TRIAL_PRODUCTS = products();
+
+    /**
+     * Holds the bases for which Miller-Rabin is deterministic below
+     * <code>2<sup>64</sup></code> (Jim Sinclair's bases).
+     */
+    private static final int[] DETERMINISTIC_BASES = { 2, 325, 9375, 28178,
+            450775, 9780504, 1795265022 };
+
+    /**
+     * Holds the bases for which Miller-Rabin is deterministic below
+     * <code>4759123141</code>.
+     */
+    private static final int[] SMALL_BASES = { 2, 7, 61 };
+
+    /**
+     * Holds the random generator for the Miller-Rabin bases.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Indicates if the specified large integer is probably prime.
+     *
+     * @param n the large integer to test.
+     * @param trialDivided <code>true</code> if <code>n</code> is known not
+     *        to be divisible by the small primes (e.g. sieved).
+     * @return <code>false</code> if <code>n</code> is composite or less
+     *         than <code>2</code>; <code>true</code> if <code>n</code> is
+     *         prime or probably prime.
+     */
+    static boolean isProbablePrime(LargeInteger n, boolean trialDivided) {
+        if (!n.isPositive())
+            return false;
+        final int bitLength = n.bitLength();
+        if (bitLength <= 63)
+            return isPrime(n.longValue(), trialDivided);
+        if (n.isEven())
+            return false;
+        if (!trialDivided && hasSmallFactor(n))
+            return false;
+        StackContext.enter();
+        try {
+            final LargeInteger nMinusOne = n.minus(1);
+            final int s = nMinusOne.getLowestSetBit();
+            final LargeInteger d = nMinusOne.times2pow(-s);
+            final Modulus modulus = new Modulus(n);
+            if (bitLength <= 64) { // Deterministic.
+                for (int i = 0; i < DETERMINISTIC_BASES.length; i++) {
+                    if (!isStrongProbablePrime(n, LargeInteger.valueOf(DETERMINISTIC_BASES[i]),
+                            modulus, nMinusOne, d, s))
+                        return false;
+                }
+                return true;
+            }
+            if (!isStrongProbablePrime(n, LargeInteger.valueOf(2), modulus, nMinusOne, d, s))
+                return false;
+            if (!isStrongLucasProbablePrime(n))
+                return false;
+            for (int i = rounds(bitLength); i > 0; i--) {
+                LargeInteger base = random(bitLength - 1);
+                if (!isStrongProbablePrime(n, base.plus(2), modulus, nMinusOne, d, s))
+                    return false;
+            }
+            return true;
+        } finally {
+            StackContext.exit();
+        }
+    }
+
+    /**
+     * Indicates if the specified <code>long</code> is prime
+     * (deterministic).
+     *
+     * @param n the value to test.
+     * @param trialDivided <code>true</code> if <code>n</code> is known not
+     *        to be divisible by the small primes.
+     * @return <code>true</code> if <code>n</code> is prime;
+     *         <code>false</code> otherwise.
+     */
+    static boolean isPrime(long n, boolean trialDivided) {
+        if (n < 64)
+            return ((0x28208A20A08A28ACL >>> n) & 1) != 0; // Primes < 64.
+        if ((n & 1) == 0)
+            return false;
+        if (!trialDivided) {
+            for (int i = 0; i < TRIAL_DIVISION_COUNT; i++) {
+                final int p = SMALL_PRIMES[i];
+                if ((long) p * p > n)
+                    return true;
+                if (n % p == 0)
+                    return false;
+            }
+        }
+        final long d = (n - 1) >> Long.numberOfTrailingZeros(n - 1);
+        final int[] bases = (n < 4759123141L) ? SMALL_BASES : DETERMINISTIC_BASES;
+        for (int i = 0; i < bases.length; i++) {
+            if (!isStrongProbablePrime(n, bases[i], d))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates if the specified positive large integer may be a p-th power:
+     * its residues modulo a few primes <code>q = 1 mod p</code> are p-th
+     * power residues (a non-power passes each test with a probability
+     * of about <code>1/p</code>).
+     *
+     * @param x the positive large integer.
+     * @param p the prime exponent.
+     * @return <code>false</code> if <code>x</code> is not a p-th power;
+     *         <code>true</code> if it may be.
+     */
+    static boolean isPowerResidue(LargeInteger x, int p) {
+        int count = 0;
+        for (long q = 2L * p + 1; (count < 4) && (q <= Integer.MAX_VALUE); q += 2L * p) {
+            if (!isPrime(q, false))
+                continue;
+            count++;
+            final long r = Calculus.remainder(x.words(), x.size(), (int) q);
+            if (r == 0)
+                continue;
+            long y = 1; // r^((q - 1) / p) mod q
+            for (long e = (q - 1) / p, b = r; e != 0; e >>= 1) {
+                if ((e & 1) != 0) {
+                    y = y * b % q;
+                }
+                b = b * b % q;
+            }
+            if (y != 1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the odd primes less than or equal to the specified value.
+     *
+     * @param n the inclusive upper bound.
+     * @return the odd primes <code>p &lt;= n</code> in increasing order.
+     */
+    static int[] primes(int n) {
+        if (n >= SMALL_PRIMES[SMALL_PRIMES.length - 1])
+            return (n < (1 << 16)) ? SMALL_PRIMES : sieve(n + 1);
+        final int count = (n < 3) ? 0 : count(n + 1);
+        final int[] primes = new int[count];
+        System.arraycopy(SMALL_PRIMES, 0, primes, 0, count);
+        return primes;
+    }
+
+    // Miller-Rabin test of the odd n > a to the base a (n - 1 = d 2^s).
+    private static boolean isStrongProbablePrime(long n, long a, long d) {
+        long x = 1;
+        for (long e = d, b = a; e != 0; e >>= 1) {
+            if ((e & 1) != 0) {
+                x = Calculus.multiplyMod(x, b, n);
+            }
+            b = Calculus.multiplyMod(b, b, n);
+        }
+        if ((x == 1) || (x == n - 1))
+            return true;
+        for (long e = d << 1; e < n - 1; e <<= 1) {
+            x = Calculus.multiplyMod(x, x, n);
+            if (x == n - 1)
+                return true;
+            if (x == 1)
+                return false;
+        }
+        return false;
+    }
+
+    // Miller-Rabin test of the odd n > 2^63 to the base a (n - 1 = d 2^s).
+    private static boolean isStrongProbablePrime(LargeInteger n, LargeInteger a,
+            Modulus modulus, LargeInteger nMinusOne, LargeInteger d, int s) {
+        LargeInteger x = modulus.pow(a.mod(n), d);
+        if (x.equals(1) || x.equals(nMinusOne))
+            return true;
+        for (int r = 1; r < s; r++) {
+            x = x.square().mod(n);
+            if (x.equals(nMinusOne))
+                return true;
+            if (x.equals(1))
+                return false;
+        }
+        return false;
+    }
+
+    // Strong Lucas test with Selfridge's parameters (method A) of the odd
+    // n > 2^63 not divisible by the small primes.
+    private static boolean isStrongLucasProbablePrime(LargeInteger n) {
+        int D = 5;
+        for (int i = 0;; i++) {
+            int j = jacobi(D, n);
+            if (j == -1)
+                break;
+            if (j == 0)
+                return false; // |D| < n
+            if ((i == 4) && n.sqrt().square().equals(n))
+                return false; // Perfect square (no such D).
+            D = (D < 0) ? 2 - D : -2 - D; // 5, -7, 9, -11, 13, ...
+        }
+        final LargeInteger Q = LargeInteger.valueOf((1 - D) / 4).mod(n);
+        final LargeInteger nPlusOne = n.plus(1);
+        final int s = nPlusOne.getLowestSetBit();
+        final LargeInteger d = nPlusOne.times2pow(-s);
+
+        // Binary Lucas chain (P = 1): U(k), V(k), Q^k
+        LargeInteger u = LargeInteger.ONE;
+        LargeInteger v = LargeInteger.ONE;
+        LargeInteger qk = Q;
+        for (int i = d.bitLength() - 2; i >= 0; i--) {
+            u = u.times(v).mod(n);
+            v = v.square().minus(qk.times2pow(1)).mod(n);
+            qk = qk.square().mod(n);
+            if (testBit(d, i)) {
+                LargeInteger du = u.times(D);
+                u = half(u.plus(v), n);
+                v = half(du.plus(v), n);
+                qk = qk.times(Q).mod(n);
+            }
+        }
+        if (u.isZero() || v.isZero())
+            return true;
+        for (int r = 1; r < s; r++) {
+            v = v.square().minus(qk.times2pow(1)).mod(n);
+            if (v.isZero())
+                return true;
+            qk = qk.square().mod(n);
+        }
+        return false;
+    }
+
+    // Returns x / 2 mod n (n odd).
+    private static LargeInteger half(LargeInteger x, LargeInteger n) {
+        x = x.mod(n);
+        return (x.isOdd() ? x.plus(n) : x).times2pow(-1);
+    }
+
+    // Returns the Jacobi symbol (a/n), n odd positive greater than |a|.
+    private static int jacobi(int a, LargeInteger n) {
+        final long n8 = n.words()[0] & 7;
+        int j = 1;
+        long b = a;
+        if (b < 0) {
+            b = -b;
+            if ((n8 & 3) == 3) {
+                j = -j;
+            }
+        }
+        for (; (b & 1) == 0; b >>= 1) {
+            if ((n8 == 3) || (n8 == 5)) {
+                j = -j;
+            }
+        }
+        if (b == 1)
+            return j;
+        if (((b & 3) == 3) && ((n8 & 3) == 3)) { // Quadratic reciprocity.
+            j = -j;
+        }
+        return j * jacobi(Calculus.remainder(n.words(), n.size(), (int) b), b);
+    }
+
+    // Returns the Jacobi symbol (a/n), n odd positive, 0 <= a < n.
+    private static int jacobi(long a, long n) {
+        int j = 1;
+        while (a != 0) {
+            for (; (a & 1) == 0; a >>= 1) {
+                final long n8 = n & 7;
+                if ((n8 == 3) || (n8 == 5)) {
+                    j = -j;
+                }
+            }
+            final long tmp = a;
+            a = n;
+            n = tmp; // Swaps.
+            if (((a & 3) == 3) && ((n & 3) == 3)) {
+                j = -j;
+            }
+            a %= n;
+        }
+        return (n == 1) ? j : 0;
+    }
+
+    // Indicates if the odd n (more than 31 bits) has a small prime factor.
+    private static boolean hasSmallFactor(LargeInteger n) {
+        for (int i = 0, k = 0; i < TRIAL_PRODUCTS.length; i++) {
+            final long r = Calculus.remainder(n.words(), n.size(),
+                    TRIAL_PRODUCTS[i]);
+            for (long product = 1; (k < TRIAL_DIVISION_COUNT)
+                    && (product * SMALL_PRIMES[k] <= Integer.MAX_VALUE); k++) {
+                product *= SMALL_PRIMES[k];
+                if (r % SMALL_PRIMES[k] == 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the number of random Miller-Rabin rounds after Baillie-PSW
+    // (Damgård, Landrock and Pomerance error bounds for random candidates).
+    private static int rounds(int bitLength) {
+        final int rounds = (bitLength < 100) ? 50 : (bitLength < 256) ? 27
+                : (bitLength < 512) ? 15 : (bitLength < 768) ? 8
+                        : (bitLength < 1024) ? 4 : 2;
+        return MathLib.min(rounds, (LargeInteger.PRIME_CERTAINTY.get() + 1) / 2);
+    }
+
+    // Returns a random positive large integer of the specified bit length
+    // (at most).
+    private static LargeInteger random(int bitLength) {
+        final int size = (bitLength + 62) / 63;
+        final long[] words = new long[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = RANDOM.nextLong() & Calculus.MASK_63;
+        }
+        words[size - 1] >>>= size * 63 - bitLength;
+        int n = size;
+        while ((n > 0) && (words[n - 1] == 0)) {
+            n--;
+        }
+        return LargeInteger.valueOf(words, n, false);
+    }
+
+    // Tests the specified bit of the specified positive large integer.
+    private static boolean testBit(LargeInteger x, int index) {
+        return ((x.words()[index / 63] >>> (index % 63)) & 1) != 0;
+    }
+
+    // Returns the odd primes less than n (sieve of Eratosthenes).
+    private static int[] sieve(int n) {
+        final boolean[] composite = new boolean[n];
+        int count = 0;
+        for (int i = 3; i < n; i += 2) {
+            if (composite[i])
+                continue;
+            count++;
+            for (long j = (long) i * i; j < n; j += 2 * i) {
+                composite[(int) j] = true;
+            }
+        }
+        final int[] primes = new int[count];
+        for (int i = 3, k = 0; i < n; i += 2) {
+            if (!composite[i]) {
+                primes[k++] = i;
+            }
+        }
+        return primes;
+    }
+
+    // Returns the number of small primes less than n.
+    private static int count(int n) {
+        int count = 0;
+        while (SMALL_PRIMES[count] < n) {
+            count++;
+        }
+        return count;
+    }
+
+    // Returns the products of the trial division primes (31 bits each).
+    private static int[] products() {
+        final int[] products = new int[TRIAL_DIVISION_COUNT];
+        int n = 0;
+        for (int k = 0; k < TRIAL_DIVISION_COUNT; n++) {
+            long product = 1;
+            for (; (k < TRIAL_DIVISION_COUNT)
+                    && (product * SMALL_PRIMES[k] <= Integer.MAX_VALUE); k++) {
+                product *= SMALL_PRIMES[k];
+            }
+            products[n] = (int) product;
+        }
+        final int[] tmp = new int[n];
+        System.arraycopy(products, 0, tmp, 0, n);
+        return tmp;
+    }
+}
@@ -0,0 +1,718 @@
+/*
+ * JScience - Java(TM) Tools and Libraries for the Advancement of Sciences.
+ * Copyright (C) 2007 - JScience (http://jscience.org/)
+ * All rights reserved.
+ *
+ * Permission to use, copy, modify, and distribute this software is
+ * freely granted, provided that this notice is preserved.
+ */
+package org.jscience.mathematics.number;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import javolution.context.ConcurrentContext;
+import javolution.lang.MathLib;
+
+/**
+ * <p> This class holds the self-initializing quadratic sieve (see
+ *     {@link Factorization}).</p>
+ *
+ * <p> Relations <code>Y<sup>2</sup> = a·Q(x) mod kN</code> with
+ *     <code>Y = a·x + b</code> and <code>Q(x)</code> smooth over the factor
+ *     base are collected by sieving the polynomials
+ *     <code>Q(x) = ((a·x + b)<sup>2</sup> - kN) / a</code>, <code>x</code>
+ *     in <code>[-M, M[</code>. The coefficient <code>a</code> is a product
+ *     of <code>s</code> factor base primes, each <code>a</code> provides
+ *     <code>2<sup>s-1</sup></code> polynomials whose roots are updated by
+ *     additions only (Gray code). Partial relations having a single large
+ *     prime are combined by pairs. A square congruence
+ *     <code>X<sup>2</sup> = Z<sup>2</sup> mod N</code> is then found by
+ *     gaussian elimination over <code>GF(2)</code>.</p>
+ *
+ * <p> The multiplier <code>k</code> is selected using the Knuth-Schroeppel
+ *     function; the polynomials of different <code>a</code> coefficients
+ *     are sieved concurrently (see {@link ConcurrentContext}).</p>
+ *
+ * @author <a href="mailto:jean-marie@dautelle.com">Jean-Marie Dautelle</a>
+ * @version 5.0, November 20, 2009
+ * @see <a href="http://www.crypto-world.com/documents/contini_siqs.pdf">
+ *      Contini: Factoring Integers with the Self-Initializing Quadratic
+ *      Sieve</a>
+ */
+final class QuadraticSieve {
+
+    /**
+     * Holds the parameters by number size: bits, factor base size, large
+     * prime multiplier and sieve length (<code>2·M</code>).
+     */
+    private static final int[][] PARAMETERS = { { 64, 100, 40, 1 << 15 },
+            { 128, 450, 40, 1 << 16 }, { 183, 2000, 40, 1 << 16 },
+            { 200, 3000, 50, 1 << 16 }, { 212, 5400, 50, 3 << 16 },
+            { 233, 10000, 100, 3 << 16 }, { 249, 27000, 100, 3 << 16 },
+            { 266, 50000, 100, 3 << 16 } };
+
+    /**
+     * Holds the squarefree multipliers candidates.
+     */
+    private static final int[] MULTIPLIERS = { 1, 2, 3, 5, 6, 7, 10, 11, 13,
+            14, 15, 17, 19, 21, 22, 23, 26, 29, 30, 31, 33, 34, 35, 37, 38, 39,
+            41, 42, 43, 46, 47, 51, 53, 55, 57, 58, 59, 61, 62, 65, 66, 67, 69,
+            70, 71, 73 };
+
+    /**
+     * Holds the smallest prime sieved (smaller primes are only used for
+     * trial division, their contribution being estimated).
+     */
+    private static final int SIEVE_START = 50;
+
+    /**
+     * Holds the number of relations collected in excess of the factor
+     * base size.
+     */
+    private static final int EXCESS = 40;
+
+    /**
+     * Holds the number to factor.
+     */
+    private final LargeInteger _n;
+
+    /**
+     * Holds the factorization this sieve is used by.
+     */
+    private final Factorization _factorization;
+
+    /**
+     * Holds the thread calling the factorization.
+     */
+    private final Thread _caller;
+
+    /**
+     * Holds the multiplied number <code>kN</code>.
+     */
+    private LargeInteger _kn;
+
+    /**
+     * Holds the factor base: primes (<code>-1</code> and <code>2</code>
+     * first), square roots of <code>kN</code> and base 2 logarithms.
+     */
+    private int[] _primes;
+    private int[] _roots;
+    private byte[] _logs;
+
+    /**
+     * Holds the index of the first prime sieved.
+     */
+    private int _sieveStart;
+
+    /**
+     * Holds the half length <code>M</code> of the sieve interval.
+     */
+    private int _m;
+
+    /**
+     * Holds the sieve threshold.
+     */
+    private int _threshold;
+
+    /**
+     * Holds the large prime bound.
+     */
+    private long _largeBound;
+
+    /**
+     * Holds the factor found while building the factor base or
+     * <code>null</code>.
+     */
+    private LargeInteger _factor;
+
+    /**
+     * Creates the quadratic sieve for the specified number.
+     *
+     * @param n the composite to factor (odd, not a perfect power, no
+     *        small factor).
+     * @param factorization the factorization using this sieve.
+     */
+    QuadraticSieve(LargeInteger n, Factorization factorization) {
+        _n = n;
+        _factorization = factorization;
+        _caller = factorization.caller();
+    }
+
+    /**
+     * Returns a non-trivial factor of the number to factor.
+     *
+     * @return a factor <code>1 &lt; d &lt; n</code>
+     */
+    LargeInteger factor() {
+        final int[] parameters = parameters(_n.bitLength());
+        initialize(parameters);
+        if (_factor != null)
+            return _factor;
+        final int concurrency = ConcurrentContext.getConcurrency() + 1;
+        final ArrayList<Relation> relations = new ArrayList<Relation>();
+        final HashMap<Long, Relation> partials = new HashMap<Long, Relation>();
+        final Coefficients coefficients = new Coefficients();
+        int target = _primes.length + EXCESS;
+        while (true) {
+            final Polynomials[] polynomials = new Polynomials[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                polynomials[i] = new Polynomials(coefficients.next());
+            }
+            ConcurrentContext.enter();
+            try {
+                for (int i = 0; i < concurrency; i++) {
+                    ConcurrentContext.execute(polynomials[i]);
+                }
+            } finally {
+                ConcurrentContext.exit();
+            }
+            _factorization.checkCancelled();
+            for (int i = 0; i < concurrency; i++) {
+                for (Relation relation : polynomials[i]._relations) {
+                    if (relation._large == 1) {
+                        relations.add(relation);
+                        continue;
+                    }
+                    final Long key = Long.valueOf(relation._large);
+                    final Relation partial = partials.get(key);
+                    if (partial == null) {
+                        partials.put(key, relation);
+                    } else if (!partial._y.equals(relation._y)) {
+                        relations.add(combine(partial, relation));
+                    }
+                }
+            }
+            if (relations.size() < target)
+                continue;
+            final LargeInteger d = solve(relations);
+            if (d != null)
+                return d;
+            target = relations.size() + EXCESS; // More dependencies.
+        }
+    }
+
+    // Returns the parameters for the specified number size (interpolated).
+    private static int[] parameters(int bits) {
+        if (bits <= PARAMETERS[0][0])
+            return PARAMETERS[0];
+        for (int i = 1; i < PARAMETERS.length; i++) {
+            final int[] high = PARAMETERS[i];
+            if (bits <= high[0]) {
+                final int[] low = PARAMETERS[i - 1];
+                final double t = (double) (bits - low[0]) / (high[0] - low[0]);
+                return new int[] { bits,
+                        (int) (low[1] + t * (high[1] - low[1])),
+                        (int) (low[2] + t * (high[2] - low[2])),
+                        (t < 0.5) ? low[3] : high[3] };
+            }
+        }
+        return PARAMETERS[PARAMETERS.length - 1];
+    }
+
+    // Selects the multiplier, builds the factor base and the thresholds.
+    private void initialize(int[] parameters) {
+        final int k = multiplier();
+        _kn = _n.times(k);
+        final int size = parameters[1];
+        _primes = new int[size];
+        _roots = new int[size];
+        _logs = new byte[size];
+        _primes[0] = -1;
+        _primes[1] = 2;
+        int count = 2;
+        int[] primes = Primes.SMALL_PRIMES;
+        for (int i = 0; count < size; i++) {
+            if (i == primes.length) { // More primes.
+                primes = Primes.primes(primes[primes.length - 1] << 1);
+            }
+            final int p = primes[i];
+            final long r = Calculus.remainder(_kn.words(), _kn.size(), p);
+            if (r == 0) {
+                if (k % p != 0) { // p divides n.
+                    _factor = LargeInteger.valueOf(p);
+                    return;
+                }
+            } else if (power(r, (p - 1) >> 1, p) != 1)
+                continue; // Not a quadratic residue.
+            _primes[count] = p;
+            _roots[count] = (int) sqrt(r, p);
+            _logs[count] = (byte) MathLib.round(MathLib.log(p) / MathLib.LOG2);
+            count++;
+        }
+        _sieveStart = 2;
+        while ((_sieveStart < size) && (_primes[_sieveStart] < SIEVE_START)) {
+            _sieveStart++;
+        }
+        _m = parameters[3] >> 1;
+        final int largest = _primes[size - 1];
+        _largeBound = (long) largest * parameters[2];
+        // log2(max |Q(x)|) = log2(M·sqrt(kN/2)), small primes contribution
+        // (not sieved) and the tolerance to rounding are about 12 bits.
+        _threshold = (int) (MathLib.log(_m) / MathLib.LOG2 + (_kn.bitLength() - 1) / 2.0
+                - MathLib.log(_largeBound) / MathLib.LOG2 - 12);
+    }
+
+    // Returns the Knuth-Schroeppel multiplier.
+    private int multiplier() {
+        final int n8 = (int) (_n.longValue() & 7);
+        double best = Double.NEGATIVE_INFINITY;
+        int multiplier = 1;
+        final int[] primes = Primes.SMALL_PRIMES;
+        for (int i = 0; i < MULTIPLIERS.length; i++) {
+            final int k = MULTIPLIERS[i];
+            final int kn8 = (k * n8) & 7;
+            double f = -0.5 * MathLib.log(k);
+            f += (kn8 == 1) ? 2 * MathLib.LOG2 : (kn8 == 5) ? MathLib.LOG2
+                    : ((kn8 & 3) == 3) ? 0.5 * MathLib.LOG2 : 0;
+            for (int j = 0; primes[j] < 1000; j++) {
+                final int p = primes[j];
+                final long r = Calculus.remainder(_n.words(), _n.size(), p) * k % p;
+                if (k % p == 0) {
+                    f += MathLib.log(p) / p;
+                } else if ((r != 0) && (power(r, (p - 1) >> 1, p) == 1)) {
+                    f += 2 * MathLib.log(p) / (p - 1);
+                }
+            }
+            if (f > best) {
+                best = f;
+                multiplier = k;
+            }
+        }
+        return multiplier;
+    }
+
+    // Returns a relation without large prime from two partial relations
+    // having the same large prime.
+    private Relation combine(Relation x, Relation y) {
+        final int[] factors = new int[x._factors.length + y._factors.length];
+        System.arraycopy(x._factors, 0, factors, 0, x._factors.length);
+        System.arraycopy(y._factors, 0, factors, x._factors.length, y._factors.length);
+        return new Relation(x._y.times(y._y).mod(_n), factors, 1,
+                LargeInteger.valueOf(x._large));
+    }
+
+    // Finds dependencies (gaussian elimination over GF(2)), returns a
+    // non-trivial factor or null if all dependencies are trivial.
+    private LargeInteger solve(ArrayList<Relation> relations) {
+        final int rows = relations.size();
+        final int columns = _primes.length;
+        final long[][] matrix = new long[rows][(columns + 63) >> 6];
+        final long[][] history = new long[rows][(rows + 63) >> 6];
+        for (int i = 0; i < rows; i++) {
+            final int[] factors = relations.get(i)._factors;
+            for (int j = 0; j < factors.length; j++) {
+                matrix[i][factors[j] >> 6] ^= 1L << factors[j];
+            }
+            history[i][i >> 6] = 1L << i;
+        }
+        final boolean[] isPivot = new boolean[rows];
+        for (int j = 0; j < columns; j++) {
+            final int word = j >> 6;
+            final long bit = 1L << j;
+            int pivot = 0;
+            while ((pivot < rows) && (isPivot[pivot] || ((matrix[pivot][word] & bit) == 0))) {
+                pivot++;
+            }
+            if (pivot == rows)
+                continue;
+            isPivot[pivot] = true;
+            final long[] pivotRow = matrix[pivot];
+            final long[] pivotHistory = history[pivot];
+            for (int i = 0; i < rows; i++) {
+                if ((i == pivot) || ((matrix[i][word] & bit) == 0))
+                    continue;
+                final long[] row = matrix[i];
+                for (int l = word; l < row.length; l++) {
+                    row[l] ^= pivotRow[l];
+                }
+                final long[] h = history[i];
+                for (int l = 0; l < h.length; l++) {
+                    h[l] ^= pivotHistory[l];
+                }
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            if (isPivot[i])
+                continue;
+            final LargeInteger d = factor(relations, history[i]);
+            if (d != null)
+                return d;
+        }
+        return null;
+    }
+
+    // Returns the factor gcd(X - Z, n) for the specified dependency or null
+    // if trivial.
+    private LargeInteger factor(ArrayList<Relation> relations, long[] dependency) {
+        final int[] exponents = new int[_primes.length];
+        LargeInteger x = LargeInteger.ONE;
+        LargeInteger z = LargeInteger.ONE;
+        for (int i = 0; i < relations.size(); i++) {
+            if ((dependency[i >> 6] & (1L << i)) == 0)
+                continue;
+            final Relation relation = relations.get(i);
+            x = x.times(relation._y).mod(_n);
+            z = z.times(relation._root).mod(_n);
+            for (int j = 0; j < relation._factors.length; j++) {
+                exponents[relation._factors[j]]++;
+            }
+        }
+        for (int j = 1; j < exponents.length; j++) {
+            if (exponents[j] < 2)
+                continue;
+            z = z.times(LargeInteger.valueOf(_primes[j]).modPow(
+                    LargeInteger.valueOf(exponents[j] >> 1), _n)).mod(_n);
+        }
+        final LargeInteger g = x.minus(z).gcd(_n);
+        return (g.equals(1) || g.equals(_n)) ? null : g;
+    }
+
+    // Returns x^e mod p (p < 2^31).
+    private static long power(long x, long e, long p) {
+        long result = 1;
+        for (x %= p; e != 0; e >>= 1) {
+            if ((e & 1) != 0) {
+                result = result * x % p;
+            }
+            x = x * x % p;
+        }
+        return result;
+    }
+
+    // Returns the square root of the quadratic residue r mod p (Tonelli-Shanks).
+    private static long sqrt(long r, int p) {
+        if (r == 0)
+            return 0; // p divides the multiplier.
+        if ((p & 3) == 3)
+            return power(r, (p + 1) >> 2, p);
+        int s = 0;
+        long q = p - 1;
+        while ((q & 1) == 0) {
+            q >>= 1;
+            s++;
+        }
+        long z = 2;
+        while (power(z, (p - 1) >> 1, p) != p - 1) {
+            z++;
+        }
+        long c = power(z, q, p);
+        long t = power(r, q, p);
+        long result = power(r, (q + 1) >> 1, p);
+        for (int m = s; t != 1;) {
+            int i = 0;
+            for (long t2 = t; t2 != 1; t2 = t2 * t2 % p) {
+                i++;
+            }
+            long b = c;
+            for (int j = m - i - 1; j > 0; j--) {
+                b = b * b % p;
+            }
+            m = i;
+            c = b * b % p;
+            t = t * c % p;
+            result = result * b % p;
+        }
+        return result;
+    }
+
+    // Returns the inverse of x mod p (x, p coprime, p < 2^31).
+    private static int inverse(long x, int p) {
+        long r0 = p, r1 = x % p, t0 = 0, t1 = 1;
+        while (r1 != 0) {
+            final long q = r0 / r1;
+            long tmp = r0 - q * r1;
+            r0 = r1;
+            r1 = tmp;
+            tmp = t0 - q * t1;
+            t0 = t1;
+            t1 = tmp;
+        }
+        return (int) ((t0 < 0) ? t0 + p : t0);
+    }
+
+    /**
+     * A relation <code>Y<sup>2</sup> = root<sup>2</sup>·(product of the
+     * factor base primes) mod N</code>.
+     */
+    private static final class Relation {
+        private final LargeInteger _y;
+        private final int[] _factors; // Factor base indices.
+        private final long _large; // Large prime (1 if none).
+        private final LargeInteger _root;
+
+        Relation(LargeInteger y, int[] factors, long large, LargeInteger root) {
+            _y = y;
+            _factors = factors;
+            _large = large;
+            _root = root;
+        }
+    }
+
+    /**
+     * The generator of distinct <code>a</code> coefficients (factor base
+     * indices of their primes).
+     */
+    private final class Coefficients {
+        private final Random _random = new Random();
+        private final HashSet<LargeInteger> _used = new HashSet<LargeInteger>();
+        private final int _s;
+        private final double _target; // log2(a).
+        private int _low, _high; // Indices range.
+
+        Coefficients() {
+            // a ~ sqrt(2·kN) / M, of s primes close to 2^11 if possible.
+            _target = (_kn.bitLength() + 1) / 2.0 - MathLib.log(_m) / MathLib.LOG2;
+            final int last = _primes.length - 1;
+            final int first = MathLib.min(_sieveStart + 1, last);
+            int s = MathLib.max((int) MathLib.round(_target / 11), 1);
+            while ((s > 1) && (MathLib.pow(2, _target / s) < _primes[first])) {
+                s--;
+            }
+            while (MathLib.pow(2, _target / s) > _primes[last]) {
+                s++;
+            }
+            _s = s;
+            final double q = MathLib.pow(2, _target / s);
+            int center = first;
+            while ((center < last) && (_primes[center] < q)) {
+                center++;
+            }
+            final int window = MathLib.max(s + 8, 20);
+            _low = MathLib.max(center - window, first);
+            _high = MathLib.min(center + window, last + 1);
+        }
+
+        // Returns the next coefficient primes indices.
+        int[] next() {
+            for (int attempt = 0;; attempt++) {
+                if ((attempt & 63) == 63) { // Widens the range.
+                    _low = MathLib.max(_low - 8, MathLib.min(_sieveStart + 1, _primes.length - 1));
+                    _high = MathLib.min(_high + 8, _primes.length);
+                }
+                final int[] indices = new int[_s];
+                LargeInteger a = LargeInteger.ONE;
+                for (int i = 0; i < _s - 1; i++) {
+                    indices[i] = pick(indices, i, _low + _random.nextInt(_high - _low));
+                    a = a.times(_primes[indices[i]]);
+                }
+                if (_s > 1) { // Last prime closest to the target.
+                    final double q = MathLib.pow(2, _target - MathLib.log(a.doubleValue()) / MathLib.LOG2);
+                    int j = _sieveStart + 1;
+                    while ((j < _primes.length - 1) && (_primes[j] < q)) {
+                        j++;
+                    }
+                    indices[_s - 1] = pick(indices, _s - 1, j);
+                } else {
+                    indices[0] = _low + _random.nextInt(_high - _low);
+                }
+                if (indices[_s - 1] < 0)
+                    continue;
+                a = a.times(_primes[indices[_s - 1]]);
+                if (_used.add(a))
+                    return indices;
+            }
+        }
+
+        // Returns the index nearest to i not already used (-1 if none).
+        private int pick(int[] indices, int count, int i) {
+            for (int delta = 0; delta < _primes.length; delta++) {
+                for (int j = i - delta; j <= i + delta; j += (delta == 0) ? 1 : 2 * delta) {
+                    if ((j <= _sieveStart) || (j >= _primes.length))
+                        continue;
+                    boolean isUsed = false;
+                    for (int l = 0; l < count; l++) {
+                        isUsed |= (indices[l] == j);
+                    }
+                    if (!isUsed)
+                        return j;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The sieving of the polynomials of a coefficient <code>a</code>
+     * (for concurrent context).
+     */
+    private final class Polynomials implements Runnable {
+        private final int[] _indices; // Primes of a.
+        private final ArrayList<Relation> _relations = new ArrayList<Relation>();
+        private int[] _root1, _root2;
+        private boolean[] _dividesA;
+
+        Polynomials(int[] indices) {
+            _indices = indices;
+        }
+
+        public void run() {
+            final int s = _indices.length;
+            final int size = _primes.length;
+            LargeInteger a = LargeInteger.ONE;
+            for (int l = 0; l < s; l++) {
+                a = a.times(_primes[_indices[l]]);
+            }
+            _dividesA = new boolean[size];
+            for (int l = 0; l < s; l++) {
+                _dividesA[_indices[l]] = true;
+            }
+            // B_l = (a / q_l)·gamma, gamma = t_l·(a / q_l)^-1 mod q_l
+            final LargeInteger[] bs = new LargeInteger[s];
+            LargeInteger b = LargeInteger.ZERO;
+            for (int l = 0; l < s; l++) {
+                final int q = _primes[_indices[l]];
+                final LargeInteger aq = a.divide(q);
+                long gamma = (long) _roots[_indices[l]]
+                        * inverse(Calculus.remainder(aq.words(), aq.size(), q), q) % q;
+                if (gamma > (q >> 1)) {
+                    gamma = q - gamma;
+                }
+                bs[l] = aq.times(gamma);
+                b = b.plus(bs[l]);
+            }
+            // Roots (sieve indices x + M) and their updates.
+            _root1 = new int[size];
+            _root2 = new int[size];
+            final int[][] updates = new int[s][size];
+            for (int i = 2; i < size; i++) {
+                if (_dividesA[i])
+                    continue;
+                final int p = _primes[i];
+                final long aInverse = inverse(Calculus.remainder(a.words(), a.size(), p), p);
+                final long bp = Calculus.remainder(b.words(), b.size(), p);
+                final long m = _m % p;
+                _root1[i] = (int) ((aInverse * ((_roots[i] - bp + p) % p) + m) % p);
+                _root2[i] = (int) ((aInverse * ((2L * p - _roots[i] - bp) % p) + m) % p);
+                for (int l = 0; l < s; l++) {
+                    final long bl = Calculus.remainder(bs[l].words(), bs[l].size(), p);
+                    updates[l][i] = (int) (2 * bl * aInverse % p);
+                }
+            }
+            final byte[] sieve = new byte[_m << 1];
+            final int polynomials = 1 << (s - 1);
+            for (int k = 0; k < polynomials; k++) {
+                if (k > 0) { // Gray code: b += 2·(-1)^ceil(k / 2^(l+1))·B_l
+                    final int l = Integer.numberOfTrailingZeros(k);
+                    final boolean isPlus = ((k >> (l + 1)) & 1) != 0;
+                    b = isPlus ? b.plus(bs[l].times2pow(1)) : b.minus(bs[l].times2pow(1));
+                    final int[] update = updates[l];
+                    for (int i = 2; i < size; i++) {
+                        final int p = _primes[i];
+                        if (isPlus) {
+                            _root1[i] -= update[i];
+                            _root1[i] += (_root1[i] < 0) ? p : 0;
+                            _root2[i] -= update[i];
+                            _root2[i] += (_root2[i] < 0) ? p : 0;
+                        } else {
+                            _root1[i] += update[i];
+                            _root1[i] -= (_root1[i] >= p) ? p : 0;
+                            _root2[i] += update[i];
+                            _root2[i] -= (_root2[i] >= p) ? p : 0;
+                        }
+                    }
+                }
+                sieve(sieve);
+                for (int j = 0; j < sieve.length; j++) {
+                    if ((sieve[j] & 0xFF) >= _threshold) {
+                        check(a, b, j);
+                    }
+                }
+                if (_factorization.isAborted(_caller))
+                    return;
+            }
+        }
+
+        // Adds the logarithms of the factor base primes dividing Q(x).
+        private void sieve(byte[] sieve) {
+            for (int j = 0; j < sieve.length; j++) {
+                sieve[j] = 0;
+            }
+            final int length = sieve.length;
+            for (int i = _sieveStart; i < _primes.length; i++) {
+                if (_dividesA[i])
+                    continue;
+                final int p = _primes[i];
+                final byte log = _logs[i];
+                for (int j = _root1[i]; j < length; j += p) {
+                    sieve[j] += log;
+                }
+                if (_root2[i] == _root1[i])
+                    continue;
+                for (int j = _root2[i]; j < length; j += p) {
+                    sieve[j] += log;
+                }
+            }
+        }
+
+        // Trial divides Q(x), x = j - M, records the relation if smooth.
+        private void check(LargeInteger a, LargeInteger b, int j) {
+            final LargeInteger y = a.times(j - _m).plus(b);
+            LargeInteger q = y.square().minus(_kn).divide(a);
+            int[] factors = new int[16];
+            int count = 0;
+            if (q.isNegative()) {
+                factors[count++] = 0;
+                q = q.abs();
+            }
+            if (q.isZero())
+                return;
+            final int twos = q.getLowestSetBit();
+            for (int i = 0; i < twos; i++) {
+                factors = append(factors, count++, 1);
+            }
+            q = q.shiftRight(twos);
+            for (int l = 0; l < _indices.length; l++) { // a factors.
+                factors = append(factors, count++, _indices[l]);
+            }
+            long w = 0; // Cofactor (when less than 2^62).
+            if (q.bitLength() <= 62) {
+                w = q.longValue();
+                q = null;
+            }
+            for (int i = 2; i < _primes.length; i++) {
+                final int p = _primes[i];
+                if (!_dividesA[i]) {
+                    final int r = j % p;
+                    if ((r != _root1[i]) && (r != _root2[i]))
+                        continue;
+                }
+                if (q != null) {
+                    if (Calculus.remainder(q.words(), q.size(), p) != 0)
+                        continue;
+                    do {
+                        factors = append(factors, count++, i);
+                        q = q.divide(p);
+                    } while (Calculus.remainder(q.words(), q.size(), p) == 0);
+                    if (q.bitLength() <= 62) {
+                        w = q.longValue();
+                        q = null;
+                    }
+                } else {
+                    while (w % p == 0) {
+                        factors = append(factors, count++, i);
+                        w /= p;
+                    }
+                }
+            }
+            if ((q != null) || (w >= _largeBound))
+                return;
+            final int[] tmp = new int[count];
+            System.arraycopy(factors, 0, tmp, 0, count);
+            _relations.add(new Relation(y, tmp, w, LargeInteger.ONE));
+        }
+    }
+
+    // Sets the specified element, resizing the array if necessary.
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            int[] tmp = new int[index << 1];
+            System.arraycopy(array, 0, tmp, 0, index);
+            array = tmp;
+        }
+        array[index] = value;
+        return array;
+    }
+}
@@ -11,6 +11,7 @@ package org.jscience.mathematics.number;
 import java.io.IOException;
 import java.math.BigDecimal;
 import javolution.context.ObjectFactory;
+import javolution.lang.MathLib;
 import javolution.text.Cursor;
 import javolution.text.TextFormat;
 
@@ -140,7 +141,7 @@ public final class Rational extends NumberField<Rational> {
         return Rational.valueOfNoNormalization(dividend, divisor).normalize();
     }
 
-    private static Rational valueOfNoNormalization(LargeInteger dividend, LargeInteger divisor) {
+    static Rational valueOfNoNormalization(LargeInteger dividend, LargeInteger divisor) {
         Rational r = FACTORY.object();
         r._dividend = dividend;
         r._divisor = divisor;
@@ -157,6 +158,8 @@ public final class Rational extends NumberField<Rational> {
      * @throws ArithmeticException if <code>divisor == 0</code>
      */
     public static Rational valueOf(long dividend, long divisor) {
+        if ((dividend != Long.MIN_VALUE) && (divisor != Long.MIN_VALUE))
+            return Rational.valueOfSingleWords(dividend, divisor);
         return Rational.valueOf(LargeInteger.valueOf(dividend), LargeInteger.valueOf(divisor));
     }
 
@@ -248,6 +251,20 @@ public final class Rational extends NumberField<Rational> {
 
     // Implements GroupAdditive.
     public Rational plus(Rational that) {
+        if (this.isSingleWords() && that.isSingleWords()) { // a/b + c/d
+            final long b = this._divisor.longValue();
+            final long d = that._divisor.longValue();
+            final long gcd = Calculus.gcd(MathLib.abs(b), MathLib.abs(d));
+            final long ad = Calculus.multiplyExact(this._dividend.longValue(), d / gcd);
+            final long cb = Calculus.multiplyExact(that._dividend.longValue(), b / gcd);
+            final long divisor = Calculus.multiplyExact(b / gcd, d);
+            if ((ad != Calculus.OVERFLOW) && (cb != Calculus.OVERFLOW)
+                    && (divisor != Calculus.OVERFLOW)) {
+                final long dividend = Calculus.addExact(ad, cb);
+                if (dividend != Calculus.OVERFLOW)
+                    return Rational.valueOfSingleWords(dividend, divisor);
+            }
+        }
         return Rational.valueOf(
                 this._dividend.times(that._divisor).plus(
                 this._divisor.times(that._dividend)),
@@ -261,6 +278,20 @@ public final class Rational extends NumberField<Rational> {
 
     // Implements GroupMultiplicative.
     public Rational times(Rational that) {
+        if (this == that) // Already normalized (gcd of squares is one).
+            return Rational.valueOfNoNormalization(_dividend.square(), _divisor.square());
+        if (this.isSingleWords() && that.isSingleWords()) { // Cross reductions.
+            final long a = this._dividend.longValue();
+            final long b = this._divisor.longValue();
+            final long c = that._dividend.longValue();
+            final long d = that._divisor.longValue();
+            final long ad = Calculus.gcd(MathLib.abs(a), MathLib.abs(d));
+            final long cb = Calculus.gcd(MathLib.abs(c), MathLib.abs(b));
+            final long dividend = Calculus.multiplyExact(a / ad, c / cb);
+            final long divisor = Calculus.multiplyExact(b / cb, d / ad);
+            if ((dividend != Calculus.OVERFLOW) && (divisor != Calculus.OVERFLOW))
+                return Rational.valueOfSingleWords(dividend, divisor);
+        }
         return Rational.valueOf(this._dividend.times(that._dividend),
                 this._divisor.times(that._divisor));
     }
@@ -312,6 +343,14 @@ public final class Rational extends NumberField<Rational> {
 
     // Implements abstract class Number.
     public int compareTo(Rational that) {
+        if (this.isSingleWords() && that.isSingleWords()) {
+            final long x = Calculus.multiplyExact(this._dividend.longValue(),
+                    that._divisor.longValue());
+            final long y = Calculus.multiplyExact(that._dividend.longValue(),
+                    this._divisor.longValue());
+            if ((x != Calculus.OVERFLOW) && (y != Calculus.OVERFLOW))
+                return (x < y) ? -1 : ((x == y) ? 0 : 1);
+        }
         return this._dividend.times(that._divisor).compareTo(
                 that._dividend.times(this._divisor));
     }
@@ -321,6 +360,21 @@ public final class Rational extends NumberField<Rational> {
         return Rational.valueOfNoNormalization(_dividend.copy(), _divisor.copy());
     }
 
+    // Indicates if the dividend and divisor are single word large integers.
+    private boolean isSingleWords() {
+        return (_dividend.size() <= 1) && (_divisor.size() <= 1);
+    }
+
+    // Returns the normalized rational for the specified values (|values| < 2^63).
+    private static Rational valueOfSingleWords(long dividend, long divisor) {
+        if (divisor == 0)
+            throw new ArithmeticException("Zero divisor");
+        long gcd = Calculus.gcd(MathLib.abs(dividend), MathLib.abs(divisor));
+        gcd = (divisor < 0) ? -gcd : gcd;
+        return Rational.valueOfNoNormalization(LargeInteger.valueOf(dividend / gcd),
+                LargeInteger.valueOf(divisor / gcd));
+    }
+
     // Returns the normalized/canonical form of this rational.
     private Rational normalize() {
         if (_divisor.isZero())
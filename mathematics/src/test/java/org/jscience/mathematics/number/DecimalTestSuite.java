@@ -13,6 +13,11 @@ import static javolution.testing.TestContext.assertEquals;
 import static javolution.testing.TestContext.assertTrue;
 
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jscience.mathematics.number.util.NumberHelper;
@@ -97,4 +102,65 @@ public class DecimalTestSuite extends AbstractFloatTestSuite<Decimal> {
             });
         }
     }
+
+    public void testBigDecimal() {
+        info("  bigDecimal");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (final String value : new String[] { "0", "-1.5", "123456789012345678", "9223372036854775807",
+                        "-9223372036854775808", "1.23456789012345678901234567890E-40",
+                        "-98765432109876543210987654321098765432109876543210" }) {
+                    final BigDecimal bd = new BigDecimal(value);
+                    TestContext.assertEquals(bd, Decimal.valueOf(bd).decimalValue(), value);
+                }
+            }
+        });
+    }
+
+    public void testCompactOverflow() {
+        info("  compactOverflow");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final long max = 999999999999999999L; // Largest compact significand.
+                final Decimal a = Decimal.valueOf(max, -2);
+                final Decimal b = Decimal.valueOf(max - 1, 3);
+                final BigDecimal sum = a.decimalValue().add(b.decimalValue());
+                assertEquals(0, a.plus(b).decimalValue().compareTo(sum.round(new MathContext(20, RoundingMode.DOWN))));
+                final BigDecimal product = a.decimalValue().multiply(a.decimalValue());
+                assertEquals(0, a.times(a).decimalValue().compareTo(product.round(new MathContext(20, RoundingMode.DOWN))));
+                assertEquals(Decimal.valueOf(max + 1, 0).decimalValue(), BigDecimal.valueOf(max + 1));
+                assertEquals(-1, Decimal.valueOf(1, 40).opposite().compareTo(Decimal.valueOf(-max, 0)));
+                assertEquals(1, b.compareTo(a));
+                assertEquals(max / 100, a.longValue());
+            }
+        });
+    }
+
+    public void testFusedOperations() {
+        info("  fusedOperations");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final Decimal[] x = new Decimal[] { Decimal.valueOf("123456789012.34"), Decimal.valueOf("-0.5E-30"),
+                        Decimal.valueOf(999999999999999999L, 5), Decimal.valueOf("7.25") };
+                final Decimal[] y = new Decimal[] { Decimal.valueOf("0.01"), Decimal.valueOf("3"),
+                        Decimal.valueOf(-999999999999999999L, 0), Decimal.valueOf("-4E40") };
+                BigDecimal dot = BigDecimal.ZERO;
+                BigDecimal sum = BigDecimal.ZERO;
+                for (int i = 0; i < x.length; i++) {
+                    dot = dot.add(x[i].decimalValue().multiply(y[i].decimalValue()));
+                    sum = sum.add(x[i].decimalValue());
+                }
+                final MathContext mc = new MathContext(Decimal.getDigits(), RoundingMode.DOWN);
+                assertEquals(0, Decimal.dot(x, y).decimalValue().compareTo(dot.round(mc)));
+                assertEquals(0, Decimal.sum(Arrays.asList(x)).decimalValue().compareTo(sum.round(mc)));
+                final BigDecimal fma = x[2].decimalValue().multiply(y[2].decimalValue()).add(x[1].decimalValue());
+                assertEquals(0, x[2].multiplyAdd(y[2], x[1]).decimalValue().compareTo(fma.round(mc)));
+                assertTrue(Decimal.sum(new ArrayList<Decimal>()).isZero());
+                assertTrue(Decimal.sum(Arrays.asList(Decimal.ONE, Decimal.NaN)).isNaN());
+            }
+        });
+    }
 }
@@ -12,13 +12,33 @@ import static javolution.context.LogContext.info;
 import static javolution.testing.TestContext.assertEquals;
 import static javolution.testing.TestContext.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javolution.context.LocalContext;
 import javolution.testing.TestCase;
 import javolution.testing.TestContext;
 
+import org.jscience.mathematics.matrix.DenseMatrix;
+import org.jscience.mathematics.matrix.DenseVector;
+import org.jscience.mathematics.matrix.SparseMatrix;
+import org.jscience.mathematics.matrix.SparseVector;
 import org.jscience.mathematics.number.util.NumberHelper;
 import org.jscience.util.Pair;
 
@@ -144,8 +164,25 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
                     final String val = p._y.toString();
                     final BigInteger bi = new BigInteger(val);
                     TestContext.assertEquals(p._y, LargeInteger.valueOf(bi), ("" + p));
+                    TestContext.assertEquals(bi, p._y.asBigInteger(), ("" + p));
+                    TestContext.assertEquals(new BigDecimal(bi), p._y.decimalValue(), ("" + p));
                 }
             });
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (int i = 0; i < 1000; i++) {
+                    BigInteger bi = (i < 200) ? BigInteger.ONE.shiftLeft(i).subtract(BigInteger.valueOf(i & 1))
+                            : new BigInteger(1 + rnd.nextInt(500), rnd);
+                    if (rnd.nextBoolean()) {
+                        bi = bi.negate();
+                    }
+                    TestContext.assertEquals(bi.toString(), LargeInteger.valueOf(bi).toString(), "valueOf " + bi);
+                    TestContext.assertEquals(bi, LargeInteger.valueOf(bi.toString()).asBigInteger(), "asBigInteger "
+                            + bi);
+                }
+            }
+        });
     }
 
     public void testToByteArray() {
@@ -165,6 +202,39 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
             });
     }
 
+    public void testFormat() {
+        info(" format");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (final int radix : new int[] { 2, 7, 10, 16, 36 }) {
+                    final BigInteger power = BigInteger.valueOf(radix).pow(5000);
+                    for (final BigInteger x : new BigInteger[] { new BigInteger(50000, rnd),
+                            new BigInteger(50000, rnd).negate(), power, power.subtract(BigInteger.ONE),
+                            power.multiply(power).add(BigInteger.ONE) })
+                        TestContext.assertEquals(x.toString(radix), LargeInteger.valueOf(x).toText(radix).toString(),
+                                "format (" + radix + ")");
+                }
+            }
+        });
+    }
+
+    public void testParse() {
+        info(" parse");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (final int radix : new int[] { 2, 7, 10, 16, 36 }) {
+                    final BigInteger x = new BigInteger(100000, rnd).negate();
+                    TestContext.assertEquals(LargeInteger.valueOf(x), LargeInteger.valueOf(x.toString(radix), radix),
+                            "parse (" + radix + ")");
+                    TestContext.assertEquals(LargeInteger.valueOf(x),
+                            LargeInteger.valueOf(CharBuffer.wrap(x.toString(radix)), radix), "CharBuffer");
+                }
+            }
+        });
+    }
+
     public void testCompareToLong() {
         info(" compareToLong");
         for (final Pair<Double, LargeInteger> p : getTestValues())
@@ -243,6 +313,22 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
         });
     }
 
+    public void testHalfGCD() {
+        info(" half-gcd");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final int bits = LargeInteger.HALF_GCD_THRESHOLD.get() * 63 * 2;
+                final BigInteger f = new BigInteger(bits / 3, rnd);
+                final BigInteger x = new BigInteger(bits, rnd);
+                final BigInteger y = new BigInteger(bits - 1000, rnd).negate();
+                TestContext.assertEquals(LargeInteger.valueOf(x.gcd(y)), LargeInteger.valueOf(x).gcd(LargeInteger.valueOf(y)), "gcd");
+                TestContext.assertEquals(LargeInteger.valueOf(x.multiply(f).gcd(y.multiply(f))),
+                        LargeInteger.valueOf(x.multiply(f)).gcd(LargeInteger.valueOf(y.multiply(f))), "common factor");
+            }
+        });
+    }
+
     private BigInteger makePrime(final int bits) {
         BigInteger res;
         do
@@ -274,6 +360,138 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
         });
     }
 
+    /** Test Toom-Cook multiplication (operands above the thresholds) against {@link BigInteger}. */
+    public void testToomCook() {
+        info(" toomCook");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final int bits3 = LargeInteger.TOOM_COOK_3_THRESHOLD.get() * 63 * 2;
+                final int bits4 = LargeInteger.TOOM_COOK_4_THRESHOLD.get() * 63 * 2;
+                for (final int bits : new int[] { bits3, bits3 + 1000, bits4, bits4 + 1000 }) {
+                    final BigInteger x = new BigInteger(bits, rnd);
+                    final BigInteger y = new BigInteger(bits - 500, rnd).negate();
+                    final LargeInteger lx = LargeInteger.valueOf(x);
+                    final LargeInteger ly = LargeInteger.valueOf(y);
+                    TestContext.assertEquals(LargeInteger.valueOf(x.multiply(y)), lx.times(ly), ("" + bits));
+                    TestContext.assertEquals(LargeInteger.valueOf(y.multiply(y)), ly.times(ly), ("" + bits));
+                }
+            }
+        });
+    }
+
+    /** Test number-theoretic transform multiplication against {@link BigInteger}. */
+    public void testFFT() {
+        info(" fft");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final int bits = LargeInteger.FFT_THRESHOLD.get() * 63 + 1000;
+                final BigInteger x = new BigInteger(bits, rnd);
+                final BigInteger y = new BigInteger(bits + 100000, rnd).negate();
+                final BigInteger ones = BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+                final LargeInteger lx = LargeInteger.valueOf(x);
+                final LargeInteger ly = LargeInteger.valueOf(y);
+                final LargeInteger lones = LargeInteger.valueOf(ones);
+                TestContext.assertEquals(LargeInteger.valueOf(x.multiply(y)), lx.times(ly), "times");
+                TestContext.assertEquals(LargeInteger.valueOf(x.multiply(x)), lx.times(lx), "square");
+                TestContext.assertEquals(LargeInteger.valueOf(ones.multiply(ones)), lones.times(lones), "ones");
+            }
+        });
+    }
+
+    /** Test the single word fast paths (around the 63 bits overflow) against {@link BigInteger}. */
+    public void testSingleWords() {
+        info(" singleWords");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final long[] values = { 0, 1, -1, 1023, -128, -129, 3037000499L, -3037000500L,
+                        Long.MAX_VALUE / 2 + 1, Long.MAX_VALUE, -Long.MAX_VALUE, rnd.nextLong() >> 1 };
+                for (final long x : values) {
+                    for (final long y : values) {
+                        final BigInteger bx = BigInteger.valueOf(x);
+                        final BigInteger by = BigInteger.valueOf(y);
+                        final LargeInteger lx = LargeInteger.valueOf(x);
+                        final LargeInteger ly = LargeInteger.valueOf(y);
+                        final String msg = x + ", " + y;
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.add(by)), lx.plus(ly), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.add(by)), lx.plus(y), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.subtract(by)), lx.minus(ly), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.subtract(by)), lx.minus(y), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.multiply(by)), lx.times(ly), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.multiply(by)), lx.times(y), msg);
+                        TestContext.assertEquals(LargeInteger.valueOf(bx.gcd(by)), lx.gcd(ly), msg);
+                        TestContext.assertEquals(bx.compareTo(by), lx.compareTo(ly), msg);
+                    }
+                }
+                TestContext.assertTrue(LargeInteger.valueOf(-128) == LargeInteger.valueOf(-129).plus(1), "cached");
+            }
+        });
+    }
+
+    public void testSquare() {
+        info("  square");
+        for (final Pair<Double, LargeInteger> p : getTestValues())
+            doTest(new SimpleTestCase() {
+                @Override
+                public void execute() {
+                    TestContext.assertEquals(p._y.times(p._y.copy()), p._y.square(), ("" + p));
+                }
+            });
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (int bits = 1; bits < 5000; bits += 317) {
+                    final BigInteger x = new BigInteger(bits, rnd);
+                    TestContext.assertEquals(LargeInteger.valueOf(x.multiply(x)), LargeInteger.valueOf(x).square(), x.toString());
+                    TestContext.assertEquals(LargeInteger.valueOf(x.pow(7)), LargeInteger.valueOf(x).pow(7), x.toString());
+                }
+            }
+        });
+    }
+
+    public void testDivide() {
+        info("  divide");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final int bz = LargeInteger.BURNIKEL_ZIEGLER_THRESHOLD.get() * 63;
+                for (int bits = 100; bits < 8 * bz; bits += bz / 3) {
+                    final BigInteger y = new BigInteger(bits, rnd).setBit(bits).negate();
+                    final BigInteger[] xs = { new BigInteger(bits / 2, rnd),
+                            new BigInteger(bits + 1000, rnd),
+                            new BigInteger(3 * bits, rnd).negate(),
+                            y.multiply(y).subtract(BigInteger.ONE) };
+                    for (BigInteger x : xs) {
+                        final LargeInteger q = LargeInteger.valueOf(x).divide(LargeInteger.valueOf(y));
+                        TestContext.assertEquals(LargeInteger.valueOf(x.divide(y)), q, "quotient");
+                        TestContext.assertEquals(LargeInteger.valueOf(x.remainder(y)), q.getRemainder(), "remainder");
+                    }
+                }
+            }
+        });
+    }
+
+    public void testModPow() {
+        info("  modPow");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (int bits = 2; bits < 3000; bits += 211) {
+                    final BigInteger odd = new BigInteger(bits, rnd).setBit(0);
+                    final BigInteger even = new BigInteger(bits, rnd).setBit(bits).clearBit(0);
+                    final BigInteger x = new BigInteger(bits + 10, rnd).negate();
+                    final BigInteger exp = new BigInteger(bits, rnd);
+                    for (BigInteger m : new BigInteger[] { odd, even }) {
+                        TestContext.assertEquals(LargeInteger.valueOf(x.modPow(exp, m)), LargeInteger.valueOf(x).modPow(
+                                LargeInteger.valueOf(exp), LargeInteger.valueOf(m)), m.toString());
+                    }
+                }
+            }
+        });
+    }
+
     public void testSqrt() {
         info("  sqrt");
         final LargeInteger n = LargeInteger.valueOf(9);
@@ -294,11 +512,157 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
                 final LargeInteger k1 = k.plus(1);
                 TestContext.assertTrue((!s.isLessThan(k.times(k))), (s + " -> " + k));
                 TestContext.assertTrue(s.isLessThan(k1.times(k1)), (s + " -> " + k));
+                TestContext.assertEquals(s.minus(k.times(k)), k.getRemainder(), "remainder " + s);
+            }
+        });
+    }
+
+    /** Test the Karatsuba square root of large values, nthRoot and isPerfectPower. */
+    public void testNthRoot() {
+        info("  nthRoot");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (final int bits : new int[] { 62, 63, 64, 127, 1000, 20000 }) {
+                    final LargeInteger s = LargeInteger.valueOf(new BigInteger(bits, rnd));
+                    final LargeInteger k = s.sqrt();
+                    TestContext.assertEquals(s.minus(k.square()), k.getRemainder(), "sqrt " + s);
+                    assertTrue(!k.getRemainder().isNegative() && k.getRemainder().compareTo(k.times2pow(1)) <= 0);
+                }
+                for (int n = 3; n < 12; n++) {
+                    final LargeInteger s = LargeInteger.valueOf(new BigInteger(20 + rnd.nextInt(500), rnd));
+                    final LargeInteger x = ((n & 1) == 1) ? s.opposite() : s;
+                    final LargeInteger r = x.nthRoot(n);
+                    TestContext.assertEquals(x.minus(r.pow(n)), r.getRemainder(), "nthRoot " + x + ", " + n);
+                    assertTrue(s.isLessThan(r.abs().plus(1).pow(n)));
+                    TestContext.assertEquals(LargeInteger.ZERO, s.pow(n).nthRoot(n).minus(s), "nthRoot "
+                            + s + "^" + n);
+                }
+                for (int i = -30; i < 30; i++) {
+                    final boolean isPower = (i >= -1 && i <= 1) || i == 4 || i == 8 || i == 9 || i == 16
+                            || i == 25 || i == 27 || i == -8 || i == -27;
+                    TestContext.assertEquals(isPower, LargeInteger.valueOf(i).isPerfectPower(), "isPerfectPower "
+                            + i);
+                }
+                final LargeInteger p = LargeInteger.valueOf(BigInteger.probablePrime(100, rnd));
+                assertTrue(p.pow(2).isPerfectPower() && p.pow(7).opposite().isPerfectPower());
+                assertTrue(!p.pow(2).opposite().isPerfectPower() && !p.pow(3).plus(1).isPerfectPower());
+                assertTrue(!p.pow(5).times(p.plus(2)).isPerfectPower());
+            }
+        });
+    }
+
+    /** Test factorial, binomial, primorial and productOf against sequential products. */
+    public void testProductTree() {
+        info("  productTree");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                BigInteger factorial = BigInteger.ONE;
+                BigInteger primorial = BigInteger.ONE;
+                for (int n = 0; n <= 1500; n++) {
+                    if (n > 0) {
+                        factorial = factorial.multiply(BigInteger.valueOf(n));
+                    }
+                    if (BigInteger.valueOf(n).isProbablePrime(100)) {
+                        primorial = primorial.multiply(BigInteger.valueOf(n));
+                    }
+                    TestContext.assertEquals(LargeInteger.valueOf(factorial), LargeInteger.factorial(n), "factorial "
+                            + n);
+                    TestContext.assertEquals(LargeInteger.valueOf(primorial), LargeInteger.primorial(n), "primorial "
+                            + n);
+                }
+                for (int i = 0; i < 20; i++) {
+                    final int n = rnd.nextInt(1000);
+                    final int k = rnd.nextInt(n + 3) - 1;
+                    final LargeInteger expected = (k < 0 || k > n) ? LargeInteger.ZERO : LargeInteger.factorial(n)
+                            .divide(LargeInteger.factorial(k).times(LargeInteger.factorial(n - k)));
+                    TestContext.assertEquals(expected, LargeInteger.binomial(n, k), "binomial " + n + ", " + k);
+                }
+                final long[] values = new long[500];
+                final LargeInteger[] largeValues = new LargeInteger[values.length];
+                LargeInteger product = LargeInteger.ONE;
+                LargeInteger largeProduct = LargeInteger.ONE;
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (i == 7) ? Long.MIN_VALUE : rnd.nextLong() >> rnd.nextInt(64);
+                    values[i] = (values[i] == 0) ? 1 : values[i];
+                    largeValues[i] = LargeInteger.valueOf(new BigInteger(rnd.nextInt(2000) + 1, rnd));
+                    product = product.times(values[i]);
+                    largeProduct = largeProduct.times(largeValues[i]);
+                }
+                TestContext.assertEquals(product, LargeInteger.productOf(values), "productOf long[]");
+                TestContext.assertEquals(largeProduct, LargeInteger.productOf(largeValues), "productOf");
+                TestContext.assertEquals(LargeInteger.ONE, LargeInteger.productOf(new long[0]), "empty product");
+            }
+        });
+    }
+
+    /** Test the multi-modular determinant (Vandermonde) and exact solve (Hilbert). */
+    public void testMultiModular() {
+        info("  multiModular");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final int n = 12;
+                final LargeInteger[] x = new LargeInteger[n];
+                for (int i = 0; i < n; i++) {
+                    x[i] = LargeInteger.valueOf(new BigInteger(100, rnd)).minus(LargeInteger.ONE.shiftLeft(99));
+                }
+                final LargeInteger[][] vandermonde = new LargeInteger[n][n];
+                LargeInteger expected = LargeInteger.ONE;
+                for (int i = 0; i < n; i++) {
+                    LargeInteger power = LargeInteger.ONE;
+                    for (int j = 0; j < n; j++) {
+                        vandermonde[i][j] = power;
+                        power = power.times(x[i]);
+                        if (j > i) {
+                            expected = expected.times(x[j].minus(x[i]));
+                        }
+                    }
+                }
+                TestContext.assertEquals(expected, MultiModular.determinant(vandermonde), "Vandermonde");
+                final Rational[][] hilbert = new Rational[n][n];
+                final Rational[] b = new Rational[n];
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        hilbert[i][j] = Rational.valueOf(1, i + j + 1);
+                    }
+                    b[i] = Rational.valueOf(rnd.nextInt(1000) - 500, rnd.nextInt(10) + 1);
+                }
+                final Rational[] solution = MultiModular.solve(hilbert, b);
+                for (int i = 0; i < n; i++) {
+                    Rational sum = Rational.ZERO;
+                    for (int j = 0; j < n; j++) {
+                        sum = sum.plus(hilbert[i][j].times(solution[j]));
+                    }
+                    TestContext.assertEquals(b[i], sum, "Hilbert row " + i);
+                }
+                hilbert[n - 1] = hilbert[0];
+                TestContext.assertEquals(Rational.ZERO, MultiModular.determinant(hilbert), "singular");
+                try {
+                    MultiModular.solve(hilbert, b);
+                    assertTrue(false);
+                } catch (ArithmeticException e) {
+                    assertEquals("Singular matrix", e.getMessage());
+                }
+                try {
+                    MultiModular.solve(new Rational[][] { { Rational.ONE, Rational.ONE } }, new Rational[] { Rational.ONE });
+                    assertTrue(false);
+                } catch (IllegalArgumentException e) {
+                    // Expected (not square).
+                }
+                final Modulus large = new Modulus(LargeInteger.ONE.shiftLeft(100).plus(LargeInteger.ONE));
+                assertTrue(!large.isSingleWord());
+                try {
+                    large.times(2, 3);
+                    assertTrue(false);
+                } catch (IllegalStateException e) {
+                    // Expected (multi-word modulus).
+                }
             }
         });
     }
 
-    /** FIXME modInverse is broken but I haven't yet found the bug. */
     public void testModInverse() {
         info("  modInverse");
         LargeInteger.valueOf(8).gcd(LargeInteger.valueOf("9876543212345678985432123456789876543210"));
@@ -316,6 +680,395 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
             }
     }
 
+    public void testGcdExtended() {
+        info("  gcdExtended");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (int i = 0; i < 100; i++) {
+                    final BigInteger f = new BigInteger(1 + rnd.nextInt(500), rnd);
+                    final BigInteger x = new BigInteger(1 + rnd.nextInt(2000), rnd).multiply(f);
+                    final BigInteger y = new BigInteger(1 + rnd.nextInt(2000), rnd).multiply(f).negate();
+                    final LargeInteger lx = LargeInteger.valueOf(x);
+                    final LargeInteger ly = LargeInteger.valueOf(y);
+                    final LargeInteger[] gcdx = lx.gcdExtended(ly);
+                    TestContext.assertEquals(LargeInteger.valueOf(x.gcd(y)), gcdx[0], "gcd");
+                    TestContext.assertEquals(gcdx[0], lx.times(gcdx[1]).plus(ly.times(gcdx[2])), "bezout");
+                }
+            }
+        });
+    }
+
+    public void testBatchModInverse() {
+        info("  modInverse (batch)");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final BigInteger m = makePrime(521);
+                final LargeInteger[] values = new LargeInteger[20];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = LargeInteger.valueOf(new BigInteger(600, rnd).subtract(m));
+                }
+                final LargeInteger[] inverses = LargeInteger.modInverse(values, LargeInteger.valueOf(m));
+                for (int i = 0; i < values.length; i++) {
+                    TestContext.assertEquals(values[i].modInverse(LargeInteger.valueOf(m)), inverses[i], "inverse");
+                }
+            }
+        });
+    }
+
+    public void testBuilder() {
+        info("  builder");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final LargeIntegerBuilder builder = new LargeIntegerBuilder();
+                BigInteger expected = BigInteger.ZERO;
+                for (int i = 0; i < 100; i++) {
+                    final BigInteger x = new BigInteger(1 + rnd.nextInt(3000), rnd).negate();
+                    final long k = rnd.nextLong();
+                    final long c = rnd.nextLong();
+                    builder.multiplyAdd(k, c).subtract(LargeInteger.valueOf(x)).shiftRight(i);
+                    expected = expected.multiply(BigInteger.valueOf(k)).add(BigInteger.valueOf(c)).subtract(x)
+                            .shiftRight(i);
+                    TestContext.assertEquals(LargeInteger.valueOf(expected), builder.toLargeInteger(), "builder");
+                }
+                builder.set(LargeInteger.valueOf(expected)).square().shiftLeft(100).add(-1L);
+                TestContext.assertEquals(LargeInteger.valueOf(expected.multiply(expected).shiftLeft(100)
+                        .subtract(BigInteger.ONE)), builder.toLargeInteger(), "square");
+            }
+        });
+    }
+
+    /** Test isProbablyPrime and nextProbablePrime against {@link BigInteger}. */
+    public void testProbablyPrime() {
+        info("  probablyPrime");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                for (int i = -10; i < 10000; i++) {
+                    TestContext.assertEquals(i > 1 && BigInteger.valueOf(i).isProbablePrime(100), LargeInteger
+                            .valueOf(i).isProbablyPrime(), "isProbablyPrime " + i);
+                }
+                for (final long psp : new long[] { 2047L, 3215031751L, 341550071728321L, 3825123056546413051L }) {
+                    assertTrue(!LargeInteger.valueOf(psp).isProbablyPrime());
+                }
+                for (final int bits : new int[] { 40, 63, 64, 65, 200, 521 }) {
+                    final BigInteger x = new BigInteger(bits, rnd);
+                    final BigInteger p = x.nextProbablePrime();
+                    TestContext.assertEquals(LargeInteger.valueOf(p), LargeInteger.valueOf(x).nextProbablePrime(),
+                            "nextProbablePrime " + x);
+                    assertTrue(LargeInteger.valueOf(p).isProbablyPrime());
+                    assertTrue(!LargeInteger.valueOf(p.multiply(p)).isProbablyPrime());
+                    assertTrue(!LargeInteger.valueOf(p.multiply(p.nextProbablePrime())).isProbablyPrime());
+                }
+            }
+        });
+    }
+
+    /** Test the prime sieve (sequential and concurrent) against {@link BigInteger}. */
+    public void testPrimeSieve() {
+        info("  primeSieve");
+        for (final long from : new long[] { -10, 4294967296L - 100000, 1L << 62 }) {
+            for (final boolean isConcurrent : new boolean[] { false, true }) {
+                doTest(new SimpleTestCase() {
+                    @Override
+                    public void execute() {
+                        final BigInteger to = BigInteger.valueOf(from + 200000);
+                        final PrimeSieve sieve = new PrimeSieve(LargeInteger.valueOf(from), LargeInteger
+                                .valueOf(to), isConcurrent);
+                        for (BigInteger p = BigInteger.valueOf(Math.max(from, 1)).nextProbablePrime(); p
+                                .compareTo(to) < 0; p = p.nextProbablePrime()) {
+                            TestContext.assertEquals(LargeInteger.valueOf(p), sieve.next(), "sieve " + from);
+                        }
+                        assertTrue(!sieve.hasNext());
+                    }
+                });
+            }
+        }
+    }
+
+    /** Test the binary format (buffers and channels) round trip. */
+    public void testBinaryFormat() {
+        info("  binaryFormat");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() throws Exception {
+                final List<LargeInteger> values = new ArrayList<LargeInteger>();
+                for (int i = 0; i < 1000; i++) {
+                    final BigInteger x = new BigInteger(rnd.nextInt(2000), rnd);
+                    values.add(LargeInteger.valueOf(rnd.nextBoolean() ? x : x.negate()));
+                }
+                final ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+                for (final LargeInteger x : values) {
+                    buffer.clear();
+                    BinaryFormat.LARGE_INTEGER.write(x, buffer);
+                    final Rational r = Rational.valueOf(x, LargeInteger.valueOf(3));
+                    BinaryFormat.RATIONAL.write(r, buffer);
+                    final Decimal d = Decimal.valueOf(x, -7);
+                    BinaryFormat.DECIMAL.write(d, buffer);
+                    buffer.flip();
+                    assertEquals(x, BinaryFormat.LARGE_INTEGER.read(buffer), "large integer " + x);
+                    assertEquals(r, BinaryFormat.RATIONAL.read(buffer), "rational " + r);
+                    assertEquals(d, BinaryFormat.DECIMAL.read(buffer), "decimal " + d);
+                    assertTrue(!buffer.hasRemaining());
+                }
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final BinaryFormat.Writer<LargeInteger> writer = new BinaryFormat.Writer<LargeInteger>(
+                        BinaryFormat.LARGE_INTEGER, Channels.newChannel(out), ByteBuffer.allocate(16));
+                writer.writeAll(values);
+                writer.flush();
+                final BinaryFormat.Reader<LargeInteger> reader = new BinaryFormat.Reader<LargeInteger>(
+                        BinaryFormat.LARGE_INTEGER, Channels.newChannel(new ByteArrayInputStream(out
+                                .toByteArray())), ByteBuffer.allocate(16));
+                final List<LargeInteger> read = new ArrayList<LargeInteger>();
+                assertEquals(values.size(), reader.readAll(read), "count");
+                assertEquals(values, read, "stream");
+            }
+        });
+    }
+
+    public void testBinaryFormatTypes() {
+        info("  binaryFormatTypes");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() throws Exception {
+                final ByteBuffer buffer = ByteBuffer.allocate(4096);
+                LocalContext.enter();
+                try {
+                    ModuloInteger.setModulus(LargeInteger.valueOf("1000000000000000000000007"));
+                    final ModuloInteger m = ModuloInteger.valueOf(LargeInteger.valueOf("-123456789012345678901234"));
+                    BinaryFormat.MODULO_INTEGER.write(m, buffer);
+                    buffer.flip();
+                    assertEquals(m.moduloValue(), BinaryFormat.MODULO_INTEGER.read(buffer).moduloValue(), "modulo");
+                } finally {
+                    LocalContext.exit();
+                }
+                buffer.clear();
+                final Real real = Real.of(-1.25e-300);
+                final Complex complex = Complex.of(3.5, -Double.MIN_VALUE);
+                BinaryFormat.REAL.write(real, buffer);
+                BinaryFormat.COMPLEX.write(complex, buffer);
+                buffer.flip();
+                assertEquals(real.doubleValue(), BinaryFormat.REAL.read(buffer).doubleValue(), "real");
+                final Complex c = BinaryFormat.COMPLEX.read(buffer);
+                assertEquals(complex.realValue(), c.realValue(), "complex real");
+                assertEquals(complex.imaginaryValue(), c.imaginaryValue(), "complex imaginary");
+
+                final Rational[][] rows = new Rational[3][4];
+                for (int i = 0; i < rows.length; i++) {
+                    for (int j = 0; j < rows[i].length; j++) {
+                        rows[i][j] = ((i + j) % 2 == 0) ? Rational.ZERO : Rational.valueOf(rnd.nextInt() - j,
+                                rnd.nextInt(1000) + 1);
+                    }
+                }
+                final DenseMatrix<Rational> dense = DenseMatrix.of(rows);
+                final DenseVector<Rational> vector = DenseVector.of(rows[0]);
+                @SuppressWarnings("unchecked")
+                final SparseMatrix<Rational> sparse = SparseMatrix.of(SparseVector.of(DenseVector.of(rows[0])),
+                        SparseVector.of(DenseVector.of(rows[1])), SparseVector.of(DenseVector.of(rows[2])));
+                buffer.clear();
+                new DenseVector.Binary<Rational>(BinaryFormat.RATIONAL).write(vector, buffer);
+                new DenseMatrix.Binary<Rational>(BinaryFormat.RATIONAL).write(dense, buffer);
+                new SparseVector.Binary<Rational>(BinaryFormat.RATIONAL).write(sparse.row(1), buffer);
+                new SparseMatrix.Binary<Rational>(BinaryFormat.RATIONAL).write(sparse, buffer);
+                buffer.flip();
+                final DenseVector<Rational> v = new DenseVector.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                final DenseMatrix<Rational> dm = new DenseMatrix.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                final SparseVector<Rational> sv = new SparseVector.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                final SparseMatrix<Rational> sm = new SparseMatrix.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                assertTrue(!buffer.hasRemaining());
+                assertEquals(rows[0].length, v.dimension(), "dense vector dimension");
+                assertEquals(rows.length, dm.numberOfRows(), "dense matrix rows");
+                assertEquals(rows.length, sm.numberOfRows(), "sparse matrix rows");
+                assertEquals(rows[1].length, sv.dimension(), "sparse vector dimension");
+                for (int j = 0; j < rows[0].length; j++) {
+                    assertEquals(rows[0][j], v.get(j), "dense vector");
+                    assertEquals(rows[1][j], sv.get(j), "sparse vector");
+                    for (int i = 0; i < rows.length; i++) {
+                        assertEquals(rows[i][j], dm.get(i, j), "dense matrix");
+                        assertEquals(rows[i][j], sm.get(i, j), "sparse matrix");
+                    }
+                }
+            }
+        });
+    }
+
+    public void testBinaryFormatErrors() {
+        info("  binaryFormatErrors");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() throws Exception {
+                final ByteBuffer buffer = ByteBuffer.allocate(64);
+                BinaryFormat.writeUnsigned(2 << 1, buffer); // Two words.
+                buffer.putLong(1).putLong(-1); // Negative word.
+                buffer.flip();
+                try {
+                    BinaryFormat.LARGE_INTEGER.read(buffer);
+                    assertTrue(false);
+                } catch (IllegalArgumentException e) {
+                    // Expected (invalid word).
+                }
+                for (final long delta : new long[] { 3, -1, Long.MAX_VALUE, Long.MIN_VALUE, (1L << 32) + 1 }) {
+                    buffer.clear();
+                    BinaryFormat.writeUnsigned(3, buffer); // Dimension.
+                    BinaryFormat.RATIONAL.write(Rational.ZERO, buffer);
+                    BinaryFormat.writeUnsigned(1, buffer); // Number of elements.
+                    BinaryFormat.writeSigned(delta, buffer);
+                    BinaryFormat.RATIONAL.write(Rational.ONE, buffer);
+                    buffer.flip();
+                    try {
+                        new SparseVector.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                        assertTrue(false);
+                    } catch (IllegalArgumentException e) {
+                        // Expected (index out of range).
+                    }
+                }
+                buffer.clear();
+                BinaryFormat.writeUnsigned(1000, buffer); // More elements than bytes.
+                buffer.flip();
+                try {
+                    new DenseVector.Binary<Rational>(BinaryFormat.RATIONAL).read(buffer);
+                    assertTrue(false);
+                } catch (BufferUnderflowException e) {
+                    // Expected (truncated).
+                }
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final BinaryFormat.Writer<LargeInteger> writer = new BinaryFormat.Writer<LargeInteger>(
+                        BinaryFormat.LARGE_INTEGER, Channels.newChannel(out));
+                final LargeInteger x = LargeInteger.ONE.shiftLeft(1000).minus(LargeInteger.ONE);
+                writer.write(x);
+                writer.write(x);
+                writer.flush();
+                final byte[] bytes = out.toByteArray();
+                final BinaryFormat.Reader<LargeInteger> reader = new BinaryFormat.Reader<LargeInteger>(
+                        BinaryFormat.LARGE_INTEGER, Channels.newChannel(new ByteArrayInputStream(bytes, 0,
+                                bytes.length - 1)));
+                assertEquals(x, reader.read(), "complete value");
+                try {
+                    reader.read();
+                    assertTrue(false);
+                } catch (EOFException e) {
+                    // Expected (truncated stream).
+                }
+            }
+        });
+    }
+
+    /** Test the factorization (rho, elliptic curves, quadratic sieve) against {@link BigInteger}. */
+    public void testFactorization() {
+        info("  factorization");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final BigInteger p40 = BigInteger.probablePrime(40, rnd);
+                final BigInteger[] values = { BigInteger.valueOf(-2 * 2 * 3 * 7 * 7 * 1000003L),
+                        BigInteger.valueOf(4294967291L).multiply(BigInteger.valueOf(4294967279L)),
+                        p40.pow(3).multiply(BigInteger.valueOf(9)),
+                        BigInteger.probablePrime(30, rnd).multiply(BigInteger.probablePrime(70, rnd)),
+                        BigInteger.probablePrime(50, rnd).multiply(BigInteger.probablePrime(51, rnd)) };
+                for (final BigInteger n : values) {
+                    final SortedMap<LargeInteger, Integer> factors = new Factorization().factor(LargeInteger
+                            .valueOf(n));
+                    LargeInteger product = LargeInteger.ONE;
+                    for (final Map.Entry<LargeInteger, Integer> factor : factors.entrySet()) {
+                        assertTrue(factor.getKey().isProbablyPrime());
+                        product = product.times(factor.getKey().pow(factor.getValue()));
+                    }
+                    TestContext.assertEquals(LargeInteger.valueOf(n.abs()), product, "factor " + n);
+                }
+                assertEquals(Integer.valueOf(3), new Factorization().factor(LargeInteger.valueOf(p40.pow(3)))
+                        .get(LargeInteger.valueOf(p40)));
+                assertTrue(new Factorization().factor(LargeInteger.ONE).isEmpty());
+                final Factorization cancelled = new Factorization();
+                cancelled.cancel();
+                try {
+                    cancelled.factor(LargeInteger.valueOf(p40.multiply(p40.nextProbablePrime())));
+                    assertTrue(false);
+                } catch (CancellationException e) {
+                    assertTrue(cancelled.isCancelled());
+                }
+            }
+        });
+    }
+
+    /** Test configured (low) thresholds against {@link BigInteger}. */
+    public void testTunerConfigure() {
+        info("  tunerConfigure");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final Properties saved = new Properties();
+                saved.setProperty("KARATSUBA_THRESHOLD", String.valueOf(LargeInteger.KARATSUBA_THRESHOLD.get()));
+                saved.setProperty("TOOM_COOK_3_THRESHOLD", String.valueOf(LargeInteger.TOOM_COOK_3_THRESHOLD.get()));
+                saved.setProperty("TOOM_COOK_4_THRESHOLD", String.valueOf(LargeInteger.TOOM_COOK_4_THRESHOLD.get()));
+                saved.setProperty("BURNIKEL_ZIEGLER_THRESHOLD", String.valueOf(LargeInteger.BURNIKEL_ZIEGLER_THRESHOLD.get()));
+                final Properties thresholds = new Properties();
+                thresholds.setProperty("KARATSUBA_THRESHOLD", "2");
+                thresholds.setProperty("TOOM_COOK_3_THRESHOLD", "20");
+                thresholds.setProperty("TOOM_COOK_4_THRESHOLD", " 40 ");
+                thresholds.setProperty("BURNIKEL_ZIEGLER_THRESHOLD", "10");
+                LargeIntegerTuner.configure(thresholds);
+                try {
+                    assertEquals(Integer.valueOf(40), LargeInteger.TOOM_COOK_4_THRESHOLD.get());
+                    for (int i = 0; i < 20; i++) {
+                        final BigInteger x = new BigInteger(1 + rnd.nextInt(20000), rnd);
+                        final BigInteger y = new BigInteger(1 + rnd.nextInt(10000), rnd).negate();
+                        TestContext.assertEquals(LargeInteger.valueOf(x.multiply(y)), LargeInteger.valueOf(x)
+                                .times(LargeInteger.valueOf(y)), "times");
+                        TestContext.assertEquals(LargeInteger.valueOf(x.divide(y)), LargeInteger.valueOf(x)
+                                .divide(LargeInteger.valueOf(y)), "divide");
+                    }
+                } finally {
+                    LargeIntegerTuner.configure(saved);
+                }
+            }
+        });
+    }
+
+    /** Test that tuning does not change the thresholds seen by other threads. */
+    public void testTunerTune() {
+        info("  tunerTune");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() throws Exception {
+                final int karatsuba = LargeInteger.KARATSUBA_THRESHOLD.get();
+                final int fft = LargeInteger.FFT_THRESHOLD.get();
+                final AtomicBoolean done = new AtomicBoolean();
+                final AtomicBoolean changed = new AtomicBoolean();
+                final Thread observer = new Thread() {
+                    @Override
+                    public void run() {
+                        while (!done.get()) {
+                            if ((LargeInteger.threshold(LargeInteger.KARATSUBA_THRESHOLD) != karatsuba)
+                                    || (LargeInteger.threshold(LargeInteger.FFT_THRESHOLD) != fft)) {
+                                changed.set(true);
+                            }
+                            Thread.yield();
+                        }
+                    }
+                };
+                observer.start();
+                final Properties thresholds;
+                try {
+                    thresholds = LargeIntegerTuner.tune(100); // Small sizes only.
+                } finally {
+                    done.set(true);
+                    observer.join();
+                }
+                assertTrue(!changed.get(), "thresholds changed during tuning");
+                assertEquals(karatsuba, LargeInteger.threshold(LargeInteger.KARATSUBA_THRESHOLD), "karatsuba");
+                assertEquals(fft, LargeInteger.threshold(LargeInteger.FFT_THRESHOLD), "fft");
+                for (final String name : new String[] { "KARATSUBA_THRESHOLD", "TOOM_COOK_3_THRESHOLD",
+                        "TOOM_COOK_4_THRESHOLD", "FFT_THRESHOLD", "BURNIKEL_ZIEGLER_THRESHOLD" }) {
+                    final int value = Integer.parseInt(thresholds.getProperty(name));
+                    assertTrue((value > 0) && (value <= 500), name + ": " + value);
+                }
+            }
+        });
+    }
+
     /** Tests for bug https://jscience.dev.java.net/issues/show_bug.cgi?id=102 */
     public void testBug102() {
         info("  bug102");
@@ -364,8 +1117,8 @@ public class TestLargeInteger extends AbstractIntegerTestSuite<LargeInteger> {
                 assertEquals(bY.toString(), lY.toString());
                 assertEquals(bZ.toString(), lZ.toString());
                 assertEquals(bZ.pow(2).toString(), lZ.pow(2).toString());
-                // FIXME assertEquals(bT1.toString(), lT1.toString());
-                // FIXME assertEquals(bT2.toString(), lT2.toString());
+                assertEquals(bT1.toString(), lT1.toString());
+                assertEquals(bT2.toString(), lT2.toString());
             }
         });
     }
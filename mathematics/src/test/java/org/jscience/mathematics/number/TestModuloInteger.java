@@ -3,8 +3,10 @@ package org.jscience.mathematics.number;
 import static javolution.context.LogContext.info;
 import static javolution.testing.TestContext.assertEquals;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.jscience.mathematics.number.util.NumberHelper;
 import org.jscience.util.Pair;
@@ -159,4 +161,41 @@ public class TestModuloInteger extends AbstractIntegerTestSuite<ModuloInteger> {
         }
     }
 
+    /** Test the modulus context (single word and multi-words moduli) against {@link BigInteger}. */
+    public void testModulusContext() {
+        info("  modulusContext");
+        final Random random = new Random();
+        for (final int bits : new int[] { 2, 31, 61, 62, 63, 200 }) {
+            doTest(new SimpleTestCase() {
+                @Override
+                public void execute() {
+                    final BigInteger m = new BigInteger(bits, random).setBit(bits - 1);
+                    final Modulus modulus = new Modulus(LargeInteger.valueOf(m));
+                    for (int i = 0; i < 100; i++) {
+                        final BigInteger x = new BigInteger(bits, random).mod(m);
+                        final BigInteger y = new BigInteger(bits, random).mod(m);
+                        final BigInteger z = new BigInteger(2 * bits + 10, random).negate();
+                        assertEquals(LargeInteger.valueOf(x.multiply(y).mod(m)), modulus.times(LargeInteger
+                                .valueOf(x), LargeInteger.valueOf(y)));
+                        assertEquals(LargeInteger.valueOf(x.add(y).mod(m)), modulus.plus(LargeInteger.valueOf(x),
+                                LargeInteger.valueOf(y)));
+                        assertEquals(LargeInteger.valueOf(x.subtract(y).mod(m)), modulus.minus(LargeInteger
+                                .valueOf(x), LargeInteger.valueOf(y)));
+                        assertEquals(LargeInteger.valueOf(z.mod(m)), modulus.reduce(LargeInteger.valueOf(z)));
+                        LocalContext.enter();
+                        try {
+                            ModuloInteger.setModulusContext(modulus);
+                            assertEquals(LargeInteger.valueOf(z.multiply(y).mod(m)), ModuloInteger.valueOf(
+                                    LargeInteger.valueOf(z)).times(ModuloInteger.valueOf(LargeInteger.valueOf(y)))
+                                    .moduloValue());
+                            assertEquals(m, ModuloInteger.getModulus().asBigInteger());
+                        } finally {
+                            LocalContext.exit();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
 }
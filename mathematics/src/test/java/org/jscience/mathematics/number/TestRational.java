@@ -85,4 +85,28 @@ public class TestRational extends AbstractNumberTestSuite<Rational> {
             }
         });
     }
+
+    public void testSingleWords() {
+        info(" singleWords");
+        doTest(new SimpleTestCase() {
+            @Override
+            public void execute() {
+                final long big = Long.MAX_VALUE / 3;
+                final Rational[] values = { Rational.valueOf(1, 3), Rational.valueOf(-big, 7),
+                        Rational.valueOf(big, big - 1), Rational.valueOf(Long.MAX_VALUE, 2),
+                        Rational.valueOf(-5, Long.MAX_VALUE), Rational.ZERO };
+                for (final Rational x : values) {
+                    for (final Rational y : values) {
+                        final LargeInteger a = x.getDividend(), b = x.getDivisor();
+                        final LargeInteger c = y.getDividend(), d = y.getDivisor();
+                        final String msg = x + ", " + y;
+                        TestContext.assertEquals(Rational.valueOf(a.times(d).plus(c.times(b)), b.times(d)),
+                                x.plus(y), msg);
+                        TestContext.assertEquals(Rational.valueOf(a.times(c), b.times(d)), x.times(y), msg);
+                        TestContext.assertEquals(a.times(d).compareTo(c.times(b)), x.compareTo(y), msg);
+                    }
+                }
+            }
+        });
+    }
 }